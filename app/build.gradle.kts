@@ -42,6 +42,16 @@ android {
         }
     }
     
+    // BuildConfig.DEBUG gates debug logging (logging.Logger)
+    buildFeatures {
+        buildConfig = true
+    }
+    
+    // Log calls from the logging classes are no-ops in JVM unit tests
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+    }
+    
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
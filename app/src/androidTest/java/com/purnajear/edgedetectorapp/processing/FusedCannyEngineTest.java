@@ -0,0 +1,48 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * On a device: the fused native kernel against the Java engine, which follows the same
+ * arithmetic as cv::Canny. Odd sizes catch border and band handling.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FusedCannyEngineTest {
+
+    private static final int[][] SIZES = {{320, 240}, {641, 479}, {1280, 720}, {33, 17}};
+
+    @BeforeClass
+    public static void loadLibrary() {
+        System.loadLibrary("edge-detector");
+    }
+
+    @Test
+    public void fusedMatchesJavaBitForBit() {
+        FrameProcessor java = new JavaFrameProcessor();
+        FrameProcessor fused = NativeFrameProcessor.create(true);
+        assertNotNull("fused engine unavailable", fused);
+        try {
+            List<EngineBenchmark.Result> results = new EngineBenchmark(0, 1).run(Arrays.asList(java, fused), SIZES);
+
+            assertEquals(2 * SIZES.length, results.size());
+            for (EngineBenchmark.Result r : results) {
+                assertFalse(r.name + " failed at " + r.width + "x" + r.height, Double.isNaN(r.frameMs));
+                if (FrameProcessors.FUSED.equals(r.name)) {
+                    assertEquals("pixels differing at " + r.width + "x" + r.height, 0, r.differingPixels);
+                }
+            }
+        } finally {
+            java.release();
+            fused.release();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+// Binary edge map (0 or 1 after normalization) from a luminance texture, coloured here
+// instead of on the CPU. Edge and background colours come from OpenGLRenderer.setEdgeColors
+precision mediump float;
+varying vec2 vTexCoord;
+uniform sampler2D uTexture;
+uniform vec4 uEdgeColor;
+uniform vec4 uBackgroundColor;
+
+void main() {
+    float edge = texture2D(uTexture, vTexCoord).r;
+    gl_FragColor = mix(uBackgroundColor, uEdgeColor, edge);
+}
@@ -0,0 +1,8 @@
+// Processed RGBA frame, drawn as is
+precision mediump float;
+varying vec2 vTexCoord;
+uniform sampler2D uTexture;
+
+void main() {
+    gl_FragColor = texture2D(uTexture, vTexCoord);
+}
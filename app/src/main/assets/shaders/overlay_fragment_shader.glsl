@@ -0,0 +1,23 @@
+// Edges blended over the live camera image in a single pass. Camera comes in as NV21
+// like in yuv_fragment_shader.glsl, the edge map as in edge_fragment_shader.glsl.
+#ifdef GL_FRAGMENT_PRECISION_HIGH
+precision highp float;
+#else
+precision mediump float;
+#endif
+varying vec2 vTexCoord;
+uniform sampler2D uTextureY;
+uniform sampler2D uTextureVU;
+uniform sampler2D uTextureEdges;
+uniform mat3 uYuvToRgb;
+uniform vec3 uYuvOffset;
+uniform vec4 uEdgeColor;
+uniform float uOpacity;
+
+void main() {
+    float y = texture2D(uTextureY, vTexCoord).r;
+    vec4 vu = texture2D(uTextureVU, vTexCoord);
+    vec3 camera = clamp(uYuvToRgb * (vec3(y, vu.a, vu.r) + uYuvOffset), 0.0, 1.0);
+    float edge = texture2D(uTextureEdges, vTexCoord).r;
+    gl_FragColor = vec4(mix(camera, uEdgeColor.rgb, edge * uEdgeColor.a * uOpacity), 1.0);
+}
@@ -0,0 +1,20 @@
+// Raw camera frame straight from NV21: Y as a luminance texture, interleaved VU as a
+// luminance-alpha texture (L = V, A = U). Coefficients come from YuvToRgb on the Java
+// side, which is also the CPU reference this shader is checked against.
+#ifdef GL_FRAGMENT_PRECISION_HIGH
+precision highp float;
+#else
+precision mediump float;
+#endif
+varying vec2 vTexCoord;
+uniform sampler2D uTextureY;
+uniform sampler2D uTextureVU;
+uniform mat3 uYuvToRgb;
+uniform vec3 uYuvOffset;
+
+void main() {
+    float y = texture2D(uTextureY, vTexCoord).r;
+    vec4 vu = texture2D(uTextureVU, vTexCoord);
+    vec3 yuv = vec3(y, vu.a, vu.r) + uYuvOffset;
+    gl_FragColor = vec4(clamp(uYuvToRgb * yuv, 0.0, 1.0), 1.0);
+}
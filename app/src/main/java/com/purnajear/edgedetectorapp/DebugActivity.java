@@ -2,14 +2,38 @@ package com.purnajear.edgedetectorapp;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Debug;
 import android.util.Log;
 import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.purnajear.edgedetectorapp.camera.OfflineFrameSource;
+import com.purnajear.edgedetectorapp.processing.FrameProcessor;
+import com.purnajear.edgedetectorapp.processing.HeadlessBenchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
 public class DebugActivity extends AppCompatActivity {
     private static final String TAG = "EdgeDetectorDebug";
+
+    // Headless benchmark: adb shell am start -n com.purnajear.edgedetectorapp/.DebugActivity
+    //   --es benchmark native --es synthetic_size 1280x720 --ei threads 4 --ei frames 300
+    // Source is replay_file or synthetic_size like MainActivity. The JSON report goes to logcat
+    // (BENCHMARK tag), the screen and benchmark_out in the app's files dir
+    public static final String EXTRA_BENCHMARK = "benchmark"; // engine name
+    public static final String EXTRA_THREADS = "threads";
+    public static final String EXTRA_FRAMES = "frames";
+    public static final String EXTRA_WARMUP = "warmup";
+    public static final String EXTRA_DOWNSCALE = "downscale";
+    public static final String EXTRA_BENCHMARK_OUT = "benchmark_out";
+    private static final String DEFAULT_SYNTHETIC_SIZE = "1280x720";
+    private static final String DEFAULT_BENCHMARK_OUT = "benchmark.json";
+    private static final String BENCHMARK_TAG = "BENCHMARK";
     
     // Load native library
     static {
@@ -40,6 +64,7 @@ public class DebugActivity extends AppCompatActivity {
         Button continueButton = findViewById(R.id.continue_button);
         
         boolean openCvInitialized = false;
+        boolean nativeMissing = false;
         
         try {
             // Try to get OpenCV version
@@ -53,15 +78,31 @@ public class DebugActivity extends AppCompatActivity {
             Log.d(TAG, "OpenCV initialized successfully");
             openCvInitialized = true;
         } catch (UnsatisfiedLinkError e) {
-            statusText.setText("Error: " + e.getMessage());
+            // The app still works with the Java edge detector
+            statusText.setText("Native library unavailable - continuing with Java edge detection");
             Log.e(TAG, "Native method error", e);
+            nativeMissing = true;
         } catch (Exception e) {
             statusText.setText("Error: " + e.getMessage());
             Log.e(TAG, "Error initializing OpenCV", e);
         }
         
-        // Set button state based on initialization success
-        continueButton.setEnabled(openCvInitialized);
+        // Set button state based on initialization success, or the Java fallback
+        boolean canContinue = openCvInitialized || nativeMissing;
+        continueButton.setEnabled(canContinue);
+
+        String engine = getIntent().getStringExtra(EXTRA_BENCHMARK);
+        if (engine != null && canContinue) {
+            continueButton.setEnabled(false);
+            statusText.setText("Benchmarking " + engine + "...");
+            new Thread(() -> {
+                String result = runBenchmark(engine);
+                runOnUiThread(() -> {
+                    statusText.setText(result);
+                    continueButton.setEnabled(true);
+                });
+            }, "HeadlessBenchmark").start();
+        }
         
         // Set button click listener
         continueButton.setOnClickListener(v -> {
@@ -69,4 +110,86 @@ public class DebugActivity extends AppCompatActivity {
             startActivity(intent);
         });
     }
+
+    // Runs on a background thread, returns the JSON report or the error for the screen.
+    // Alloc counting is deprecated but still the only object count ART gives out
+    @SuppressWarnings("deprecation")
+    private String runBenchmark(String engine) {
+        Intent intent = getIntent();
+        int threads = intent.getIntExtra(EXTRA_THREADS, 0);
+        String replayFile = intent.getStringExtra(MainActivity.EXTRA_REPLAY_FILE);
+        String size = intent.getStringExtra(MainActivity.EXTRA_SYNTHETIC_SIZE);
+        FrameProcessor processor = HeadlessBenchmark.createProcessor(engine, threads);
+        if (processor == null) {
+            Log.e(TAG, "Benchmark engine not available: " + engine);
+            return "Engine not available: " + engine;
+        }
+        Debug.resetGlobalAllocCount();
+        Debug.startAllocCounting();
+        try {
+            OfflineFrameSource source = HeadlessBenchmark.openSource(replayFile,
+                    size != null ? size : DEFAULT_SYNTHETIC_SIZE);
+            HeadlessBenchmark benchmark = new HeadlessBenchmark(processor, source,
+                    replayFile != null ? replayFile : "synthetic");
+            benchmark.setFrames(intent.getIntExtra(EXTRA_WARMUP, HeadlessBenchmark.DEFAULT_WARMUP_FRAMES),
+                    intent.getIntExtra(EXTRA_FRAMES, HeadlessBenchmark.DEFAULT_FRAMES));
+            benchmark.setDownscale(intent.getIntExtra(EXTRA_DOWNSCALE, 1));
+            benchmark.setThreads(threads, HeadlessBenchmark.threadControl(engine));
+            benchmark.setMemoryProbe(new DebugMemoryProbe());
+
+            String json = benchmark.run().toJson();
+            Log.i(BENCHMARK_TAG, json);
+            writeReport(json);
+            return json;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Benchmark failed", e);
+            return "Benchmark failed: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Benchmark interrupted";
+        } finally {
+            Debug.stopAllocCounting();
+            processor.release();
+        }
+    }
+
+    private void writeReport(String json) {
+        String path = getIntent().getStringExtra(EXTRA_BENCHMARK_OUT);
+        File file = new File(path != null ? path : DEFAULT_BENCHMARK_OUT);
+        if (!file.isAbsolute()) {
+            file = new File(getFilesDir(), file.getPath());
+        }
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(json);
+            writer.write('\n');
+            Log.d(TAG, "Benchmark report written to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "Can't write benchmark report to " + file, e);
+        }
+    }
+
+    // Process-wide: allocations and heap bytes include whatever the UI thread does meanwhile,
+    // which on this screen is next to nothing
+    private static class DebugMemoryProbe implements HeadlessBenchmark.MemoryProbe {
+        @Override
+        @SuppressWarnings("deprecation")
+        public long allocationCount() {
+            return Debug.getGlobalAllocCount();
+        }
+
+        @Override
+        public long allocatedBytes() {
+            String bytes = Debug.getRuntimeStat("art.gc.bytes-allocated");
+            try {
+                return bytes != null ? Long.parseLong(bytes) : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public long nativeBytes() {
+            return Debug.getNativeHeapAllocatedSize();
+        }
+    }
 } 
\ No newline at end of file
@@ -1,9 +1,12 @@
 package com.purnajear.edgedetectorapp;
 
 import android.Manifest;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.TextureView;
 import android.view.View;
@@ -20,15 +23,70 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.slider.Slider;
 import com.google.android.material.snackbar.Snackbar;
 import com.purnajear.edgedetectorapp.camera.CameraHelper;
+import com.purnajear.edgedetectorapp.camera.FrameRecorder;
+import com.purnajear.edgedetectorapp.camera.FrameSource;
+import com.purnajear.edgedetectorapp.camera.ReplayFrameSource;
+import com.purnajear.edgedetectorapp.camera.SyntheticFrameSource;
 import com.purnajear.edgedetectorapp.gl.OpenGLRenderer;
+import com.purnajear.edgedetectorapp.logging.Logger;
+import com.purnajear.edgedetectorapp.metrics.FrameMetrics;
+import com.purnajear.edgedetectorapp.metrics.LatencyHistogram;
+import com.purnajear.edgedetectorapp.processing.EngineBenchmark;
+import com.purnajear.edgedetectorapp.processing.EngineCalibrator;
+import com.purnajear.edgedetectorapp.processing.FrameProcessor;
+import com.purnajear.edgedetectorapp.processing.FrameProcessors;
+import com.purnajear.edgedetectorapp.processing.HeadlessBenchmark;
+import com.purnajear.edgedetectorapp.processing.LatestFrameMailbox;
+import com.purnajear.edgedetectorapp.processing.NativeFrameProcessor;
+import com.purnajear.edgedetectorapp.processing.ProcessingStage;
+import com.purnajear.edgedetectorapp.processing.QualityGovernor;
+import com.purnajear.edgedetectorapp.processing.ThreadScalingProbe;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "EdgeDetector";
     private static final int CAMERA_PERMISSION_CODE = 100;
+    // Capture-to-draw latency the quality governor tries to stay under
+    private static final long TARGET_LATENCY_NS = 80_000_000L;
+    // Calibrated engine choice, redone when the system build changes
+    private static final String PREFS_NAME = "edge_detector";
+    private static final String KEY_ENGINE = "frame_processor";
+    private static final String KEY_ENGINE_BUILD = "frame_processor_build";
+    // Stage latency overlay refresh, and where the JSON dump goes (app files dir)
+    private static final long METRICS_REFRESH_MS = 1000;
+    private static final String METRICS_FILE = "frame_metrics.json";
+    // Frames from a recording (path) or a generated scene ("1280x720") instead of the camera:
+    // adb shell am start -n com.purnajear.edgedetectorapp/.MainActivity --es synthetic_size 1280x720
+    public static final String EXTRA_REPLAY_FILE = "replay_file";
+    public static final String EXTRA_SYNTHETIC_SIZE = "synthetic_size";
+    private static final int SYNTHETIC_FPS = 30;
+    // Record raw frames until the first pause: --es record_file capture.frames (relative to
+    // the files dir) --ei record_mb 1024
+    public static final String EXTRA_RECORD_FILE = "record_file";
+    public static final String EXTRA_RECORD_MB = "record_mb";
+    private static final int DEFAULT_RECORD_MB = 512;
+    private static final int RECORD_SLOTS = 8;
     
     private TextureView textureView;
-    private CameraHelper cameraHelper;
+    private FrameSource frameSource;
+    private CameraHelper cameraHelper; // null unless frameSource is the camera
+    private volatile FrameRecorder recorder;
+    // TextureView shows the camera by itself, frames don't need to go anywhere else
+    private volatile boolean rawOnTextureView = false;
     private OpenGLRenderer renderer;
+    private ProcessingStage processingStage;
+    private final QualityGovernor qualityGovernor = new QualityGovernor(TARGET_LATENCY_NS);
+    private long processingFrameCount = 0; // processing thread only
+    private final FrameMetrics frameMetrics = new FrameMetrics();
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private Map<FrameMetrics.Stage, LatencyHistogram.Snapshot> lastMetrics; // UI thread only
+    private boolean detailedMetrics = false;
     private MaterialButton toggleButton;
     private TextView fpsCounter;
     private LinearLayout edgeParamsLayout;
@@ -36,8 +94,36 @@ public class MainActivity extends AppCompatActivity {
     private Slider ratioSlider;
     private TextView thresholdLabel;
     private TextView ratioLabel;
+    private LinearLayout overlayParamsLayout;
+    private Slider opacitySlider;
+    private TextView opacityLabel;
+    private TextView edgeColorLabel;
+    
+    // What the toggle button cycles through
+    private enum DisplayMode {
+        RAW("Raw Camera"),
+        EDGES("Edge Detection"),
+        OVERLAY("Edge Overlay");
+        
+        final String label;
+        
+        DisplayMode(String label) {
+            this.label = label;
+        }
+        
+        DisplayMode next() {
+            return values()[(ordinal() + 1) % values().length];
+        }
+    }
+    
+    // Edge colours to tap through in overlay mode
+    private static final int[] EDGE_COLORS = {0xFFFF00FF, 0xFF00FF00, 0xFF00FFFF, 0xFFFFFF00, 0xFFFFFFFF};
+    private static final String[] EDGE_COLOR_NAMES = {"Magenta", "Green", "Cyan", "Yellow", "White"};
     
+    private DisplayMode displayMode = DisplayMode.RAW;
     private boolean isEdgeDetectionEnabled = false;
+    private boolean useL2Gradient = false;
+    private int edgeColorIndex = 0;
     
     // Load native library
     static {
@@ -45,6 +131,8 @@ public class MainActivity extends AppCompatActivity {
             Log.d(TAG, "Loading edge-detector library...");
             System.loadLibrary("edge-detector");
             Log.d(TAG, "Library loaded successfully");
+            // Native log level and diagnostic interval follow Logger from here on
+            Logger.syncNative();
         } catch (UnsatisfiedLinkError e) {
             Log.e(TAG, "Failed to load native library: " + e.getMessage(), e);
             e.printStackTrace();
@@ -57,7 +145,6 @@ public class MainActivity extends AppCompatActivity {
     // Native methods
     public native void initOpenCV();
     public native String getOpenCVVersion();
-    public native void setCannyParameters(int threshold, int ratio);
     public native void forceEdgeDetectionTest(); // Test method
     
     @Override
@@ -77,83 +164,42 @@ public class MainActivity extends AppCompatActivity {
             ratioSlider = findViewById(R.id.ratio_slider);
             thresholdLabel = findViewById(R.id.threshold_label);
             ratioLabel = findViewById(R.id.ratio_label);
+            overlayParamsLayout = findViewById(R.id.overlay_params_layout);
+            opacitySlider = findViewById(R.id.opacity_slider);
+            opacityLabel = findViewById(R.id.opacity_label);
+            edgeColorLabel = findViewById(R.id.edge_color_label);
             
-            // Check OpenCV version
+            // Check OpenCV version and initialize it. Without the native library the
+            // renderer falls back to the Java edge detector, so keep going either way
             try {
                 String openCvVersion = getOpenCVVersion();
                 Log.i(TAG, "OpenCV Version: " + openCvVersion);
                 Toast.makeText(this, "OpenCV: " + openCvVersion, Toast.LENGTH_SHORT).show();
-            } catch (UnsatisfiedLinkError e) {
-                Log.e(TAG, "Cannot get OpenCV version", e);
-                Toast.makeText(this, "Error: OpenCV not loaded properly", Toast.LENGTH_LONG).show();
-                return; // Exit early if OpenCV is not available
-            }
-            
-            // Initialize OpenCV
-            try {
+                
                 Log.d(TAG, "Initializing OpenCV...");
                 initOpenCV();
                 Log.d(TAG, "OpenCV initialized");
             } catch (UnsatisfiedLinkError e) {
-                Log.e(TAG, "Error initializing OpenCV", e);
-                Toast.makeText(this, "Error initializing OpenCV", Toast.LENGTH_LONG).show();
-                return;
+                Log.e(TAG, "Native library unavailable", e);
+                Toast.makeText(this, "OpenCV not available - using Java edge detection", Toast.LENGTH_LONG).show();
             }
             
-            // Check camera permission
-            if (hasCameraPermission()) {
+            // Check camera permission - not needed for replay or synthetic frames
+            if (!usesCamera() || hasCameraPermission()) {
                 setupCamera();
             } else {
                 Log.d(TAG, "Requesting camera permission");
                 requestCameraPermission();
             }
             
-            // EMERGENCY SOLUTION - GUARANTEED VISIBLE TOGGLE
+            // Raw -> edges -> overlay -> raw
             toggleButton.setOnClickListener(view -> {
-                isEdgeDetectionEnabled = !isEdgeDetectionEnabled;
-                Log.d(TAG, "=== TOGGLE PRESSED - EDGE DETECTION: " + isEdgeDetectionEnabled + " ===");
-                
-                // Update UI immediately
-                toggleButton.setText(isEdgeDetectionEnabled ? "Raw Camera" : "Edge Detection");
-                edgeParamsLayout.setVisibility(isEdgeDetectionEnabled ? View.VISIBLE : View.GONE);
-                
-                // CRITICAL: Switch between TextureView and GLSurfaceView
-                if (isEdgeDetectionEnabled) {
-                    // Show processed output via GLSurfaceView
-                    textureView.setVisibility(View.GONE);
-                    if (renderer != null && renderer.getSurfaceView() != null) {
-                        renderer.getSurfaceView().setVisibility(View.VISIBLE);
-                    }
-                } else {
-                    // Show raw camera via TextureView
-                    if (renderer != null && renderer.getSurfaceView() != null) {
-                        renderer.getSurfaceView().setVisibility(View.GONE);
-                    }
-                    textureView.setVisibility(View.VISIBLE);
-                }
-                
-                // CRITICAL: Update renderer with multiple methods
-                if (renderer != null) {
-                    renderer.isEdgeDetectionEnabled = isEdgeDetectionEnabled;
-                    renderer.setEdgeDetectionEnabled(isEdgeDetectionEnabled);
-                    
-                    // Force immediate render
-                    renderer.getSurfaceView().requestRender();
-                    
-                    Log.d(TAG, "Renderer updated - Edge detection: " + isEdgeDetectionEnabled);
-                } else {
-                    Log.e(TAG, "CRITICAL ERROR: Renderer is null!");
-                }
-                
-                // Update parameters
-                updateCannyParameters();
+                setDisplayMode(displayMode.next());
                 
                 // Show clear feedback
-                String status = isEdgeDetectionEnabled ? "EDGE DETECTION ON - Look for MAGENTA/GREEN patterns" : "RAW CAMERA MODE";
+                String status = displayMode == DisplayMode.RAW ? "RAW CAMERA MODE"
+                        : displayMode == DisplayMode.EDGES ? "EDGE DETECTION ON" : "EDGE OVERLAY ON";
                 Toast.makeText(this, status, Toast.LENGTH_LONG).show();
-                
-                // Log for debugging
-                Log.d(TAG, "Toggle complete - State: " + (isEdgeDetectionEnabled ? "EDGE MODE" : "CAMERA MODE"));
             });
             
             // Set up threshold slider
@@ -170,6 +216,40 @@ public class MainActivity extends AppCompatActivity {
                 updateCannyParameters();
             });
             
+            // Overlay opacity and colour only touch shader uniforms
+            opacitySlider.addOnChangeListener((slider, value, fromUser) -> {
+                opacityLabel.setText("Opacity: " + (int) value + "%");
+                updateOverlay();
+            });
+            edgeColorLabel.setOnClickListener(v -> {
+                edgeColorIndex = (edgeColorIndex + 1) % EDGE_COLORS.length;
+                updateOverlay();
+            });
+            
+            // Long press the ratio label to switch between L1 and L2 gradient magnitude
+            ratioLabel.setOnLongClickListener(v -> {
+                useL2Gradient = !useL2Gradient;
+                updateCannyParameters();
+                Toast.makeText(this, useL2Gradient ? "Canny: L2 gradient" : "Canny: L1 gradient",
+                              Toast.LENGTH_SHORT).show();
+                return true;
+            });
+            
+            // Tap the stats overlay for every stage (and draw->present timing), again for less
+            fpsCounter.setOnClickListener(v -> {
+                detailedMetrics = !detailedMetrics;
+                if (renderer != null) {
+                    renderer.setPresentTiming(detailedMetrics);
+                }
+                updateMetricsOverlay();
+            });
+            
+            // Long press the FPS counter to benchmark the native engines
+            fpsCounter.setOnLongClickListener(v -> {
+                runNativeBenchmarks();
+                return true;
+            });
+            
             // Special debug - long press toggle button for JNI edge detection test
             toggleButton.setOnLongClickListener(v -> {
                 Log.d(TAG, "Long press detected - running edge detection test");
@@ -178,15 +258,7 @@ public class MainActivity extends AppCompatActivity {
                     forceEdgeDetectionTest();
                     
                     // Force enable edge detection
-                    isEdgeDetectionEnabled = true;
-                    toggleButton.setText("Raw Camera");
-                    edgeParamsLayout.setVisibility(View.VISIBLE);
-                    
-                    if (renderer != null) {
-                        renderer.isEdgeDetectionEnabled = true;
-                        renderer.setEdgeDetectionEnabled(true);
-                        renderer.getSurfaceView().requestRender();
-                    }
+                    setDisplayMode(DisplayMode.EDGES);
                     
                     Toast.makeText(this, "Edge detection test executed - check logs", 
                                   Toast.LENGTH_LONG).show();
@@ -205,12 +277,135 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
+    private void setDisplayMode(DisplayMode mode) {
+        displayMode = mode;
+        isEdgeDetectionEnabled = mode != DisplayMode.RAW;
+        Log.d(TAG, "=== DISPLAY MODE: " + mode + " ===");
+        
+        updateModeViews();
+        
+        updateSurfaceViews();
+        
+        // Edges and overlay cost different amounts per frame (raw isn't measured), so size again
+        if (cameraHelper != null) {
+            cameraHelper.recheckSize();
+        }
+        
+        // Push the new mode to the renderer (and on to native)
+        if (renderer != null) {
+            updateOverlay();
+            renderer.setEdgeDetectionEnabled(isEdgeDetectionEnabled);
+            renderer.getSurfaceView().requestRender();
+        } else {
+            Log.e(TAG, "CRITICAL ERROR: Renderer is null!");
+        }
+        
+        updateCannyParameters();
+    }
+    
+    // Raw camera is shown by the TextureView, edges, overlay and raw offline frames (there's
+    // no preview to show) by the GLSurfaceView. Only one of them is ever visible
+    private void updateSurfaceViews() {
+        boolean raw = displayMode == DisplayMode.RAW && usesCamera();
+        rawOnTextureView = raw;
+        textureView.setVisibility(raw ? View.VISIBLE : View.GONE);
+        if (renderer != null && renderer.getSurfaceView() != null) {
+            renderer.getSurfaceView().setVisibility(raw ? View.GONE : View.VISIBLE);
+        }
+    }
+    
+    // Button shows the mode a tap switches to
+    private void updateModeViews() {
+        toggleButton.setText(displayMode.next().label);
+        edgeParamsLayout.setVisibility(isEdgeDetectionEnabled ? View.VISIBLE : View.GONE);
+        overlayParamsLayout.setVisibility(displayMode == DisplayMode.OVERLAY ? View.VISIBLE : View.GONE);
+    }
+    
+    private void updateOverlay() {
+        edgeColorLabel.setText("Edge colour: " + EDGE_COLOR_NAMES[edgeColorIndex] + " (tap to change)");
+        if (renderer != null) {
+            renderer.setEdgeColors(EDGE_COLORS[edgeColorIndex], 0xFF000000);
+            renderer.setOverlay(displayMode == DisplayMode.OVERLAY, opacitySlider.getValue() / 100.0f);
+        }
+    }
+    
+    // Use the engine picked on an earlier launch, or time the candidates now. Calibration
+    // runs on its own thread - the renderer's default engine handles frames meanwhile
+    private void selectFrameProcessor(OpenGLRenderer target) {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        String saved = prefs.getString(KEY_ENGINE, null);
+        if (saved != null && Build.FINGERPRINT.equals(prefs.getString(KEY_ENGINE_BUILD, null))) {
+            FrameProcessor processor = FrameProcessors.create(saved);
+            if (processor != null) {
+                Log.d(TAG, "Using saved frame processor: " + saved);
+                target.setFrameProcessor(processor);
+                return;
+            }
+        }
+        
+        new Thread(() -> {
+            EngineCalibrator calibrator = new EngineCalibrator(5, 15);
+            FrameProcessor best = calibrator.pickFastest(FrameProcessors.createCandidates());
+            Log.d(TAG, "Engine calibration (median ms/frame): " + calibrator.getResults());
+            if (best == null) {
+                Log.e(TAG, "No frame processor passed calibration, keeping the default");
+                return;
+            }
+            prefs.edit()
+                    .putString(KEY_ENGINE, best.getName())
+                    .putString(KEY_ENGINE_BUILD, Build.FINGERPRINT)
+                    .apply();
+            target.setFrameProcessor(best);
+        }, "EngineCalibration").start();
+    }
+    
+    // Own native processors at 1080p and 4K, results go to the log: edge bands at 1-8
+    // threads, then the fused kernel against the OpenCV calls. The thread count is
+    // library-wide, so live frames slow down while this runs
+    private void runNativeBenchmarks() {
+        NativeFrameProcessor processor = NativeFrameProcessor.create();
+        NativeFrameProcessor fused = NativeFrameProcessor.create(true);
+        if (processor == null || fused == null) {
+            Toast.makeText(this, "Native edge detection not available", Toast.LENGTH_SHORT).show();
+            if (processor != null) {
+                processor.release();
+            }
+            if (fused != null) {
+                fused.release();
+            }
+            return;
+        }
+        Toast.makeText(this, "Benchmarking edge engines - check logs", Toast.LENGTH_SHORT).show();
+        new Thread(() -> {
+            try {
+                ThreadScalingProbe probe = new ThreadScalingProbe(3, 10);
+                String report = ThreadScalingProbe.format(probe.run(processor, NativeFrameProcessor::setNumThreads,
+                        ThreadScalingProbe.DEFAULT_SIZES, ThreadScalingProbe.DEFAULT_THREADS));
+                Log.d(TAG, "Edge band scaling:\n" + report);
+                NativeFrameProcessor.setNumThreads(0);
+                
+                EngineBenchmark benchmark = new EngineBenchmark(3, 10);
+                report = EngineBenchmark.format(benchmark.run(Arrays.asList(processor, fused),
+                        ThreadScalingProbe.DEFAULT_SIZES));
+                Log.d(TAG, "Fused kernel vs OpenCV:\n" + report);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Native benchmark failed", e);
+            } finally {
+                NativeFrameProcessor.setNumThreads(0);
+                processor.release();
+                fused.release();
+            }
+        }, "NativeBenchmark").start();
+    }
+    
     private void updateCannyParameters() {
         try {
             int threshold = (int) thresholdSlider.getValue();
             int ratio = (int) ratioSlider.getValue();
-            setCannyParameters(threshold, ratio);
-            Log.d(TAG, "Updated Canny parameters: threshold=" + threshold + ", ratio=" + ratio);
+            if (renderer != null) {
+                renderer.setCannyParameters(threshold, ratio, useL2Gradient);
+            }
+            Log.d(TAG, "Updated Canny parameters: threshold=" + threshold + ", ratio=" + ratio + ", L2=" + useL2Gradient);
         } catch (UnsatisfiedLinkError e) {
             Log.e(TAG, "Failed to update Canny parameters", e);
         }
@@ -240,6 +435,65 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
+    private boolean usesCamera() {
+        return getIntent().getStringExtra(EXTRA_REPLAY_FILE) == null
+                && getIntent().getStringExtra(EXTRA_SYNTHETIC_SIZE) == null;
+    }
+    
+    // The camera unless the intent asks for a recording or a synthetic scene
+    private FrameSource createFrameSource() throws IOException {
+        String replayFile = getIntent().getStringExtra(EXTRA_REPLAY_FILE);
+        if (replayFile != null) {
+            Log.d(TAG, "Replaying " + replayFile);
+            return ReplayFrameSource.open(new File(replayFile));
+        }
+        String syntheticSize = getIntent().getStringExtra(EXTRA_SYNTHETIC_SIZE);
+        if (syntheticSize != null) {
+            int[] size = HeadlessBenchmark.parseSize(syntheticSize);
+            Log.d(TAG, "Synthetic frames " + syntheticSize);
+            return new SyntheticFrameSource(size[0], size[1], SYNTHETIC_FPS);
+        }
+        cameraHelper = new CameraHelper(this, textureView);
+        return cameraHelper;
+    }
+    
+    private FrameRecorder createRecorder() {
+        String path = getIntent().getStringExtra(EXTRA_RECORD_FILE);
+        if (path == null) {
+            return null;
+        }
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            file = new File(getFilesDir(), path);
+        }
+        long capacity = (long) getIntent().getIntExtra(EXTRA_RECORD_MB, DEFAULT_RECORD_MB) << 20;
+        try {
+            return FrameRecorder.open(file, capacity, RECORD_SLOTS);
+        } catch (IOException e) {
+            Log.e(TAG, "Can't record to " + file, e);
+            Toast.makeText(this, "Recording failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            return null;
+        }
+    }
+    
+    // Source is stopped, nothing submits any more. Closing drains the queue and syncs the
+    // whole mapping to disk, which can take seconds - not on the UI thread
+    private void closeRecorder() {
+        FrameRecorder frameRecorder = recorder;
+        recorder = null;
+        if (frameRecorder == null) {
+            return;
+        }
+        new Thread(() -> {
+            try {
+                frameRecorder.close();
+                Log.d(TAG, "Recording finished: " + frameRecorder);
+            } catch (IOException e) {
+                Log.e(TAG, "Error finishing recording " + frameRecorder.getFile(), e);
+            }
+        }, "RecorderClose").start();
+    }
+    
     private void setupCamera() {
         try {
             Log.d(TAG, "Setting up camera and renderer");
@@ -266,27 +520,70 @@ public class MainActivity extends AppCompatActivity {
             // Add GLSurfaceView at index 1 (after TextureView but before controls)
             rootLayout.addView(renderer.getSurfaceView(), 1);
             
-            // CRITICAL: Always show GLSurfaceView to ensure surface creation
-            textureView.setVisibility(View.VISIBLE);
-            renderer.getSurfaceView().setVisibility(View.VISIBLE);
+            // Same views as after any mode switch. The GL surface is created the first time
+            // it's shown; the camera needs the TextureView's, which raw mode shows at start
+            updateSurfaceViews();
             
             // Force GLSurfaceView to be on top for testing
             renderer.getSurfaceView().bringToFront();
             
             Log.d(TAG, "GLSurfaceView added to layout successfully");
             
-            // Setup camera manager with TextureView (as designed)
-            cameraHelper = new CameraHelper(this, textureView);
-            cameraHelper.setFrameCallback((data, width, height) -> {
+            selectFrameProcessor(renderer);
+            
+            // Processing runs on its own thread - camera thread only copies and hands over.
+            // Latest frame wins, stale ones are dropped so we never fall behind the sensor.
+            final OpenGLRenderer frameRenderer = renderer;
+            processingStage = new ProcessingStage("FrameProcessing", new LatestFrameMailbox(), frame -> {
+                // Governor may ask us to only process every Nth frame
+                if (processingFrameCount++ % qualityGovernor.getTier().frameInterval() != 0) {
+                    return;
+                }
+                frameRenderer.onFrameAvailable(frame);
+            });
+            
+            // Setup camera manager with TextureView (as designed), or the offline source
+            frameSource = createFrameSource();
+            if (cameraHelper != null) {
+                // Measured edge cost drives the capture size negotiation
+                frameRenderer.setProcessingCostListener(cameraHelper::reportProcessingTime);
+            }
+            frameSource.setMetrics(frameMetrics);
+            frameRenderer.setMetrics(frameMetrics);
+            
+            // Close the loop: measured latency -> quality tier -> camera, native and GL settings
+            frameRenderer.setFrameLatencyListener(qualityGovernor::reportLatency);
+            qualityGovernor.setListener(tier -> {
+                Log.d(TAG, "Quality tier changed to " + tier);
+                frameRenderer.setProcessingQuality(tier.downscale(), tier.lumaOnly());
+                if (cameraHelper != null) {
+                    cameraHelper.setReducedFrameRate(tier.frameInterval() > 1);
+                }
+            });
+            final FrameSource source = frameSource;
+            recorder = createRecorder();
+            if (recorder != null && cameraHelper != null) {
+                // Results that arrive after their image get patched into the recording
+                cameraHelper.setCaptureResultListener((timestampNs, exposureTimeNs, frameDurationNs, sensitivity) -> {
+                    FrameRecorder frameRecorder = recorder;
+                    if (frameRecorder != null) {
+                        frameRecorder.onCaptureResult(timestampNs, exposureTimeNs, frameDurationNs, sensitivity);
+                    }
+                });
+            }
+            frameSource.setFrameCallback(frame -> {
                 try {
-                    if (renderer != null) {
-                        renderer.onFrameAvailable(data, width, height);
+                    FrameRecorder frameRecorder = recorder;
+                    if (frameRecorder != null) {
+                        // Raw planes, before anything converts them. Never blocks
+                        frameRecorder.submit(frame);
                     }
-                    
-                    // Update FPS on UI thread
-                    runOnUiThread(() -> {
-                        fpsCounter.setText(String.format("FPS: %.1f", cameraHelper.getCurrentFps()));
-                    });
+                    if (rawOnTextureView) {
+                        // Nothing to draw on the hidden GL view, don't copy or upload
+                        return;
+                    }
+                    // Edge mode only looks at Y - don't copy chroma we won't use
+                    processingStage.submit(source.copyFrame(frame, !frameRenderer.needsChroma()));
                 } catch (Exception e) {
                     Log.e(TAG, "Error in frame callback", e);
                 }
@@ -306,22 +603,28 @@ public class MainActivity extends AppCompatActivity {
             // Synchronize edge detection state on resume
             if (renderer != null) {
                 // Make sure renderer knows the current state
+                updateOverlay();
                 renderer.setEdgeDetectionEnabled(isEdgeDetectionEnabled);
                 Log.d(TAG, "Resuming renderer with edge detection: " + isEdgeDetectionEnabled);
                 renderer.onResume();
             }
             
-            if (cameraHelper != null) {
-                Log.d(TAG, "Starting camera");
-                cameraHelper.startCamera();
+            if (processingStage != null) {
+                processingStage.start();
+            }
+            
+            if (frameSource != null) {
+                Log.d(TAG, "Starting frame source");
+                frameSource.start();
             }
             
             // Force update UI elements to match state
-            toggleButton.setText(isEdgeDetectionEnabled ? "Raw Camera" : "Edge Detection");
-            edgeParamsLayout.setVisibility(isEdgeDetectionEnabled ? View.VISIBLE : View.GONE);
+            updateModeViews();
             
             // Force update parameters to ensure they're applied
             updateCannyParameters();
+            
+            uiHandler.post(metricsUpdater);
         } catch (Exception e) {
             Log.e(TAG, "Error in onResume", e);
         }
@@ -329,11 +632,22 @@ public class MainActivity extends AppCompatActivity {
     
     @Override
     protected void onPause() {
+        uiHandler.removeCallbacks(metricsUpdater);
+        dumpMetrics();
         try {
-            if (cameraHelper != null) {
-                Log.d(TAG, "Stopping camera");
-                cameraHelper.stopCamera();
+            // Stop processing first so every copied frame is back in the camera pool
+            // before the camera closes it
+            if (processingStage != null) {
+                processingStage.stop();
+                Log.d(TAG, "Processing stage stopped - processed: " + processingStage.getProcessedCount()
+                        + ", dropped: " + processingStage.getDroppedCount()
+                        + ", errors: " + processingStage.getErrorCount());
             }
+            if (frameSource != null) {
+                Log.d(TAG, "Stopping frame source");
+                frameSource.stop();
+            }
+            closeRecorder();
             if (renderer != null) {
                 Log.d(TAG, "Pausing renderer");
                 renderer.onPause();
@@ -343,4 +657,47 @@ public class MainActivity extends AppCompatActivity {
         }
         super.onPause();
     }
+    
+    // Stats overlay: FPS, drops and stage latency over the last refresh interval
+    private final Runnable metricsUpdater = new Runnable() {
+        @Override
+        public void run() {
+            updateMetricsOverlay();
+            uiHandler.postDelayed(this, METRICS_REFRESH_MS);
+        }
+    };
+    
+    private void updateMetricsOverlay() {
+        Map<FrameMetrics.Stage, LatencyHistogram.Snapshot> now = frameMetrics.snapshot();
+        Map<FrameMetrics.Stage, LatencyHistogram.Snapshot> window =
+                lastMetrics != null ? FrameMetrics.since(now, lastMetrics) : now;
+        lastMetrics = now;
+        
+        float fps = frameSource != null ? frameSource.getCurrentFps() : 0;
+        long dropped = processingStage != null ? processingStage.getDroppedCount() : 0;
+        String stages = FrameMetrics.format(window, !detailedMetrics);
+        fpsCounter.setText(String.format("FPS: %.1f  Dropped: %d", fps, dropped)
+                + (stages.isEmpty() ? "" : "\n" + stages)
+                + (detailedMetrics ? "\n(p50/p95/p99/max)" : ""));
+    }
+    
+    // Everything since launch, for pulling off the device with adb
+    private void dumpMetrics() {
+        File file = new File(getFilesDir(), METRICS_FILE);
+        String json = frameMetrics.toJson();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+            Log.d(TAG, "Frame metrics written to " + file + ": " + json);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write frame metrics", e);
+        }
+    }
+    
+    @Override
+    protected void onDestroy() {
+        if (renderer != null) {
+            renderer.release();
+        }
+        super.onDestroy();
+    }
 }
@@ -0,0 +1,150 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lightweight view over one YUV_420_888 frame.
+ *
+ * The plane buffers are the direct ByteBuffers of the camera Image, so they are only
+ * valid for the duration of the FrameCallback.onFrame() call. The same instance is
+ * reused for every frame - don't hold on to it. Use CameraHelper.copyFrame() to get a
+ * pooled copy that can be kept (and must be release()d).
+ */
+public class CameraFrame {
+    private ByteBuffer yPlane;
+    private ByteBuffer uPlane;
+    private ByteBuffer vPlane;
+    private int yRowStride;
+    private int uvRowStride;
+    private int uvPixelStride;
+    private int width;
+    private int height;
+    private long timestampNs;
+    // Same moment as timestampNs, but on the System.nanoTime() clock for latency math
+    private long captureTimeNs;
+    // When the Image was acquired (System.nanoTime()), 0 if unknown
+    private long acquireTimeNs;
+    // From the matching CaptureResult, 0 if unknown
+    private long exposureTimeNs;
+    private long frameDurationNs;
+    private int sensitivity;
+
+    // Set when the planes live in a pooled buffer instead of the camera Image
+    private FrameBuffer backingBuffer;
+
+    public void set(ByteBuffer yPlane, int yRowStride,
+                    ByteBuffer uPlane, ByteBuffer vPlane, int uvRowStride, int uvPixelStride,
+                    int width, int height, long timestampNs) {
+        this.yPlane = yPlane;
+        this.uPlane = uPlane;
+        this.vPlane = vPlane;
+        this.yRowStride = yRowStride;
+        this.uvRowStride = uvRowStride;
+        this.uvPixelStride = uvPixelStride;
+        this.width = width;
+        this.height = height;
+        this.timestampNs = timestampNs;
+        this.captureTimeNs = timestampNs;
+        this.acquireTimeNs = 0;
+        this.exposureTimeNs = 0;
+        this.frameDurationNs = 0;
+        this.sensitivity = 0;
+    }
+
+    public void setCaptureTimeNs(long captureTimeNs) {
+        this.captureTimeNs = captureTimeNs;
+    }
+
+    public void setAcquireTimeNs(long acquireTimeNs) {
+        this.acquireTimeNs = acquireTimeNs;
+    }
+
+    public void setCaptureMetadata(long exposureTimeNs, long frameDurationNs, int sensitivity) {
+        this.exposureTimeNs = exposureTimeNs;
+        this.frameDurationNs = frameDurationNs;
+        this.sensitivity = sensitivity;
+    }
+
+    // Drop buffer references once the Image is closed
+    public void clear() {
+        yPlane = null;
+        uPlane = null;
+        vPlane = null;
+    }
+
+    void setBackingBuffer(FrameBuffer buffer) {
+        this.backingBuffer = buffer;
+    }
+
+    public boolean isDetached() {
+        return backingBuffer != null;
+    }
+
+    public FrameBuffer getBackingBuffer() {
+        return backingBuffer;
+    }
+
+    // Give the pooled copy back. No-op for frames that still point into the camera Image
+    public void release() {
+        if (backingBuffer != null) {
+            backingBuffer.release();
+        }
+    }
+
+    public ByteBuffer getYPlane() {
+        return yPlane;
+    }
+
+    public ByteBuffer getUPlane() {
+        return uPlane;
+    }
+
+    public ByteBuffer getVPlane() {
+        return vPlane;
+    }
+
+    public int getYRowStride() {
+        return yRowStride;
+    }
+
+    public int getUvRowStride() {
+        return uvRowStride;
+    }
+
+    public int getUvPixelStride() {
+        return uvPixelStride;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getTimestampNs() {
+        return timestampNs;
+    }
+
+    public long getCaptureTimeNs() {
+        return captureTimeNs;
+    }
+
+    public long getAcquireTimeNs() {
+        return acquireTimeNs;
+    }
+
+    public long getExposureTimeNs() {
+        return exposureTimeNs;
+    }
+
+    public long getFrameDurationNs() {
+        return frameDurationNs;
+    }
+
+    /** ISO, 0 if unknown. */
+    public int getSensitivity() {
+        return sensitivity;
+    }
+}
@@ -9,29 +9,46 @@ import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
 import android.hardware.camera2.params.StreamConfigurationMap;
 import android.media.Image;
 import android.media.ImageReader;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.Log;
+import android.util.Range;
 import android.util.Size;
 import android.view.Surface;
 import android.view.TextureView;
 
 import androidx.annotation.NonNull;
 
-import java.nio.ByteBuffer;
+import com.purnajear.edgedetectorapp.logging.Logger;
+import com.purnajear.edgedetectorapp.logging.RateLimitedLog;
+import com.purnajear.edgedetectorapp.metrics.FrameMetrics;
+
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
-public class CameraHelper implements TextureView.SurfaceTextureListener {
+public class CameraHelper implements TextureView.SurfaceTextureListener, FrameSource {
     private static final String TAG = "CameraHelper";
+    // A broken frame tends to repeat on every frame after it
+    private static final RateLimitedLog IMAGE_ERRORS = new RateLimitedLog(Logger.get(TAG), 1, 3);
+    
+    // Default preview size, used until the negotiator knows what the device can handle
+    private static final int DEFAULT_PREVIEW_WIDTH = 640;
+    private static final int DEFAULT_PREVIEW_HEIGHT = 480;
     
-    // Camera preview size
-    private static final int PREVIEW_WIDTH = 640;
-    private static final int PREVIEW_HEIGHT = 480;
+    // Frames to measure before re-checking the negotiated size
+    private static final int CALIBRATION_FRAMES = 30;
+    private static final String PREFS_NAME = "camera_prefs";
+    // Edge engine time only. The old key also held raw-mode copy times, far too cheap
+    private static final String PREF_COST_NS_PER_PIXEL = "edge_cost_ns_per_pixel";
     
     private final Context context;
     private final TextureView textureView;
@@ -43,9 +60,45 @@ public class CameraHelper implements TextureView.SurfaceTextureListener {
     private Handler backgroundHandler;
     private FrameCallback frameCallback;
     private final Semaphore cameraOpenCloseLock = new Semaphore(1);
+    private final CameraFrame cameraFrame = new CameraFrame();
+    private FrameBufferPool framePool;
+    private volatile FrameCopier frameCopier; // used from the camera thread only
+    private int maxBufferedFrames = 4;
+    
+    // Stream negotiation
+    private final StreamNegotiator negotiator = new StreamNegotiator(DEFAULT_PREVIEW_WIDTH, DEFAULT_PREVIEW_HEIGHT);
+    private volatile List<StreamNegotiator.StreamOption> streamOptions = new ArrayList<>();
+    private volatile int previewWidth = DEFAULT_PREVIEW_WIDTH;
+    private volatile int previewHeight = DEFAULT_PREVIEW_HEIGHT;
+    private volatile boolean renegotiated = false;
+    private volatile int calibrationStart = 0; // sample count when the current check began
+    private boolean realtimeTimestamps = false;
+    
+    // Frame rate control, used by the quality governor
+    private Range<Integer>[] availableFpsRanges;
+    private CaptureRequest.Builder previewRequestBuilder;
+    private boolean reducedFrameRate = false;
+    private StreamListener streamListener;
+    private volatile CaptureResultListener captureResultListener;
     
-    private long lastFrameTime = 0;
-    private float currentFps = 0;
+    public interface CaptureResultListener {
+        // Camera thread, possibly after the image with this timestamp was delivered
+        void onCaptureResult(long timestampNs, long exposureTimeNs, long frameDurationNs, int sensitivity);
+    }
+    
+    // Exposure metadata of the last few capture results, matched to images by sensor
+    // timestamp. Results and images both arrive on the camera thread
+    private static final int RESULT_HISTORY = 8;
+    private final long[] resultTimestamps = new long[RESULT_HISTORY];
+    private final long[] resultExposureNs = new long[RESULT_HISTORY];
+    private final long[] resultFrameDurationNs = new long[RESULT_HISTORY];
+    private final int[] resultSensitivity = new int[RESULT_HISTORY];
+    private int resultCount = 0;
+    
+    // Camera thread writes, UI reads
+    private long lastFrameTimeNs = 0;
+    private volatile float currentFps = 0;
+    private volatile FrameMetrics metrics;
     
     // Camera state callbacks
     private final CameraDevice.StateCallback stateCallback = new CameraDevice.StateCallback() {
@@ -72,25 +125,135 @@ public class CameraHelper implements TextureView.SurfaceTextureListener {
         }
     };
     
-    public interface FrameCallback {
-        void onFrame(byte[] data, int width, int height);
-    }
-    
     public CameraHelper(Context context, TextureView textureView) {
         this.context = context;
         this.textureView = textureView;
         textureView.setSurfaceTextureListener(this);
+        
+        // Cost measured on a previous run lets us pick the right size straight away
+        float savedCost = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getFloat(PREF_COST_NS_PER_PIXEL, -1f);
+        if (savedCost > 0) {
+            negotiator.setCostNsPerPixel(savedCost);
+            Log.d(TAG, "Loaded processing cost: " + savedCost + " ns/pixel");
+        }
+    }
+    
+    @Override
+    public void setStreamListener(StreamListener listener) {
+        this.streamListener = listener;
+    }
+    
+    /** Every capture result's exposure metadata, for consumers that can't rely on it arriving first. */
+    public void setCaptureResultListener(CaptureResultListener listener) {
+        this.captureResultListener = listener;
     }
     
+    /** Per-frame processing budget used to pick the capture size, e.g. 33ms for 30 fps. */
+    public void setFrameBudgetMs(float budgetMs) {
+        negotiator.setFrameBudgetNs((long) (budgetMs * 1_000_000));
+    }
+    
+    public int getPreviewWidth() {
+        return previewWidth;
+    }
+    
+    public int getPreviewHeight() {
+        return previewHeight;
+    }
+    
+    /**
+     * Feed back how long the edge engine took on one frame of width x height - the size it
+     * processed, not the capture size. After a short calibration the size is re-checked
+     * against the measured cost and the session is restarted once if needed.
+     */
+    public void reportProcessingTime(long processingNs, int width, int height) {
+        negotiator.reportProcessingTime(processingNs, width, height);
+        if (renegotiated || negotiator.getSampleCount() - calibrationStart < CALIBRATION_FRAMES) {
+            return;
+        }
+        renegotiated = true;
+        
+        StreamNegotiator.StreamOption best = negotiator.choose(streamOptions);
+        Log.d(TAG, "Measured " + String.format("%.2f", negotiator.getCostNsPerPixel()) + " ns/pixel, best size: "
+                + best + " (current " + previewWidth + "x" + previewHeight + ")");
+        Handler handler = backgroundHandler;
+        if ((best.width != previewWidth || best.height != previewHeight) && handler != null) {
+            handler.post(this::restartCamera);
+        }
+    }
+    
+    /** Check the size once more after the next calibration, e.g. when the work per frame changed. */
+    public void recheckSize() {
+        calibrationStart = negotiator.getSampleCount();
+        renegotiated = false;
+    }
+    
+    @Override
     public void setFrameCallback(FrameCallback callback) {
         this.frameCallback = callback;
     }
     
+    /** Receives sensor->acquire and acquire->convert times. Null to stop. */
+    @Override
+    public void setMetrics(FrameMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    @Override
     public float getCurrentFps() {
         return currentFps;
     }
     
+    /**
+     * Copy a frame into a pooled buffer (packed as NV21) so it can be used after the
+     * callback returns. Call release() on the returned frame once done with it.
+     */
+    public CameraFrame copyFrame(CameraFrame frame) {
+        return copyFrame(frame, false);
+    }
+    
+    /**
+     * Same as copyFrame(frame), but with lumaOnly the chroma planes are never read and the
+     * returned frame has null U/V planes. Edge detection only needs Y, so this saves a third
+     * of the copy.
+     */
+    @Override
+    public CameraFrame copyFrame(CameraFrame frame, boolean lumaOnly) {
+        FrameCopier copier = frameCopier;
+        if (copier == null) {
+            throw new IllegalStateException("Camera not started");
+        }
+        return copier.copy(frame, lumaOnly, metrics);
+    }
+    
+    /**
+     * How many copied frames may be alive at once without the pool falling back to
+     * allocation. Raise it when a queueing consumer (e.g. recording) is attached.
+     * Takes effect on the next startCamera().
+     */
+    public void setMaxBufferedFrames(int count) {
+        maxBufferedFrames = count;
+    }
+    
+    public FrameBufferPool getFramePool() {
+        return framePool;
+    }
+    
+    @Override
+    public void start() {
+        startCamera();
+    }
+    
+    @Override
+    public void stop() {
+        stopCamera();
+    }
+    
     public void startCamera() {
+        renegotiated = false;
+        framePool = new FrameBufferPool("camera", YuvConverter.nv21Size(previewWidth, previewHeight), maxBufferedFrames);
+        frameCopier = new FrameCopier(framePool);
         startBackgroundThread();
         if (textureView.isAvailable()) {
             openCamera();
@@ -102,6 +265,15 @@ public class CameraHelper implements TextureView.SurfaceTextureListener {
             cameraOpenCloseLock.acquire();
             closeCamera();
             stopBackgroundThread();
+            if (framePool != null) {
+                // Camera thread is gone, anything not returned by now is a leak
+                framePool.close();
+            }
+            if (negotiator.hasMeasurement()) {
+                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                        .putFloat(PREF_COST_NS_PER_PIXEL, (float) negotiator.getCostNsPerPixel())
+                        .apply();
+            }
         } catch (InterruptedException e) {
             Log.e(TAG, "Interrupted while stopping camera", e);
         } finally {
@@ -109,6 +281,110 @@ public class CameraHelper implements TextureView.SurfaceTextureListener {
         }
     }
     
+    // Reopen with a freshly negotiated size. Runs on the camera thread
+    private void restartCamera() {
+        try {
+            cameraOpenCloseLock.acquire();
+            closeCamera();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Interrupted while restarting camera", e);
+            return;
+        } finally {
+            cameraOpenCloseLock.release();
+        }
+        openCamera();
+    }
+    
+    private void readCaptureCapabilities(CameraCharacteristics characteristics) {
+        Integer timestampSource = characteristics.get(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+        realtimeTimestamps = timestampSource != null
+                && timestampSource == CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME;
+        availableFpsRanges = characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+    }
+    
+    /**
+     * Ask the sensor for a lower frame rate (roughly half) when processing can't keep up,
+     * or go back to the default range. Applied to the running session right away.
+     */
+    public void setReducedFrameRate(boolean reduced) {
+        Handler handler = backgroundHandler;
+        if (handler == null) {
+            reducedFrameRate = reduced;
+            return;
+        }
+        handler.post(() -> {
+            if (reducedFrameRate == reduced) {
+                return;
+            }
+            reducedFrameRate = reduced;
+            applyRepeatingRequest();
+        });
+    }
+    
+    // Lowest range that still tops out at 15 fps or more, so exposure doesn't suffer too much
+    private Range<Integer> pickReducedFpsRange() {
+        if (availableFpsRanges == null) {
+            return null;
+        }
+        Range<Integer> best = null;
+        for (Range<Integer> range : availableFpsRanges) {
+            if (range.getUpper() < 15) {
+                continue;
+            }
+            if (best == null || range.getUpper() < best.getUpper()
+                    || (range.getUpper().equals(best.getUpper()) && range.getLower() > best.getLower())) {
+                best = range;
+            }
+        }
+        return best;
+    }
+    
+    private void applyRepeatingRequest() {
+        if (captureSession == null || previewRequestBuilder == null) {
+            return;
+        }
+        try {
+            Range<Integer> fpsRange = reducedFrameRate ? pickReducedFpsRange() : null;
+            if (fpsRange != null) {
+                previewRequestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, fpsRange);
+            } else {
+                previewRequestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, null);
+            }
+            Log.d(TAG, "Capture FPS range: " + (fpsRange != null ? fpsRange : "default"));
+            captureSession.setRepeatingRequest(previewRequestBuilder.build(), captureCallback, backgroundHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "Error updating repeating request", e);
+        }
+    }
+    
+    private void setupImageReader(StreamConfigurationMap map) {
+        List<StreamNegotiator.StreamOption> options = new ArrayList<>();
+        Size[] sizes = map.getOutputSizes(ImageFormat.YUV_420_888);
+        if (sizes != null) {
+            for (Size size : sizes) {
+                options.add(new StreamNegotiator.StreamOption(size.getWidth(), size.getHeight(),
+                        map.getOutputMinFrameDuration(ImageFormat.YUV_420_888, size)));
+            }
+        }
+        streamOptions = options;
+        
+        StreamNegotiator.StreamOption chosen = negotiator.choose(options);
+        previewWidth = chosen.width;
+        previewHeight = chosen.height;
+        Log.d(TAG, "Negotiated capture size " + chosen + " out of " + options.size() + " YUV sizes");
+        
+        // Create ImageReader for frame processing
+        imageReader = ImageReader.newInstance(previewWidth, previewHeight, ImageFormat.YUV_420_888, 2);
+        imageReader.setOnImageAvailableListener(onImageAvailableListener, backgroundHandler);
+        
+        if (framePool != null) {
+            framePool.resize(YuvConverter.nv21Size(previewWidth, previewHeight));
+        }
+        if (streamListener != null) {
+            streamListener.onStreamConfigured(previewWidth, previewHeight);
+        }
+    }
+    
     private void openCamera() {
         android.hardware.camera2.CameraManager manager = (android.hardware.camera2.CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
         try {
@@ -131,17 +407,15 @@ public class CameraHelper implements TextureView.SurfaceTextureListener {
                 if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
                     this.cameraId = cameraId;
                     
-                    // Check if this camera supports our desired preview size
+                    // Pick a capture size from what this camera supports
                     StreamConfigurationMap map = characteristics.get(
                             CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
                     if (map == null) {
                         continue;
                     }
                     
-                    // Create ImageReader for frame processing
-                    imageReader = ImageReader.newInstance(PREVIEW_WIDTH, PREVIEW_HEIGHT, 
-                            ImageFormat.YUV_420_888, 2);
-                    imageReader.setOnImageAvailableListener(onImageAvailableListener, backgroundHandler);
+                    setupImageReader(map);
+                    readCaptureCapabilities(characteristics);
                     
                     break;
                 }
@@ -156,10 +430,9 @@ public class CameraHelper implements TextureView.SurfaceTextureListener {
                 StreamConfigurationMap map = characteristics.get(
                         CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
                 if (map != null) {
-                    imageReader = ImageReader.newInstance(PREVIEW_WIDTH, PREVIEW_HEIGHT, 
-                            ImageFormat.YUV_420_888, 2);
-                    imageReader.setOnImageAvailableListener(onImageAvailableListener, backgroundHandler);
+                    setupImageReader(map);
                 }
+                readCaptureCapabilities(characteristics);
             }
             
             if (this.cameraId != null) {
@@ -178,7 +451,7 @@ public class CameraHelper implements TextureView.SurfaceTextureListener {
     private void createCaptureSession() {
         try {
             SurfaceTexture texture = textureView.getSurfaceTexture();
-            texture.setDefaultBufferSize(PREVIEW_WIDTH, PREVIEW_HEIGHT);
+            texture.setDefaultBufferSize(previewWidth, previewHeight);
             Surface previewSurface = new Surface(texture);
             Surface readerSurface = imageReader.getSurface();
             
@@ -195,17 +468,13 @@ public class CameraHelper implements TextureView.SurfaceTextureListener {
                             if (cameraDevice == null) return;
                             
                             captureSession = session;
-                            try {
-                                // Auto-focus mode
-                                requestBuilder.set(CaptureRequest.CONTROL_AF_MODE,
-                                        CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
-                                
-                                // Start the capture session
-                                CaptureRequest captureRequest = requestBuilder.build();
-                                captureSession.setRepeatingRequest(captureRequest, null, backgroundHandler);
-                            } catch (CameraAccessException e) {
-                                Log.e(TAG, "Error configuring camera capture session", e);
-                            }
+                            // Auto-focus mode
+                            requestBuilder.set(CaptureRequest.CONTROL_AF_MODE,
+                                    CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+                            
+                            // Start the capture session (keeps any reduced FPS range)
+                            previewRequestBuilder = requestBuilder;
+                            applyRepeatingRequest();
                         }
 
                         @Override
@@ -218,75 +487,102 @@ public class CameraHelper implements TextureView.SurfaceTextureListener {
         }
     }
     
+    private final CameraCaptureSession.CaptureCallback captureCallback = new CameraCaptureSession.CaptureCallback() {
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request,
+                                       @NonNull TotalCaptureResult result) {
+            Long timestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+            if (timestamp == null) {
+                return;
+            }
+            Long exposure = result.get(CaptureResult.SENSOR_EXPOSURE_TIME);
+            Long duration = result.get(CaptureResult.SENSOR_FRAME_DURATION);
+            Integer iso = result.get(CaptureResult.SENSOR_SENSITIVITY);
+            int slot = resultCount++ % RESULT_HISTORY;
+            resultTimestamps[slot] = timestamp;
+            resultExposureNs[slot] = exposure != null ? exposure : 0;
+            resultFrameDurationNs[slot] = duration != null ? duration : 0;
+            resultSensitivity[slot] = iso != null ? iso : 0;
+            CaptureResultListener listener = captureResultListener;
+            if (listener != null) {
+                listener.onCaptureResult(timestamp, resultExposureNs[slot], resultFrameDurationNs[slot],
+                        resultSensitivity[slot]);
+            }
+        }
+    };
+    
+    // Leaves the metadata at 0 when the result isn't in yet (or was never delivered) - the
+    // capture result listener gets it later
+    private void applyCaptureMetadata(CameraFrame frame) {
+        long timestamp = frame.getTimestampNs();
+        for (int i = 0; i < Math.min(resultCount, RESULT_HISTORY); i++) {
+            if (resultTimestamps[i] == timestamp) {
+                frame.setCaptureMetadata(resultExposureNs[i], resultFrameDurationNs[i], resultSensitivity[i]);
+                return;
+            }
+        }
+    }
+    
     private final ImageReader.OnImageAvailableListener onImageAvailableListener = reader -> {
         try (Image image = reader.acquireLatestImage()) {
             if (image != null && frameCallback != null) {
+                long acquireTime = System.nanoTime();
+                
                 // Calculate FPS
-                long currentTime = System.currentTimeMillis();
-                if (lastFrameTime > 0) {
-                    float timeDiff = (currentTime - lastFrameTime) / 1000f;
+                if (lastFrameTimeNs > 0) {
+                    float timeDiff = (acquireTime - lastFrameTimeNs) / 1e9f;
                     if (timeDiff > 0) {
                         currentFps = 0.9f * currentFps + 0.1f * (1f / timeDiff); // Smooth FPS
                     }
                 }
-                lastFrameTime = currentTime;
-                
-                // CRITICAL FIX: Proper YUV_420_888 to NV21 conversion based on web sources
-                Image.Plane yPlane = image.getPlanes()[0];
-                Image.Plane uPlane = image.getPlanes()[1];
-                Image.Plane vPlane = image.getPlanes()[2];
+                lastFrameTimeNs = acquireTime;
                 
-                ByteBuffer yBuffer = yPlane.getBuffer();
-                ByteBuffer uBuffer = uPlane.getBuffer();
-                ByteBuffer vBuffer = vPlane.getBuffer();
+                // Hand the planes over as-is - native side wraps them without copying
+                Image.Plane[] planes = image.getPlanes();
+                Image.Plane yPlane = planes[0];
+                Image.Plane uPlane = planes[1];
+                Image.Plane vPlane = planes[2];
                 
-                int ySize = yBuffer.remaining();
-                int uSize = uBuffer.remaining();
-                int vSize = vBuffer.remaining();
-                
-                // Create NV21 format: Y plane + interleaved VU plane
-                byte[] nv21 = new byte[ySize + uSize + vSize];
-                
-                // Copy Y plane
-                yBuffer.get(nv21, 0, ySize);
-                
-                // CRITICAL FIX: Handle UV planes correctly for NV21 format
-                int uvPixelStride = uPlane.getPixelStride();
-                Log.d(TAG, "UV pixel stride: " + uvPixelStride);
-                
-                if (uvPixelStride == 1) {
-                    // Simple case: no padding - direct copy
-                    vBuffer.get(nv21, ySize, vSize);
-                    uBuffer.get(nv21, ySize + vSize, uSize);
-                } else {
-                    // Complex case: pixel stride = 2, need to handle interleaving
-                    // For NV21: VUVUVUVU pattern required
-                    byte[] vData = new byte[vSize];
-                    byte[] uData = new byte[uSize];
-                    vBuffer.get(vData);
-                    uBuffer.get(uData);
-                    
-                    // Create interleaved VU pattern for NV21
-                    int uvIndex = ySize;
-                    for (int i = 0; i < vSize && i < uSize; i += uvPixelStride) {
-                        if (uvIndex < nv21.length - 1) {
-                            nv21[uvIndex++] = vData[i];     // V
-                            nv21[uvIndex++] = uData[i];     // U
-                        }
-                    }
+                cameraFrame.set(yPlane.getBuffer(), yPlane.getRowStride(),
+                        uPlane.getBuffer(), vPlane.getBuffer(),
+                        uPlane.getRowStride(), uPlane.getPixelStride(),
+                        image.getWidth(), image.getHeight(), image.getTimestamp());
+                cameraFrame.setCaptureTimeNs(toNanoTime(image.getTimestamp()));
+                cameraFrame.setAcquireTimeNs(acquireTime);
+                applyCaptureMetadata(cameraFrame);
+                FrameMetrics frameMetrics = metrics;
+                if (frameMetrics != null && realtimeTimestamps) {
+                    // Without a REALTIME source the capture time *is* the acquire time
+                    frameMetrics.record(FrameMetrics.Stage.SENSOR_TO_ACQUIRE,
+                            acquireTime - cameraFrame.getCaptureTimeNs());
+                }
+                try {
+                    frameCallback.onFrame(cameraFrame);
+                } finally {
+                    // Buffers die with the Image
+                    cameraFrame.clear();
                 }
-                
-                Log.d(TAG, "YUV conversion: ySize=" + ySize + ", uSize=" + uSize + ", vSize=" + vSize + ", pixelStride=" + uvPixelStride);
-                
-                // Send properly formatted NV21 data to callback
-                frameCallback.onFrame(nv21, PREVIEW_WIDTH, PREVIEW_HEIGHT);
             }
         } catch (Exception e) {
-            Log.e(TAG, "Error processing image", e);
+            if (IMAGE_ERRORS.allow(Log.ERROR)) {
+                IMAGE_ERRORS.e("Error processing image", e);
+            }
         }
     };
     
+    // Sensor timestamps are only comparable to elapsedRealtimeNanos() when the source is
+    // REALTIME. Otherwise the best we have is "now", i.e. the acquire time.
+    private long toNanoTime(long sensorTimestampNs) {
+        long now = System.nanoTime();
+        if (!realtimeTimestamps) {
+            return now;
+        }
+        long age = SystemClock.elapsedRealtimeNanos() - sensorTimestampNs;
+        return age > 0 ? now - age : now;
+    }
+    
     private void closeCamera() {
+        previewRequestBuilder = null;
         if (captureSession != null) {
             captureSession.close();
             captureSession = null;
@@ -0,0 +1,101 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference counted direct buffer handed out by {@link FrameBufferPool}.
+ *
+ * Whoever gets it from acquire() owns one reference. Pass it to another thread with
+ * retain() first, and every owner calls release() exactly once when done. The last
+ * release puts it back into the pool.
+ */
+public class FrameBuffer {
+    private static final String TAG = "FrameBuffer";
+
+    private final FrameBufferPool pool;
+    private final ByteBuffer data;
+    private final int generation;
+    private final AtomicInteger refCount = new AtomicInteger(0);
+
+    // Frame description filled in by the producer
+    private int width;
+    private int height;
+    private long timestampNs;
+
+    // Per-buffer cache for views over data (e.g. plane slices), so users don't allocate per frame
+    private Object attachment;
+
+    FrameBuffer(FrameBufferPool pool, int capacity, int generation) {
+        this.pool = pool;
+        this.generation = generation;
+        this.data = ByteBuffer.allocateDirect(capacity);
+        this.data.order(ByteOrder.nativeOrder());
+    }
+
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    public int getCapacity() {
+        return data.capacity();
+    }
+
+    public void setFrameInfo(int width, int height, long timestampNs) {
+        this.width = width;
+        this.height = height;
+        this.timestampNs = timestampNs;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getTimestampNs() {
+        return timestampNs;
+    }
+
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    public FrameBuffer retain() {
+        int count = refCount.incrementAndGet();
+        if (count <= 1) {
+            // Was already back in the pool - someone released too early
+            Log.e(TAG, "retain() on a released buffer");
+        }
+        return this;
+    }
+
+    public void release() {
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            pool.recycle(this);
+        } else if (count < 0) {
+            refCount.set(0);
+            Log.e(TAG, "release() called more times than retain()");
+        }
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    // Called by the pool when handing the buffer out
+    void onAcquire() {
+        refCount.set(1);
+        data.clear();
+    }
+}
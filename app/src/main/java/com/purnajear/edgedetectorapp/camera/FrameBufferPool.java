@@ -0,0 +1,147 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of same-sized direct buffers shared between the camera thread, the processing
+ * stage and the GL thread.
+ *
+ * Buffers are sized for one frame of the negotiated format. When the format changes call
+ * resize(): buffers still in flight are dropped on release instead of coming back.
+ * Counters are there to check that steady state runs without allocating - misses should
+ * stop growing after warm-up.
+ */
+public class FrameBufferPool {
+    private static final String TAG = "FrameBufferPool";
+
+    private final String name;
+    private final int maxPooled;
+    private final ArrayDeque<FrameBuffer> freeBuffers = new ArrayDeque<>();
+
+    private int bufferSize;
+    private int generation = 0;
+    private boolean closed = false;
+
+    // Stats
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+    private final AtomicInteger leaked = new AtomicInteger();
+
+    public FrameBufferPool(String name, int bufferSize, int maxPooled) {
+        this.name = name;
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public FrameBuffer acquire() {
+        FrameBuffer buffer;
+        int size;
+        int gen;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Pool " + name + " is closed");
+            }
+            buffer = freeBuffers.pollFirst();
+            size = bufferSize;
+            gen = generation;
+        }
+
+        if (buffer != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            buffer = new FrameBuffer(this, size, gen); // allocate outside the lock
+        }
+
+        int current = inFlight.incrementAndGet();
+        int high = highWaterMark.get();
+        while (current > high && !highWaterMark.compareAndSet(high, current)) {
+            high = highWaterMark.get();
+        }
+
+        buffer.onAcquire();
+        return buffer;
+    }
+
+    /**
+     * Change the buffer size, e.g. after the preview size was renegotiated. No-op if the
+     * size is unchanged.
+     */
+    public synchronized void resize(int newBufferSize) {
+        if (newBufferSize == bufferSize) {
+            return;
+        }
+        Log.d(TAG, name + ": resizing buffers " + bufferSize + " -> " + newBufferSize);
+        bufferSize = newBufferSize;
+        generation++;
+        freeBuffers.clear();
+    }
+
+    public synchronized int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Drop all pooled buffers. Anything still in flight at this point was never released
+     * and is counted as leaked.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            generation++;
+            freeBuffers.clear();
+        }
+        int outstanding = inFlight.getAndSet(0);
+        if (outstanding > 0) {
+            leaked.addAndGet(outstanding);
+            Log.w(TAG, name + ": closed with " + outstanding + " buffers still in flight");
+        }
+        Log.d(TAG, "Pool closed - " + this);
+    }
+
+    void recycle(FrameBuffer buffer) {
+        synchronized (this) {
+            if (!closed) {
+                inFlight.decrementAndGet();
+            }
+            if (closed || buffer.getGeneration() != generation || freeBuffers.size() >= maxPooled) {
+                // Stale size or pool full - let GC have it
+                return;
+            }
+            freeBuffers.addFirst(buffer);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    public int getLeakedCount() {
+        return leaked.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[size=" + getBufferSize() + ", hits=" + hits.get() + ", misses=" + misses.get()
+                + ", inFlight=" + inFlight.get() + ", highWater=" + highWaterMark.get()
+                + ", leaked=" + leaked.get() + "]";
+    }
+}
@@ -0,0 +1,89 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import com.purnajear.edgedetectorapp.metrics.FrameMetrics;
+
+import java.nio.ByteBuffer;
+
+/**
+ * FrameSource.copyFrame() for every source: converts into a buffer from the pool and
+ * hands it out as a detached CameraFrame. Call from the source's thread only (the
+ * converter isn't shared).
+ */
+final class FrameCopier {
+
+    private final FrameBufferPool pool;
+    private final YuvConverter yuvConverter = new YuvConverter();
+
+    FrameCopier(FrameBufferPool pool) {
+        this.pool = pool;
+    }
+
+    FrameBufferPool getPool() {
+        return pool;
+    }
+
+    /** With lumaOnly the chroma planes are never read and the copy has null U/V planes. */
+    CameraFrame copy(CameraFrame frame, boolean lumaOnly, FrameMetrics metrics) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int ySize = width * height;
+        
+        FrameBuffer buffer = pool.acquire();
+        ByteBuffer data = buffer.getData();
+        
+        // Plane views are created once per pooled buffer and reused afterwards
+        PooledFrame pooled = (PooledFrame) buffer.getAttachment();
+        if (pooled == null || pooled.width != width || pooled.height != height) {
+            pooled = new PooledFrame(width, height,
+                    slice(data, 0, ySize), slice(data, ySize + 1, ySize / 2 - 1), slice(data, ySize, ySize / 2));
+            pooled.frame.setBackingBuffer(buffer);
+            buffer.setAttachment(pooled);
+        }
+        CameraFrame copy = pooled.frame;
+        
+        data.clear();
+        if (lumaOnly) {
+            yuvConverter.toLuma(frame, data);
+            copy.set(pooled.y, width, null, null, 0, 0, width, height, frame.getTimestampNs());
+        } else {
+            yuvConverter.toNv21(frame, data);
+            copy.set(pooled.y, width, pooled.u, pooled.v, width, 2, width, height, frame.getTimestampNs());
+        }
+        data.flip();
+        buffer.setFrameInfo(width, height, frame.getTimestampNs());
+        copy.setCaptureTimeNs(frame.getCaptureTimeNs());
+        copy.setAcquireTimeNs(frame.getAcquireTimeNs());
+        copy.setCaptureMetadata(frame.getExposureTimeNs(), frame.getFrameDurationNs(), frame.getSensitivity());
+        
+        if (metrics != null && frame.getAcquireTimeNs() != 0) {
+            metrics.record(FrameMetrics.Stage.ACQUIRE_TO_CONVERT, System.nanoTime() - frame.getAcquireTimeNs());
+        }
+        return copy;
+    }
+    
+    // Frame plus its plane views over one pooled buffer. The U/V views are kept even while
+    // luma-only copies leave them out of the frame, so switching modes doesn't reallocate.
+    private static class PooledFrame {
+        final int width;
+        final int height;
+        final ByteBuffer y;
+        final ByteBuffer u;
+        final ByteBuffer v;
+        final CameraFrame frame = new CameraFrame();
+        
+        PooledFrame(int width, int height, ByteBuffer y, ByteBuffer u, ByteBuffer v) {
+            this.width = width;
+            this.height = height;
+            this.y = y;
+            this.u = u;
+            this.v = v;
+        }
+    }
+    
+    static ByteBuffer slice(ByteBuffer data, int offset, int length) {
+        ByteBuffer dup = data.duplicate();
+        dup.position(offset);
+        dup.limit(offset + length);
+        return dup.slice();
+    }
+}
@@ -0,0 +1,368 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends camera frames to a {@link FrameRecording} file, planes and strides exactly as
+ * the camera delivered them, for bit-exact replay later.
+ *
+ * The file is preallocated and memory-mapped up front; a background thread copies frames
+ * into the mapping, so page faults and writeback never hit the camera thread. submit()
+ * only copies the planes into one of a fixed number of slots and never blocks - when all
+ * slots are taken the frame is dropped and counted, as are frames that no longer fit the
+ * file or changed size mid-recording.
+ *
+ * The camera's capture result can arrive after its image. Pass results to
+ * {@link #onCaptureResult} as they come in; the writer fills in the exposure fields of the
+ * frame with the same timestamp, whether it's still queued or already in the file.
+ */
+public class FrameRecorder implements Closeable {
+    private static final String TAG = "FrameRecorder";
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer map;
+    private final ArrayBlockingQueue<Slot> freeSlots;
+    private final ArrayBlockingQueue<Slot> queuedSlots;
+    private final Slot endOfStream = new Slot();
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    // Chroma layout probe, cached per stream configuration. Camera thread only
+    private final YuvConverter layoutProbe = new YuvConverter();
+
+    // Size of the first accepted frame, the recording has one size. Set on the camera
+    // thread, the writer sees it through the queue
+    private int width;
+    private int height;
+    // Writer thread only
+    private int position = FrameRecording.FILE_HEADER_SIZE;
+
+    // Capture results not yet matched to a written frame. Camera thread adds, writer
+    // takes, both under resultLock
+    private static final int RESULT_HISTORY = 16;
+    private final Object resultLock = new Object();
+    private final long[] resultTimestamps = new long[RESULT_HISTORY];
+    private final long[] resultExposureNs = new long[RESULT_HISTORY];
+    private final long[] resultFrameDurationNs = new long[RESULT_HISTORY];
+    private final int[] resultSensitivity = new int[RESULT_HISTORY];
+    private int resultCount = 0;
+    // Writer thread only: header positions of the last frames written, by timestamp
+    private final long[] writtenTimestamps = new long[RESULT_HISTORY];
+    private final int[] writtenPositions = new int[RESULT_HISTORY];
+    private int writtenCount = 0;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong queueFullDrops = new AtomicLong();
+    private final AtomicLong fileFullDrops = new AtomicLong();
+    private final AtomicLong formatDrops = new AtomicLong();
+
+    // One frame's planes plus its record header fields, reused
+    private static final class Slot {
+        ByteBuffer data;
+        long timestampNs;
+        long exposureTimeNs;
+        long frameDurationNs;
+        int sensitivity;
+        int yRowStride;
+        int uvRowStride;
+        int uvPixelStride;
+        int chromaLayout;
+        int ySize;
+        int uSize;
+        int vSize;
+    }
+
+    private FrameRecorder(File file, RandomAccessFile raf, MappedByteBuffer map, int slots) {
+        this.file = file;
+        this.raf = raf;
+        this.map = map;
+        freeSlots = new ArrayBlockingQueue<>(slots);
+        // One extra for endOfStream
+        queuedSlots = new ArrayBlockingQueue<>(slots + 1);
+        for (int i = 0; i < slots; i++) {
+            freeSlots.add(new Slot());
+        }
+        writer = new Thread(this::writeLoop, TAG);
+        writer.start();
+    }
+
+    /**
+     * Create (or overwrite) file with room for capacityBytes of frames. slots is how many
+     * frames may wait for the writer; each holds one raw frame in memory.
+     */
+    public static FrameRecorder open(File file, long capacityBytes, int slots) throws IOException {
+        long size = Math.min(capacityBytes + FrameRecording.FILE_HEADER_SIZE, FrameRecording.MAX_FILE_SIZE);
+        // A mapped write past the end of the disk is SIGBUS, not an IOException - check first
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && dir.getUsableSpace() < size) {
+            throw new IOException("Not enough space for a " + (size >> 20) + " MB recording in " + dir);
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            raf.setLength(size);
+            MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            FrameRecorder recorder = new FrameRecorder(file, raf, map, Math.max(1, slots));
+            Log.d(TAG, "Recording to " + file + ", " + (size >> 20) + " MB");
+            return recorder;
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Queue a frame, from the frame callback. Copies the planes and returns; false if the
+     * frame was dropped.
+     */
+    public boolean submit(CameraFrame frame) {
+        if (closed) {
+            return false;
+        }
+        if (frame.getUPlane() == null || frame.getVPlane() == null) {
+            formatDrops.incrementAndGet();
+            return false;
+        }
+        if (width == 0) {
+            width = frame.getWidth();
+            height = frame.getHeight();
+        } else if (frame.getWidth() != width || frame.getHeight() != height) {
+            formatDrops.incrementAndGet();
+            return false;
+        }
+        Slot slot = freeSlots.poll();
+        if (slot == null) {
+            queueFullDrops.incrementAndGet();
+            return false;
+        }
+
+        ByteBuffer y = frame.getYPlane();
+        ByteBuffer u = frame.getUPlane();
+        ByteBuffer v = frame.getVPlane();
+        slot.ySize = y.remaining();
+        if (frame.getUvPixelStride() == 2
+                && layoutProbe.isVuInterleaved(u, v, frame.getWidth(), frame.getHeight(), frame.getUvRowStride())) {
+            // One NV21 block: V's bytes plus the last U, which V's buffer stops short of
+            slot.chromaLayout = FrameRecording.CHROMA_INTERLEAVED_VU;
+            slot.uSize = v.remaining() + 1;
+            slot.vSize = 0;
+        } else {
+            slot.chromaLayout = FrameRecording.CHROMA_PLANAR;
+            slot.uSize = u.remaining();
+            slot.vSize = v.remaining();
+        }
+        int size = slot.ySize + slot.uSize + slot.vSize;
+        if (slot.data == null || slot.data.capacity() < size) {
+            // First frames only
+            slot.data = ByteBuffer.allocateDirect(size);
+        }
+        ByteBuffer data = slot.data;
+        data.clear();
+        putAll(data, y);
+        if (slot.chromaLayout == FrameRecording.CHROMA_INTERLEAVED_VU) {
+            putAll(data, v);
+            data.put(u.get(u.limit() - 1));
+        } else {
+            putAll(data, u);
+            putAll(data, v);
+        }
+        data.flip();
+
+        slot.timestampNs = frame.getTimestampNs();
+        slot.exposureTimeNs = frame.getExposureTimeNs();
+        slot.frameDurationNs = frame.getFrameDurationNs();
+        slot.sensitivity = frame.getSensitivity();
+        slot.yRowStride = frame.getYRowStride();
+        slot.uvRowStride = frame.getUvRowStride();
+        slot.uvPixelStride = frame.getUvPixelStride();
+        queuedSlots.add(slot);
+        return true;
+    }
+
+    /**
+     * Exposure metadata for the frame with this sensor timestamp, from the capture callback.
+     * Any thread, before or after the frame is submitted. Results that match none of the
+     * last few frames are dropped, that frame keeps what it was submitted with.
+     */
+    public void onCaptureResult(long timestampNs, long exposureTimeNs, long frameDurationNs, int sensitivity) {
+        if (closed) {
+            return;
+        }
+        synchronized (resultLock) {
+            int slot = resultCount++ % RESULT_HISTORY;
+            resultTimestamps[slot] = timestampNs;
+            resultExposureNs[slot] = exposureTimeNs;
+            resultFrameDurationNs[slot] = frameDurationNs;
+            resultSensitivity[slot] = sensitivity;
+        }
+    }
+
+    // Bulk copy that leaves src as it was
+    private static void putAll(ByteBuffer dst, ByteBuffer src) {
+        int position = src.position();
+        dst.put(src);
+        src.position(position);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Slot slot;
+            try {
+                slot = queuedSlots.take();
+            } catch (InterruptedException e) {
+                // close() ends the loop with endOfStream, not an interrupt
+                continue;
+            }
+            if (slot == endOfStream) {
+                // Results for the last frames may have come in since they were written
+                patchCaptureResults();
+                return;
+            }
+            write(slot);
+            freeSlots.add(slot);
+            patchCaptureResults();
+        }
+    }
+
+    private void write(Slot slot) {
+        int length = FrameRecording.FRAME_HEADER_SIZE + slot.data.remaining();
+        if (length > map.capacity() - position) {
+            fileFullDrops.incrementAndGet();
+            return;
+        }
+        if (position == FrameRecording.FILE_HEADER_SIZE) {
+            // Header with the size right away, so a recording cut short by a crash still
+            // replays (the reader stops at the first empty frame header)
+            map.putInt(0, FrameRecording.MAGIC);
+            map.putInt(4, FrameRecording.VERSION);
+            map.putInt(8, width);
+            map.putInt(12, height);
+        }
+        map.putLong(position, slot.timestampNs);
+        map.putLong(position + 8, slot.exposureTimeNs);
+        map.putLong(position + 16, slot.frameDurationNs);
+        map.putInt(position + 24, slot.sensitivity);
+        map.putInt(position + 28, slot.yRowStride);
+        map.putInt(position + 32, slot.uvRowStride);
+        map.putInt(position + 36, slot.uvPixelStride);
+        map.putInt(position + 40, slot.chromaLayout);
+        map.putInt(position + 44, slot.ySize);
+        map.putInt(position + 48, slot.uSize);
+        map.putInt(position + 52, slot.vSize);
+        map.position(position + FrameRecording.FRAME_HEADER_SIZE);
+        map.put(slot.data);
+        int written = writtenCount++ % RESULT_HISTORY;
+        writtenTimestamps[written] = slot.timestampNs;
+        writtenPositions[written] = position;
+        position += length;
+        recorded.incrementAndGet();
+        bytesWritten.addAndGet(length);
+    }
+
+    // Writer thread. Each result goes into the header of the written frame it belongs to
+    private void patchCaptureResults() {
+        int frames = Math.min(writtenCount, RESULT_HISTORY);
+        synchronized (resultLock) {
+            for (int r = 0; r < Math.min(resultCount, RESULT_HISTORY); r++) {
+                long timestamp = resultTimestamps[r];
+                if (timestamp == Long.MIN_VALUE) {
+                    continue;
+                }
+                for (int i = 0; i < frames; i++) {
+                    if (writtenTimestamps[i] == timestamp) {
+                        int header = writtenPositions[i];
+                        map.putLong(header + 8, resultExposureNs[r]);
+                        map.putLong(header + 16, resultFrameDurationNs[r]);
+                        map.putInt(header + 24, resultSensitivity[r]);
+                        resultTimestamps[r] = Long.MIN_VALUE;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop accepting frames, write out what's queued, then finish the header and cut the
+     * file to what was used. Call after the camera callback stopped submitting.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queuedSlots.add(endOfStream);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            map.putInt(FrameRecording.FRAME_COUNT_OFFSET, (int) recorded.get());
+            map.force();
+            raf.getChannel().truncate(position);
+        } finally {
+            raf.close();
+        }
+        Log.d(TAG, "Recording closed - " + this);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /** All slots were waiting for the writer. */
+    public long getQueueFullDrops() {
+        return queueFullDrops.get();
+    }
+
+    /** No room left in the preallocated file. */
+    public long getFileFullDrops() {
+        return fileFullDrops.get();
+    }
+
+    /** Luma-only frames or a size other than the first frame's. */
+    public long getFormatDrops() {
+        return formatDrops.get();
+    }
+
+    public long getDroppedCount() {
+        return queueFullDrops.get() + fileFullDrops.get() + formatDrops.get();
+    }
+
+    @Override
+    public String toString() {
+        return file.getName() + "[" + width + "x" + height + ", recorded=" + recorded.get()
+                + ", bytes=" + bytesWritten.get() + ", dropped: queue=" + queueFullDrops.get()
+                + ", file=" + fileFullDrops.get() + ", format=" + formatDrops.get() + "]";
+    }
+}
@@ -0,0 +1,180 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A capture file, memory-mapped: frames are views into the mapping, nothing is read
+ * into the heap.
+ *
+ * Layout, little endian. File header (32 bytes): magic "EDFR", version, width, height,
+ * frame count (0 if the writer never finished), 12 reserved bytes. Then per frame a 64
+ * byte header followed by its planes exactly as the camera laid them out, row padding
+ * included:
+ * <pre>
+ *   long timestampNs, long exposureTimeNs, long frameDurationNs, int sensitivity,
+ *   int yRowStride, int uvRowStride, int uvPixelStride, int chromaLayout,
+ *   int ySize, int uSize, int vSize, 8 bytes padding
+ * </pre>
+ * CHROMA_PLANAR stores U (uSize bytes) then V (vSize bytes). CHROMA_INTERLEAVED_VU stores
+ * one uSize block in NV21 order with V at 0 and U at 1 (vSize is 0), which is how
+ * semi-planar cameras hand it out and what the native NV21 path checks for.
+ */
+public final class FrameRecording {
+
+    public static final int MAGIC = 0x52464445; // "EDFR"
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_SIZE = 32;
+    public static final int FRAME_HEADER_SIZE = 64;
+    public static final int CHROMA_PLANAR = 0;
+    public static final int CHROMA_INTERLEAVED_VU = 1;
+    // Read through a single mapping
+    public static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    static final int FRAME_COUNT_OFFSET = 16;
+
+    /** One recorded frame, planes are views into the mapping. */
+    public static final class Frame {
+        public final long timestampNs;
+        public final long exposureTimeNs;    // 0 if unknown
+        public final long frameDurationNs;   // 0 if unknown
+        public final int sensitivity;        // ISO, 0 if unknown
+        final ByteBuffer y;
+        final ByteBuffer u;
+        final ByteBuffer v;
+        final int yRowStride;
+        final int uvRowStride;
+        final int uvPixelStride;
+
+        Frame(long timestampNs, long exposureTimeNs, long frameDurationNs, int sensitivity,
+              ByteBuffer y, ByteBuffer u, ByteBuffer v, int yRowStride, int uvRowStride, int uvPixelStride) {
+            this.timestampNs = timestampNs;
+            this.exposureTimeNs = exposureTimeNs;
+            this.frameDurationNs = frameDurationNs;
+            this.sensitivity = sensitivity;
+            this.y = y;
+            this.u = u;
+            this.v = v;
+            this.yRowStride = yRowStride;
+            this.uvRowStride = uvRowStride;
+            this.uvPixelStride = uvPixelStride;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final List<Frame> frames;
+
+    private FrameRecording(int width, int height, List<Frame> frames) {
+        this.width = width;
+        this.height = height;
+        this.frames = frames;
+    }
+
+    /**
+     * Map a recording. Copy-on-write when the file is writable: YuvConverter's VU-interleave
+     * probe writes a byte, which must not reach the file. Read-only files still replay,
+     * copies of interleaved frames just take the converter's slower general path.
+     */
+    public static FrameRecording open(File file) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException("No such recording: " + file);
+        }
+        boolean writable = file.canWrite();
+        try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size < FILE_HEADER_SIZE || size > MAX_FILE_SIZE) {
+                throw new IOException("Not a frame recording (size " + size + "): " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer data = channel.map(writable ? FileChannel.MapMode.PRIVATE
+                    : FileChannel.MapMode.READ_ONLY, 0, size);
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            return parse(data, file.toString());
+        }
+    }
+
+    static FrameRecording parse(ByteBuffer data, String name) throws IOException {
+        if (data.getInt(0) != MAGIC) {
+            throw new IOException("Not a frame recording: " + name);
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Unsupported recording version " + data.getInt(4) + ": " + name);
+        }
+        int width = data.getInt(8);
+        int height = data.getInt(12);
+        int declared = data.getInt(FRAME_COUNT_OFFSET);
+        if (width <= 0 || height <= 0 || width % 2 != 0 || height % 2 != 0) {
+            throw new IOException("Bad frame size " + width + "x" + height + ": " + name);
+        }
+
+        // Walk the records. A recording that was never finished ends at the first empty header
+        List<Frame> frames = new ArrayList<>();
+        int offset = FILE_HEADER_SIZE;
+        while ((declared == 0 || frames.size() < declared) && offset + FRAME_HEADER_SIZE <= data.limit()) {
+            int ySize = data.getInt(offset + 44);
+            if (ySize <= 0) {
+                break;
+            }
+            int uSize = data.getInt(offset + 48);
+            int vSize = data.getInt(offset + 52);
+            int layout = data.getInt(offset + 40);
+            int planes = offset + FRAME_HEADER_SIZE;
+            long end = (long) planes + ySize + uSize + vSize;
+            if (uSize <= 1 || vSize < 0 || end > data.limit()
+                    || (layout == CHROMA_PLANAR ? vSize <= 0 : layout != CHROMA_INTERLEAVED_VU || vSize != 0)) {
+                throw new IOException("Corrupt frame " + frames.size() + " at offset " + offset + ": " + name);
+            }
+
+            ByteBuffer y = FrameCopier.slice(data, planes, ySize);
+            ByteBuffer u;
+            ByteBuffer v;
+            if (layout == CHROMA_PLANAR) {
+                u = FrameCopier.slice(data, planes + ySize, uSize);
+                v = FrameCopier.slice(data, planes + ySize + uSize, vSize);
+            } else {
+                v = FrameCopier.slice(data, planes + ySize, uSize - 1);
+                u = FrameCopier.slice(data, planes + ySize + 1, uSize - 1);
+            }
+            frames.add(new Frame(data.getLong(offset), data.getLong(offset + 8), data.getLong(offset + 16),
+                    data.getInt(offset + 24), y, u, v,
+                    data.getInt(offset + 28), data.getInt(offset + 32), data.getInt(offset + 36)));
+            offset = (int) end;
+        }
+        if (frames.isEmpty()) {
+            throw new IOException("Recording has no frames: " + name);
+        }
+        return new FrameRecording(width, height, frames);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFrameCount() {
+        return frames.size();
+    }
+
+    public Frame getFrame(int index) {
+        return frames.get(index);
+    }
+
+    /** Point frame at a recorded frame's planes and metadata. Capture/acquire times are left to the caller. */
+    public void load(int index, CameraFrame frame) {
+        Frame f = frames.get(index);
+        frame.set(f.y, f.yRowStride, f.u, f.v, f.uvRowStride, f.uvPixelStride, width, height, f.timestampNs);
+        frame.setCaptureMetadata(f.exposureTimeNs, f.frameDurationNs, f.sensitivity);
+    }
+}
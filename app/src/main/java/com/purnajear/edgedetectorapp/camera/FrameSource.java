@@ -0,0 +1,43 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import com.purnajear.edgedetectorapp.metrics.FrameMetrics;
+
+/**
+ * Where frames come from: the camera ({@link CameraHelper}), a recording
+ * ({@link ReplayFrameSource}) or a generated scene ({@link SyntheticFrameSource}).
+ * Everything downstream only sees CameraFrames, so the same pipeline runs with or without
+ * a camera.
+ */
+public interface FrameSource {
+
+    interface FrameCallback {
+        // frame is only valid until this call returns
+        void onFrame(CameraFrame frame);
+    }
+
+    interface StreamListener {
+        // Called on the source's thread whenever the frame size is known or changes
+        void onStreamConfigured(int width, int height);
+    }
+
+    void setFrameCallback(FrameCallback callback);
+
+    void setStreamListener(StreamListener listener);
+
+    /** Receives the source side stage times. Null to stop. */
+    void setMetrics(FrameMetrics metrics);
+
+    /** Start delivering frames on the source's own thread. */
+    void start();
+
+    /** Stop delivering and wait for the source's thread. Copied frames should be released first. */
+    void stop();
+
+    /**
+     * Copy a frame into a pooled buffer (packed as NV21, or luma only) so it can be used after
+     * the callback returns. Call release() on the returned frame once done with it.
+     */
+    CameraFrame copyFrame(CameraFrame frame, boolean lumaOnly);
+
+    float getCurrentFps();
+}
@@ -0,0 +1,242 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import android.util.Log;
+
+import com.purnajear.edgedetectorapp.logging.Logger;
+import com.purnajear.edgedetectorapp.logging.RateLimitedLog;
+import com.purnajear.edgedetectorapp.metrics.FrameMetrics;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Base for sources without a camera: delivers frames from its own thread, either paced by
+ * their timestamps (real time) or as fast as the callback takes them. Frames look like
+ * camera frames to the pipeline; capture and acquire time are the moment of delivery.
+ */
+public abstract class OfflineFrameSource implements FrameSource {
+
+    private static final RateLimitedLog FRAME_ERRORS = new RateLimitedLog(Logger.get("OfflineFrameSource"), 1, 3);
+    // Gap after the last frame of a pass when a single frame gives no interval to go by
+    private static final long DEFAULT_FRAME_INTERVAL_NS = 33_333_333L;
+
+    private final String name;
+    private final int maxBufferedFrames;
+    private final CameraFrame frame = new CameraFrame();
+
+    private volatile FrameCallback frameCallback;
+    private volatile StreamListener streamListener;
+    private volatile FrameMetrics metrics;
+    private volatile boolean realTime = true;
+    private volatile int maxFrames = 0;
+    private volatile Runnable onFinished;
+
+    private Thread thread;
+    private volatile boolean running;
+    private volatile FrameCopier frameCopier;
+    private volatile long deliveredFrames;
+    private long lastFrameTimeNs = 0;
+    private volatile float currentFps = 0;
+
+    protected OfflineFrameSource(String name, int maxBufferedFrames) {
+        this.name = name;
+        this.maxBufferedFrames = maxBufferedFrames;
+    }
+
+    public abstract int getWidth();
+
+    public abstract int getHeight();
+
+    /** Frames in one pass; playback loops over them until stopped or maxFrames. */
+    protected abstract int getFrameCount();
+
+    /** Point frame at frame index (planes and timestamp). Runs on the delivery thread. */
+    protected abstract void loadFrame(int index, CameraFrame frame);
+
+    /** True (default): paced by frame timestamps. False: as fast as the callback returns. */
+    public void setRealTime(boolean realTime) {
+        this.realTime = realTime;
+    }
+
+    /** Stop after this many frames, 0 to loop until stop(). */
+    public void setMaxFrames(int maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * Runs on the delivery thread when it ends by itself: maxFrames were delivered, or a
+     * frame couldn't be loaded. Not after stop().
+     */
+    public void setOnFinished(Runnable onFinished) {
+        this.onFinished = onFinished;
+    }
+
+    public long getDeliveredFrames() {
+        return deliveredFrames;
+    }
+
+    @Override
+    public void setFrameCallback(FrameCallback callback) {
+        this.frameCallback = callback;
+    }
+
+    @Override
+    public void setStreamListener(StreamListener listener) {
+        this.streamListener = listener;
+    }
+
+    /** Only acquire->convert - there is no sensor. */
+    @Override
+    public void setMetrics(FrameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        // A run that ended by itself (maxFrames) was never stopped: let its thread finish
+        // and drop its pool before starting over
+        Thread previous = thread;
+        if (previous != null && previous != Thread.currentThread()) {
+            try {
+                previous.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        FrameCopier previousCopier = frameCopier;
+        if (previousCopier != null) {
+            previousCopier.getPool().close();
+        }
+        frameCopier = new FrameCopier(new FrameBufferPool(name,
+                YuvConverter.nv21Size(getWidth(), getHeight()), maxBufferedFrames));
+        deliveredFrames = 0;
+        lastFrameTimeNs = 0;
+        currentFps = 0;
+        running = true;
+        thread = new Thread(this::run, name);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        Thread t = thread;
+        thread = null;
+        if (t != null) {
+            t.interrupt();
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        FrameCopier copier = frameCopier;
+        frameCopier = null;
+        if (copier != null) {
+            copier.getPool().close();
+        }
+    }
+
+    @Override
+    public CameraFrame copyFrame(CameraFrame frame, boolean lumaOnly) {
+        FrameCopier copier = frameCopier;
+        if (copier == null) {
+            throw new IllegalStateException(name + " not started");
+        }
+        return copier.copy(frame, lumaOnly, metrics);
+    }
+
+    @Override
+    public float getCurrentFps() {
+        return currentFps;
+    }
+
+    private void run() {
+        try {
+            deliverFrames();
+        } catch (RuntimeException e) {
+            Log.e(name, "Delivery stopped, frame couldn't be loaded", e);
+        } finally {
+            // stop() already cleared running; anything else means we ended by ourselves and
+            // someone may be waiting for it
+            if (running) {
+                running = false;
+                Runnable done = onFinished;
+                if (done != null) {
+                    done.run();
+                }
+            }
+        }
+    }
+
+    private void deliverFrames() {
+        StreamListener listener = streamListener;
+        if (listener != null) {
+            listener.onStreamConfigured(getWidth(), getHeight());
+        }
+        int count = getFrameCount();
+        long startNs = System.nanoTime();
+        long firstTimestamp = 0;
+        long passNs = 0;       // one pass plus the gap to the next, known after the first pass
+        long loopOffset = 0;
+        for (int i = 0; running; i++) {
+            int index = i % count;
+            if (index == 0 && i > 0) {
+                loopOffset += passNs;
+            }
+            loadFrame(index, frame);
+            long timestamp = frame.getTimestampNs();
+            if (i == 0) {
+                firstTimestamp = timestamp;
+            }
+            if (i == count - 1) {
+                long span = timestamp - firstTimestamp;
+                passNs = span + (count > 1 ? span / (count - 1) : DEFAULT_FRAME_INTERVAL_NS);
+            }
+            if (realTime) {
+                waitUntil(startNs + loopOffset + timestamp - firstTimestamp);
+            }
+            if (!running) {
+                break;
+            }
+            deliver();
+            if (maxFrames > 0 && deliveredFrames >= maxFrames) {
+                return;
+            }
+        }
+    }
+
+    private void deliver() {
+        long now = System.nanoTime();
+        if (lastFrameTimeNs > 0 && now > lastFrameTimeNs) {
+            currentFps = 0.9f * currentFps + 0.1f * (1e9f / (now - lastFrameTimeNs));
+        }
+        lastFrameTimeNs = now;
+        frame.setCaptureTimeNs(now);
+        frame.setAcquireTimeNs(now);
+        FrameCallback callback = frameCallback;
+        try {
+            if (callback != null) {
+                callback.onFrame(frame);
+            }
+        } catch (RuntimeException e) {
+            // Same as the camera: a bad frame doesn't end the stream
+            if (FRAME_ERRORS.allow(Log.ERROR)) {
+                FRAME_ERRORS.e("Error delivering frame", e);
+            }
+        } finally {
+            frame.clear();
+        }
+        deliveredFrames++;
+    }
+
+    private void waitUntil(long deadlineNs) {
+        long remaining;
+        while (running && (remaining = deadlineNs - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
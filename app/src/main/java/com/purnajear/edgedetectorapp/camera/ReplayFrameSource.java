@@ -0,0 +1,47 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Plays a {@link FrameRecording} back through the normal frame callback, straight from
+ * the mapping. Real time follows the recorded sensor timestamps, otherwise frames go out
+ * as fast as they're taken. Loops until stopped or setMaxFrames().
+ */
+public class ReplayFrameSource extends OfflineFrameSource {
+
+    private final FrameRecording recording;
+
+    public ReplayFrameSource(FrameRecording recording) {
+        super("FrameReplay", 4);
+        this.recording = recording;
+    }
+
+    public static ReplayFrameSource open(File file) throws IOException {
+        return new ReplayFrameSource(FrameRecording.open(file));
+    }
+
+    public FrameRecording getRecording() {
+        return recording;
+    }
+
+    @Override
+    public int getWidth() {
+        return recording.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return recording.getHeight();
+    }
+
+    @Override
+    protected int getFrameCount() {
+        return recording.getFrameCount();
+    }
+
+    @Override
+    protected void loadFrame(int index, CameraFrame frame) {
+        recording.load(index, frame);
+    }
+}
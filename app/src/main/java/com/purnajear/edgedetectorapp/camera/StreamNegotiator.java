@@ -0,0 +1,142 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import java.util.List;
+
+/**
+ * Picks the capture size for the YUV stream.
+ *
+ * Processing cost is modelled as linear in pixel count and learned from real frames
+ * (reportProcessingTime). With a measurement available we take the largest size whose
+ * predicted processing time still fits the per-frame budget and that the sensor can
+ * deliver at that rate. Without one we stay close to the default size until we know better.
+ */
+public class StreamNegotiator {
+
+    public static class StreamOption {
+        public final int width;
+        public final int height;
+        public final long minFrameDurationNs;
+
+        public StreamOption(int width, int height, long minFrameDurationNs) {
+            this.width = width;
+            this.height = height;
+            this.minFrameDurationNs = minFrameDurationNs;
+        }
+
+        public int pixels() {
+            return width * height;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height;
+        }
+    }
+
+    // Keep some room for conversion, upload and GC hiccups
+    private static final double BUDGET_HEADROOM = 0.8;
+    private static final double COST_SMOOTHING = 0.1;
+
+    private final int defaultWidth;
+    private final int defaultHeight;
+    private long frameBudgetNs = 33_333_333L; // 30 fps
+    private double costNsPerPixel = -1;
+    private int samples = 0;
+
+    public StreamNegotiator(int defaultWidth, int defaultHeight) {
+        this.defaultWidth = defaultWidth;
+        this.defaultHeight = defaultHeight;
+    }
+
+    public void setFrameBudgetNs(long frameBudgetNs) {
+        this.frameBudgetNs = frameBudgetNs;
+    }
+
+    public long getFrameBudgetNs() {
+        return frameBudgetNs;
+    }
+
+    /** Seed the model, e.g. with a cost persisted from a previous run. */
+    public synchronized void setCostNsPerPixel(double cost) {
+        costNsPerPixel = cost;
+    }
+
+    public synchronized double getCostNsPerPixel() {
+        return costNsPerPixel;
+    }
+
+    public synchronized int getSampleCount() {
+        return samples;
+    }
+
+    public synchronized void reportProcessingTime(long processingNs, int width, int height) {
+        if (processingNs <= 0 || width <= 0 || height <= 0) {
+            return;
+        }
+        double cost = (double) processingNs / ((long) width * height);
+        if (costNsPerPixel < 0) {
+            costNsPerPixel = cost;
+        } else {
+            costNsPerPixel += COST_SMOOTHING * (cost - costNsPerPixel);
+        }
+        samples++;
+    }
+
+    public synchronized boolean hasMeasurement() {
+        return costNsPerPixel > 0;
+    }
+
+    public synchronized long predictProcessingNs(int width, int height) {
+        return costNsPerPixel > 0 ? (long) (costNsPerPixel * width * height) : -1;
+    }
+
+    public StreamOption choose(List<StreamOption> options) {
+        if (options == null || options.isEmpty()) {
+            return new StreamOption(defaultWidth, defaultHeight, 0);
+        }
+
+        // Prefer the aspect ratio of the default size, fall back to everything
+        StreamOption best = null;
+        for (int pass = 0; pass < 2 && best == null; pass++) {
+            boolean matchAspect = pass == 0;
+            for (StreamOption option : options) {
+                if (matchAspect && (long) option.width * defaultHeight != (long) option.height * defaultWidth) {
+                    continue;
+                }
+                if (isBetter(option, best)) {
+                    best = option;
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean isBetter(StreamOption candidate, StreamOption current) {
+        boolean candidateFits = fits(candidate);
+        if (current == null) {
+            return true;
+        }
+        boolean currentFits = fits(current);
+        if (candidateFits != currentFits) {
+            return candidateFits;
+        }
+        if (!candidateFits) {
+            // Nothing fits - smallest is least bad
+            return candidate.pixels() < current.pixels();
+        }
+        if (!hasMeasurement()) {
+            // No data yet - stay near the default size
+            long defaultPixels = (long) defaultWidth * defaultHeight;
+            return Math.abs(candidate.pixels() - defaultPixels) < Math.abs(current.pixels() - defaultPixels);
+        }
+        return candidate.pixels() > current.pixels();
+    }
+
+    private boolean fits(StreamOption option) {
+        if (option.minFrameDurationNs > frameBudgetNs) {
+            return false;
+        }
+        long predicted = predictProcessingNs(option.width, option.height);
+        return predicted < 0 || predicted <= frameBudgetNs * BUDGET_HEADROOM;
+    }
+}
@@ -0,0 +1,132 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Generated frames for when there is neither a camera nor a recording: the scene native
+ * forceEdgeDetectionTest draws (grey background, white rectangle, black circle, thick
+ * diagonal line), panning slowly in a circle so consecutive frames differ.
+ *
+ * The scene is drawn once onto a canvas a margin larger than the frame; every frame is a
+ * window into it (plane views with the canvas as row stride), so delivering costs nothing.
+ * Fully deterministic, the same size always gives the same frames.
+ */
+public class SyntheticFrameSource extends OfflineFrameSource {
+
+    // Scene shapes are placed in 640x480 coordinates and stretched to the frame
+    public static final int SCENE_WIDTH = 640;
+    public static final int SCENE_HEIGHT = 480;
+
+    private static final int FRAMES_PER_PASS = 60;
+
+    private final int width;
+    private final int height;
+    private final long frameIntervalNs;
+    private final ByteBuffer[][] planes = new ByteBuffer[FRAMES_PER_PASS][];
+    private final int canvasWidth;
+
+    /** width and height even. */
+    public SyntheticFrameSource(int width, int height, int fps) {
+        super("SyntheticFrames", 4);
+        this.width = width;
+        this.height = height;
+        this.frameIntervalNs = 1_000_000_000L / Math.max(1, fps);
+
+        // Margin even, so chroma windows start on whole samples
+        int margin = Math.max(2, Math.min(width, height) / 32) & ~1;
+        canvasWidth = width + 2 * margin;
+        int canvasHeight = height + 2 * margin;
+        ByteBuffer y = ByteBuffer.allocateDirect(canvasWidth * canvasHeight);
+        drawScene(y, canvasWidth, canvasHeight, margin, margin, width, height);
+        ByteBuffer chroma = neutralChroma((canvasWidth / 2) * (canvasHeight / 2));
+
+        for (int i = 0; i < FRAMES_PER_PASS; i++) {
+            double angle = 2 * Math.PI * i / FRAMES_PER_PASS;
+            int x = (margin + (int) Math.round(margin * Math.cos(angle))) & ~1;
+            int yOffset = (margin + (int) Math.round(margin * Math.sin(angle))) & ~1;
+            int chromaStart = (yOffset / 2) * (canvasWidth / 2) + x / 2;
+            int chromaLength = (height / 2 - 1) * (canvasWidth / 2) + width / 2;
+            planes[i] = new ByteBuffer[] {
+                    FrameCopier.slice(y, yOffset * canvasWidth + x, (height - 1) * canvasWidth + width),
+                    FrameCopier.slice(chroma, chromaStart, chromaLength),
+                    FrameCopier.slice(chroma, chromaStart, chromaLength)
+            };
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    protected int getFrameCount() {
+        return FRAMES_PER_PASS;
+    }
+
+    @Override
+    protected void loadFrame(int index, CameraFrame frame) {
+        ByteBuffer[] p = planes[index];
+        frame.set(p[0], canvasWidth, p[1], p[2], canvasWidth / 2, 1, width, height, index * frameIntervalNs);
+    }
+
+    /** The scene as one planar frame of its own, width x height (even sizes). */
+    public static CameraFrame createScene(int width, int height) {
+        ByteBuffer y = ByteBuffer.allocateDirect(width * height);
+        drawScene(y, width, height, 0, 0, width, height);
+        int chromaSize = (width / 2) * (height / 2);
+        CameraFrame frame = new CameraFrame();
+        frame.set(y, width, neutralChroma(chromaSize), neutralChroma(chromaSize), width / 2, 1, width, height, 0);
+        return frame;
+    }
+
+    // Draws a canvasWidth x canvasHeight luma plane. The scene is stretched to sceneWidth x
+    // sceneHeight with its top left corner at (originX, originY) and continues past that
+    private static void drawScene(ByteBuffer y, int canvasWidth, int canvasHeight,
+                                  int originX, int originY, int sceneWidth, int sceneHeight) {
+        double sx = sceneWidth / (double) SCENE_WIDTH;
+        double sy = sceneHeight / (double) SCENE_HEIGHT;
+        for (int r = 0; r < canvasHeight; r++) {
+            double sr = (r - originY) / sy;
+            for (int c = 0; c < canvasWidth; c++) {
+                double sc = (c - originX) / sx;
+                int luma = 128;
+                if (sc >= 100 && sc < 300 && sr >= 100 && sr < 250) {
+                    luma = 255;
+                }
+                if ((sc - 400) * (sc - 400) + (sr - 300) * (sr - 300) <= 80 * 80) {
+                    luma = 0;
+                }
+                if (distanceToSegment(sc, sr, 50, 50, 590, 430) <= 2.5) {
+                    luma = 76; // pure red, as grey
+                }
+                y.put((byte) luma);
+            }
+        }
+        y.clear();
+    }
+
+    private static ByteBuffer neutralChroma(int size) {
+        ByteBuffer plane = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size; i++) {
+            plane.put((byte) 128);
+        }
+        plane.clear();
+        return plane;
+    }
+
+    private static double distanceToSegment(double px, double py, int x0, int y0, int x1, int y1) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double t = ((px - x0) * dx + (py - y0) * dy) / (dx * dx + dy * dy);
+        t = Math.max(0, Math.min(1, t));
+        double ex = x0 + t * dx - px;
+        double ey = y0 + t * dy - py;
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+}
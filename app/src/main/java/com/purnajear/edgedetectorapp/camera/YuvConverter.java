@@ -0,0 +1,241 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+/**
+ * Packs YUV_420_888 planes into NV21 or I420, honouring row and pixel strides.
+ *
+ * No Android dependencies so it can be tested and benchmarked on a plain JVM.
+ * Output goes into a caller-provided buffer starting at its current position, the
+ * source buffers are left with their original position/limit. One instance per thread -
+ * it keeps scratch rows to avoid per-frame allocation.
+ */
+public class YuvConverter {
+
+    private byte[] rowU = new byte[0];
+    private byte[] rowV = new byte[0];
+    private byte[] rowOut = new byte[0];
+
+    // Stream configuration of the last chroma layout probe, and what it found
+    private int layoutWidth = -1;
+    private int layoutHeight;
+    private int layoutRowStride;
+    private int layoutUSize;
+    private int layoutVSize;
+    private boolean layoutInterleaved;
+
+    public static int nv21Size(int width, int height) {
+        return width * height + 2 * (width / 2) * (height / 2);
+    }
+
+    public static int i420Size(int width, int height) {
+        return nv21Size(width, height);
+    }
+
+    public void toNv21(CameraFrame frame, ByteBuffer dst) {
+        toNv21(frame.getYPlane(), frame.getYRowStride(), frame.getUPlane(), frame.getVPlane(),
+                frame.getUvRowStride(), frame.getUvPixelStride(), frame.getWidth(), frame.getHeight(), dst);
+    }
+
+    public void toI420(CameraFrame frame, ByteBuffer dst) {
+        toI420(frame.getYPlane(), frame.getYRowStride(), frame.getUPlane(), frame.getVPlane(),
+                frame.getUvRowStride(), frame.getUvPixelStride(), frame.getWidth(), frame.getHeight(), dst);
+    }
+
+    /** Luma plane only, packed to width x height. Chroma is not touched at all. */
+    public void toLuma(CameraFrame frame, ByteBuffer dst) {
+        toLuma(frame.getYPlane(), frame.getYRowStride(), frame.getWidth(), frame.getHeight(), dst);
+    }
+
+    public void toLuma(ByteBuffer y, int yRowStride, int width, int height, ByteBuffer dst) {
+        checkArgs(width, height, 1, dst, width * height);
+        copyLuma(y, yRowStride, width, height, dst);
+    }
+
+    public void toNv21(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v,
+                       int uvRowStride, int uvPixelStride, int width, int height, ByteBuffer dst) {
+        checkArgs(width, height, uvPixelStride, dst, nv21Size(width, height));
+        copyLuma(y, yRowStride, width, height, dst);
+
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+
+        // Fast path: the camera already gives us VU interleaved memory (V plane starts one
+        // byte before U). Then every chroma row is a single bulk copy out of the V buffer.
+        if (uvPixelStride == 2 && isVuInterleaved(u, v, width, height, uvRowStride)) {
+            int vStart = v.position();
+            int vLimit = v.limit();
+            for (int row = 0; row < chromaHeight; row++) {
+                int rowStart = vStart + row * uvRowStride;
+                // The last row of V stops one byte short, its final U lives only in the U buffer
+                int count = Math.min(2 * chromaWidth, vLimit - rowStart);
+                v.limit(rowStart + count);
+                v.position(rowStart);
+                dst.put(v);
+                v.limit(vLimit);
+                if (count < 2 * chromaWidth) {
+                    dst.put(u.get(u.position() + row * uvRowStride + 2 * (chromaWidth - 1)));
+                }
+            }
+            v.position(vStart);
+            return;
+        }
+
+        // General path: pull both rows in bulk, interleave in arrays
+        int rowBytes = (chromaWidth - 1) * uvPixelStride + 1;
+        ensureScratch(rowBytes, 2 * chromaWidth);
+        for (int row = 0; row < chromaHeight; row++) {
+            readRow(u, row * uvRowStride, rowBytes, rowU);
+            readRow(v, row * uvRowStride, rowBytes, rowV);
+            for (int col = 0, src = 0, out = 0; col < chromaWidth; col++, src += uvPixelStride) {
+                rowOut[out++] = rowV[src];
+                rowOut[out++] = rowU[src];
+            }
+            dst.put(rowOut, 0, 2 * chromaWidth);
+        }
+    }
+
+    public void toI420(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v,
+                       int uvRowStride, int uvPixelStride, int width, int height, ByteBuffer dst) {
+        checkArgs(width, height, uvPixelStride, dst, i420Size(width, height));
+        copyLuma(y, yRowStride, width, height, dst);
+
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        copyChromaPlane(u, uvRowStride, uvPixelStride, chromaWidth, chromaHeight, dst);
+        copyChromaPlane(v, uvRowStride, uvPixelStride, chromaWidth, chromaHeight, dst);
+    }
+
+    // Y rows are always pixel stride 1, so this is one bulk copy (or one per row with padding)
+    private static void copyLuma(ByteBuffer y, int rowStride, int width, int height, ByteBuffer dst) {
+        int start = y.position();
+        int limit = y.limit();
+        if (rowStride == width) {
+            y.limit(start + width * height);
+            dst.put(y);
+        } else {
+            for (int row = 0; row < height; row++) {
+                int rowStart = start + row * rowStride;
+                y.limit(rowStart + width);
+                y.position(rowStart);
+                dst.put(y);
+            }
+        }
+        y.limit(limit);
+        y.position(start);
+    }
+
+    private void copyChromaPlane(ByteBuffer plane, int rowStride, int pixelStride,
+                                 int chromaWidth, int chromaHeight, ByteBuffer dst) {
+        int start = plane.position();
+        int limit = plane.limit();
+        if (pixelStride == 1) {
+            if (rowStride == chromaWidth) {
+                plane.limit(start + chromaWidth * chromaHeight);
+                dst.put(plane);
+            } else {
+                for (int row = 0; row < chromaHeight; row++) {
+                    int rowStart = start + row * rowStride;
+                    plane.limit(rowStart + chromaWidth);
+                    plane.position(rowStart);
+                    dst.put(plane);
+                }
+            }
+            plane.limit(limit);
+            plane.position(start);
+            return;
+        }
+
+        int rowBytes = (chromaWidth - 1) * pixelStride + 1;
+        ensureScratch(rowBytes, chromaWidth);
+        for (int row = 0; row < chromaHeight; row++) {
+            readRow(plane, row * rowStride, rowBytes, rowU);
+            for (int col = 0, src = 0; col < chromaWidth; col++, src += pixelStride) {
+                rowOut[col] = rowU[src];
+            }
+            dst.put(rowOut, 0, chromaWidth);
+        }
+    }
+
+    /**
+     * isVuInterleaved() for frames of one stream. The layout can't change while the size and
+     * strides don't, so V is only written to on the first frame of each configuration; after
+     * that it's the read-only check alone.
+     */
+    public boolean isVuInterleaved(ByteBuffer u, ByteBuffer v, int width, int height, int uvRowStride) {
+        if (!mayBeVuInterleaved(u, v)) {
+            return false;
+        }
+        if (width != layoutWidth || height != layoutHeight || uvRowStride != layoutRowStride
+                || u.remaining() != layoutUSize || v.remaining() != layoutVSize) {
+            layoutInterleaved = isVuInterleaved(u, v);
+            layoutWidth = width;
+            layoutHeight = height;
+            layoutRowStride = uvRowStride;
+            layoutUSize = u.remaining();
+            layoutVSize = v.remaining();
+        }
+        return layoutInterleaved;
+    }
+
+    /**
+     * True when V and U are views of one VUVU... buffer, i.e. V[i + 1] is U[i].
+     * Checked by flipping a byte in V and looking at U, same as the well known
+     * Camera2 NV21 trick - but only when the bytes already agree, most separate planes
+     * are ruled out without writing. Read-only buffers can't be probed and take the slow path.
+     */
+    static boolean isVuInterleaved(ByteBuffer u, ByteBuffer v) {
+        if (!mayBeVuInterleaved(u, v)) {
+            return false;
+        }
+        int probe = v.position() + 1;
+        byte saved = v.get(probe);
+        try {
+            byte flipped = (byte) ~saved;
+            v.put(probe, flipped);
+            return u.get(u.position()) == flipped;
+        } catch (ReadOnlyBufferException e) {
+            return false;
+        } finally {
+            if (!v.isReadOnly()) {
+                v.put(probe, saved);
+            }
+        }
+    }
+
+    // Read-only half of the probe: interleaved memory always passes
+    private static boolean mayBeVuInterleaved(ByteBuffer u, ByteBuffer v) {
+        return v.remaining() >= 2 && u.remaining() >= 1 && v.get(v.position() + 1) == u.get(u.position());
+    }
+
+    // Bulk read of one row at an offset relative to the buffer position
+    private static void readRow(ByteBuffer plane, int offset, int count, byte[] out) {
+        int start = plane.position();
+        plane.position(start + offset);
+        plane.get(out, 0, count);
+        plane.position(start);
+    }
+
+    private void ensureScratch(int rowBytes, int outBytes) {
+        if (rowU.length < rowBytes) {
+            rowU = new byte[rowBytes];
+            rowV = new byte[rowBytes];
+        }
+        if (rowOut.length < outBytes) {
+            rowOut = new byte[outBytes];
+        }
+    }
+
+    private static void checkArgs(int width, int height, int uvPixelStride, ByteBuffer dst, int needed) {
+        if (width <= 0 || height <= 0 || (width & 1) != 0 || (height & 1) != 0) {
+            throw new IllegalArgumentException("Bad frame size: " + width + "x" + height);
+        }
+        if (uvPixelStride < 1) {
+            throw new IllegalArgumentException("Bad chroma pixel stride: " + uvPixelStride);
+        }
+        if (dst.remaining() < needed) {
+            throw new IllegalArgumentException("Output buffer too small: " + dst.remaining() + " < " + needed);
+        }
+    }
+}
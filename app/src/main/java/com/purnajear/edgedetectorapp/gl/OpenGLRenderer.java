@@ -1,47 +1,139 @@
 package com.purnajear.edgedetectorapp.gl;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+import com.purnajear.edgedetectorapp.camera.FrameBuffer;
+import com.purnajear.edgedetectorapp.camera.YuvConverter;
+import com.purnajear.edgedetectorapp.logging.FrameSampler;
+import com.purnajear.edgedetectorapp.logging.Logger;
+import com.purnajear.edgedetectorapp.logging.RateLimitedLog;
+import com.purnajear.edgedetectorapp.metrics.FrameMetrics;
+import com.purnajear.edgedetectorapp.processing.FrameProcessor;
+import com.purnajear.edgedetectorapp.processing.FrameProcessors;
+import com.purnajear.edgedetectorapp.processing.TripleBuffer;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
 public class OpenGLRenderer implements GLSurfaceView.Renderer {
     private static final String TAG = "OpenGLRenderer";
-    
-    // Native methods
-    public native void nativeProcessFrame(byte[] input, int width, int height, ByteBuffer output);
-    public native void nativeInit();
-    public native void nativeRelease();
+    // Per-frame logging: sampled diagnostics, rate-limited problems. The rest stays on Log
+    private static final Logger LOG = Logger.get(TAG);
+    private static final FrameSampler FRAME_DIAGNOSTICS = new FrameSampler(LOG, Log.DEBUG);
+    private static final RateLimitedLog DRAW_ERRORS = new RateLimitedLog(LOG, 1, 3);
+    private static final RateLimitedLog FRAME_PROBLEMS = new RateLimitedLog(LOG, 1, 3);
+    private static final RateLimitedLog FRAME_SKIPS = new RateLimitedLog(LOG, 1, 1);
+    private static final RateLimitedLog PROCESS_ERRORS = new RateLimitedLog(LOG, 1, 3);
     
     private final Context context;
     private GLSurfaceView surfaceView;
-    public boolean isEdgeDetectionEnabled = false; // Making this public for JNI access
+    private volatile boolean isEdgeDetectionEnabled = false;
+    // Edge mode draws edges over the camera image instead of over the background colour
+    private volatile boolean overlayEnabled = false;
+    private volatile float overlayOpacity = 0.8f;
+    
+    // Processing state as last pushed to the processor, see pushState()
+    private int cannyThreshold = 50;
+    private int cannyRatio = 3;
+    private boolean cannyL2Gradient = false;
     private boolean isInitialized = false;
     
-    // Texture
-    private int[] textures = new int[1];
-    private int textureWidth = 0;
-    private int textureHeight = 0;
+    // Edge engine, swapped by setFrameProcessor() once calibration has picked one
+    private volatile FrameProcessor frameProcessor;
+    private boolean released = false;
+    private final FrameProcessor.Stats processingStats = new FrameProcessor.Stats(); // processing thread only
+    
+    // Textures, GL thread only. RGBA for processed frames, Y + VU for raw NV21 frames,
+    // one byte per pixel for edge maps. Chroma is sampled GL_NEAREST so every 2x2 block
+    // gets one sample, like YuvToRgb
+    private final TextureStreamer frameTexture = new TextureStreamer(GLES20.GL_RGBA, 4, GLES20.GL_LINEAR);
+    private final TextureStreamer edgeTexture = new TextureStreamer(GLES20.GL_LUMINANCE, 1, GLES20.GL_LINEAR);
+    private final TextureStreamer lumaTexture = new TextureStreamer(GLES20.GL_LUMINANCE, 1, GLES20.GL_LINEAR);
+    private final TextureStreamer chromaTexture = new TextureStreamer(GLES20.GL_LUMINANCE_ALPHA, 2, GLES20.GL_NEAREST);
+    private final boolean es3Supported;
+    private boolean textureValid = false; // false until the current frame is uploaded
     
-    // Shader program
+    // Shader programs, sources in assets/shaders. Attribute locations are bound before
+    // linking so every program shares them
+    private static final int POSITION_ATTR = 0;
+    private static final int TEX_COORD_ATTR = 1;
     private int shaderProgram;
-    private int positionAttrHandle;
-    private int texCoordAttrHandle;
     private int textureUniformHandle;
+    private int yuvProgram;
+    private int yTextureUniform;
+    private int vuTextureUniform;
+    private int yuvMatrixUniform;
+    private int yuvOffsetUniform;
+    private int edgeProgram;
+    private int edgeTextureUniform;
+    private int edgeColorUniform;
+    private int backgroundColorUniform;
+    private int overlayProgram;
+    private int overlayYUniform;
+    private int overlayVuUniform;
+    private int overlayEdgesUniform;
+    private int overlayMatrixUniform;
+    private int overlayOffsetUniform;
+    private int overlayEdgeColorUniform;
+    private int overlayOpacityUniform;
+    private volatile boolean overlayProgramReady = false;
+    
+    // Edge map colours as RGBA floats for the shader. Swapped whole, never modified in place
+    private volatile float[] edgeColor = toRgbaFloats(0xFFFF00FF);       // Magenta
+    private volatile float[] backgroundColor = toRgbaFloats(0xFF000000); // Black
+    
+    // Raw frames skip native and go to the GPU as NV21 (1.5 bytes per pixel instead of 4)
+    private volatile boolean gpuYuvConversion = true;
+    private volatile boolean yuvProgramReady = false;
+    private final YuvConverter yuvConverter = new YuvConverter(); // processing thread only
     
     // Buffers
     private FloatBuffer vertexBuffer;
     private FloatBuffer textureBuffer;
-    private ByteBuffer frameData;
+    
+    // Output frames: written on the processing thread, drawn on the GL thread
+    private final TripleBuffer<OutputFrame> outputFrames = new TripleBuffer<>(OutputFrame::new);
+    private RenderScheduler renderScheduler;
+    
+    // Frame accounting: presented = new frame drawn, dropped = overwritten before it was drawn,
+    // duplicated = a draw that had nothing new (system-initiated redraws)
+    private final AtomicLong presentedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong duplicatedFrames = new AtomicLong();
+    
+    // Quality knobs, set by the governor
+    private volatile int processingDownscale = 1;
+    private volatile boolean lumaOnly = false;
+    private FrameLatencyListener latencyListener;
+    private volatile ProcessingCostListener costListener;
+    
+    // Stage timings. Draw->present needs a glFinish() per frame, so it's opt-in
+    private volatile FrameMetrics metrics;
+    private volatile boolean presentTiming = false;
+    
+    public interface FrameLatencyListener {
+        // Called on the GL thread when a new frame is drawn for the first time
+        void onFramePresented(long latencyNs, long nowNs);
+    }
+    
+    public interface ProcessingCostListener {
+        // Processing thread, for every edge map: engine time at the size it was computed
+        void onFrameProcessed(long processingNs, int width, int height);
+    }
     
     // VBO vertices for the quad
     private static final float[] VERTICES = {
@@ -59,31 +151,16 @@ public class OpenGLRenderer implements GLSurfaceView.Renderer {
             1.0f, 0.0f   // top right
     };
     
-    // Shader sources
-    private static final String VERTEX_SHADER = 
-            "attribute vec4 aPosition;\n" +
-            "attribute vec2 aTexCoord;\n" +
-            "varying vec2 vTexCoord;\n" +
-            "void main() {\n" +
-            "  gl_Position = aPosition;\n" +
-            "  vTexCoord = aTexCoord;\n" +
-            "}";
-            
-    private static final String FRAGMENT_SHADER = 
-            "precision mediump float;\n" +
-            "varying vec2 vTexCoord;\n" +
-            "uniform sampler2D uTexture;\n" +
-            "void main() {\n" +
-            "  gl_FragColor = texture2D(uTexture, vTexCoord);\n" +
-            "}";
-    
     public OpenGLRenderer(Context context) {
         this.context = context;
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        es3Supported = am != null && am.getDeviceConfigurationInfo().reqGlEsVersion >= 0x30000;
         
         try {
-            // Init native
-            Log.d(TAG, "Initializing native code");
-            nativeInit();
+            // Native if the library loaded, Java otherwise - until told differently
+            frameProcessor = FrameProcessors.createDefault();
+            Log.d(TAG, "Frame processor: " + frameProcessor.getName());
+            pushState();
             
             // Initialize buffers
             ByteBuffer bb = ByteBuffer.allocateDirect(VERTICES.length * 4); // 4 bytes per float
@@ -100,9 +177,12 @@ public class OpenGLRenderer implements GLSurfaceView.Renderer {
             
             // Create GLSurfaceView
             surfaceView = new GLSurfaceView(context);
-            surfaceView.setEGLContextClientVersion(2);
+            // ES 3 for PBO uploads where available, the shaders are plain ES 2 either way
+            surfaceView.setEGLContextClientVersion(es3Supported ? 3 : 2);
             surfaceView.setRenderer(this);
-            surfaceView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY); // Force continuous rendering
+            // Draw only when a new frame is published, paced to vsync
+            surfaceView.setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+            renderScheduler = new RenderScheduler(surfaceView);
             
             Log.d(TAG, "OpenGLRenderer initialization complete");
         } catch (Exception e) {
@@ -115,13 +195,14 @@ public class OpenGLRenderer implements GLSurfaceView.Renderer {
     }
     
     public void setEdgeDetectionEnabled(boolean enabled) {
-        isEdgeDetectionEnabled = enabled;
+        synchronized (this) {
+            isEdgeDetectionEnabled = enabled;
+            pushState();
+        }
         Log.d(TAG, "Edge detection mode set to: " + enabled);
     }
     
-    // Added getter for JNI access as fallback
     public boolean getEdgeDetectionState() {
-        Log.d(TAG, "getEdgeDetectionState called, returning: " + isEdgeDetectionEnabled);
         return isEdgeDetectionEnabled;
     }
     
@@ -129,6 +210,7 @@ public class OpenGLRenderer implements GLSurfaceView.Renderer {
         if (surfaceView != null) {
             try {
                 surfaceView.onResume();
+                renderScheduler.start();
             } catch (Exception e) {
                 Log.e(TAG, "Error resuming OpenGL surface", e);
             }
@@ -138,11 +220,157 @@ public class OpenGLRenderer implements GLSurfaceView.Renderer {
     public void onPause() {
         if (surfaceView != null) {
             try {
+                renderScheduler.stop();
                 surfaceView.onPause();
             } catch (Exception e) {
                 Log.e(TAG, "Error pausing OpenGL surface", e);
             }
         }
+        
+        Log.d(TAG, "Frames presented: " + presentedFrames.get() + ", dropped: " + droppedFrames.get()
+                + ", duplicated: " + duplicatedFrames.get());
+    }
+    
+    public void setFrameLatencyListener(FrameLatencyListener listener) {
+        this.latencyListener = listener;
+    }
+    
+    public void setProcessingCostListener(ProcessingCostListener listener) {
+        this.costListener = listener;
+    }
+    
+    /** Receives process, upload, draw->present and capture->draw times. Null to stop. */
+    public void setMetrics(FrameMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Wait for the GPU after every draw to time draw->present. That stalls the GL thread
+     * (and PBO uploads can't overlap the next frame), so only turn it on while looking.
+     */
+    public void setPresentTiming(boolean enabled) {
+        this.presentTiming = enabled;
+    }
+    
+    /**
+     * Whether the next frame needs U/V at all. Edge mode and the luma-only tier work from Y
+     * alone, so callers can skip copying chroma.
+     */
+    public boolean needsChroma() {
+        return !lumaOnly && (!isEdgeDetectionEnabled || overlayEnabled);
+    }
+    
+    public synchronized void setCannyParameters(int threshold, int ratio, boolean l2Gradient) {
+        cannyThreshold = threshold;
+        cannyRatio = ratio;
+        cannyL2Gradient = l2Gradient;
+        pushState();
+    }
+    
+    // Hand the processor a complete copy of the processing state, it applies it from the
+    // next frame on. Nothing is read back per frame.
+    private synchronized void pushState() {
+        FrameProcessor processor = frameProcessor;
+        if (processor != null) {
+            processor.setState(isEdgeDetectionEnabled, cannyThreshold, cannyRatio, cannyL2Gradient);
+        }
+    }
+    
+    /**
+     * Switch the engine that processes frames, e.g. after calibration. The current state is
+     * pushed to it and the previous engine released. After release() the processor passed in
+     * is released straight away.
+     */
+    public void setFrameProcessor(FrameProcessor processor) {
+        FrameProcessor toRelease;
+        synchronized (this) {
+            if (released) {
+                // Nobody is going to use it any more
+                toRelease = processor;
+            } else {
+                toRelease = frameProcessor != processor ? frameProcessor : null;
+                frameProcessor = processor;
+                pushState();
+            }
+        }
+        if (toRelease != null) {
+            toRelease.release();
+        }
+        Log.d(TAG, "Frame processor: " + processor.getName());
+    }
+    
+    public String getFrameProcessorName() {
+        FrameProcessor processor = frameProcessor;
+        return processor != null ? processor.getName() : "none";
+    }
+    
+    /** Raw mode: convert YUV in the fragment shader (default) instead of in native code. */
+    public void setGpuYuvConversion(boolean enabled) {
+        gpuYuvConversion = enabled;
+        Log.d(TAG, "GPU YUV conversion: " + enabled);
+    }
+    
+    /**
+     * Edge mode colours, as ARGB colour ints. Applied in the shader on the next draw, so
+     * this costs nothing per frame on the CPU. Background alpha below 255 lets the clear
+     * colour show through.
+     */
+    public void setEdgeColors(int edgeArgb, int backgroundArgb) {
+        edgeColor = toRgbaFloats(edgeArgb);
+        backgroundColor = toRgbaFloats(backgroundArgb);
+        if (surfaceView != null) {
+            // Redraw the current edge map in the new colours without waiting for a frame
+            surfaceView.requestRender();
+        }
+    }
+    
+    /**
+     * Overlay: with edge detection on, blend the edges over the live camera image at the
+     * given opacity (0..1) rather than drawing them on the background colour. The camera
+     * frame goes to the GPU as NV21 next to the edge map, both are composited in one draw.
+     */
+    public void setOverlay(boolean enabled, float opacity) {
+        overlayEnabled = enabled;
+        overlayOpacity = Math.max(0.0f, Math.min(1.0f, opacity));
+        if (surfaceView != null) {
+            surfaceView.requestRender();
+        }
+        Log.d(TAG, "Overlay: " + enabled + ", opacity=" + overlayOpacity);
+    }
+    
+    public boolean isOverlayEnabled() {
+        return overlayEnabled;
+    }
+    
+    private static float[] toRgbaFloats(int argb) {
+        return new float[]{
+                ((argb >> 16) & 0xFF) / 255.0f,
+                ((argb >> 8) & 0xFF) / 255.0f,
+                (argb & 0xFF) / 255.0f,
+                ((argb >>> 24) & 0xFF) / 255.0f
+        };
+    }
+    
+    /**
+     * Processing quality: downscale 2 processes (and uploads) at half resolution,
+     * lumaOnly skips chroma and outputs grey.
+     */
+    public void setProcessingQuality(int downscale, boolean lumaOnly) {
+        this.processingDownscale = downscale;
+        this.lumaOnly = lumaOnly;
+        Log.d(TAG, "Processing quality: downscale=" + downscale + ", lumaOnly=" + lumaOnly);
+    }
+    
+    public long getPresentedFrameCount() {
+        return presentedFrames.get();
+    }
+    
+    public long getDroppedFrameCount() {
+        return droppedFrames.get();
+    }
+    
+    public long getDuplicatedFrameCount() {
+        return duplicatedFrames.get();
     }
     
     @Override
@@ -151,20 +379,56 @@ public class OpenGLRenderer implements GLSurfaceView.Renderer {
             // Set clear color to black
             GLES20.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
             
-            // Create shader program
-            shaderProgram = createShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+            // Create shader programs
+            String vertexShader = loadShader("vertex_shader.glsl");
+            shaderProgram = createShaderProgram(vertexShader, loadShader("fragment_shader.glsl"));
             if (shaderProgram == 0) {
                 Log.e(TAG, "Failed to create shader program");
                 return;
             }
+            yuvProgram = createShaderProgram(vertexShader, loadShader("yuv_fragment_shader.glsl"));
+            yuvProgramReady = yuvProgram != 0;
+            if (yuvProgram == 0) {
+                // Raw frames go through the frame processor instead
+                Log.e(TAG, "Failed to create YUV shader program");
+            }
+            edgeProgram = createShaderProgram(vertexShader, loadShader("edge_fragment_shader.glsl"));
+            if (edgeProgram == 0) {
+                Log.e(TAG, "Failed to create edge shader program");
+            }
+            overlayProgram = createShaderProgram(vertexShader, loadShader("overlay_fragment_shader.glsl"));
+            overlayProgramReady = overlayProgram != 0;
+            if (overlayProgram == 0) {
+                // Overlay mode shows plain edges instead
+                Log.e(TAG, "Failed to create overlay shader program");
+            }
             
             // Get handles
-            positionAttrHandle = GLES20.glGetAttribLocation(shaderProgram, "aPosition");
-            texCoordAttrHandle = GLES20.glGetAttribLocation(shaderProgram, "aTexCoord");
             textureUniformHandle = GLES20.glGetUniformLocation(shaderProgram, "uTexture");
+            yTextureUniform = GLES20.glGetUniformLocation(yuvProgram, "uTextureY");
+            vuTextureUniform = GLES20.glGetUniformLocation(yuvProgram, "uTextureVU");
+            yuvMatrixUniform = GLES20.glGetUniformLocation(yuvProgram, "uYuvToRgb");
+            yuvOffsetUniform = GLES20.glGetUniformLocation(yuvProgram, "uYuvOffset");
+            edgeTextureUniform = GLES20.glGetUniformLocation(edgeProgram, "uTexture");
+            edgeColorUniform = GLES20.glGetUniformLocation(edgeProgram, "uEdgeColor");
+            backgroundColorUniform = GLES20.glGetUniformLocation(edgeProgram, "uBackgroundColor");
+            overlayYUniform = GLES20.glGetUniformLocation(overlayProgram, "uTextureY");
+            overlayVuUniform = GLES20.glGetUniformLocation(overlayProgram, "uTextureVU");
+            overlayEdgesUniform = GLES20.glGetUniformLocation(overlayProgram, "uTextureEdges");
+            overlayMatrixUniform = GLES20.glGetUniformLocation(overlayProgram, "uYuvToRgb");
+            overlayOffsetUniform = GLES20.glGetUniformLocation(overlayProgram, "uYuvOffset");
+            overlayEdgeColorUniform = GLES20.glGetUniformLocation(overlayProgram, "uEdgeColor");
+            overlayOpacityUniform = GLES20.glGetUniformLocation(overlayProgram, "uOpacity");
             
-            // Generate texture
-            GLES20.glGenTextures(1, textures, 0);
+            // Generate texture - PBO streaming only if we really got an ES 3 context
+            String glVersion = GLES20.glGetString(GLES20.GL_VERSION);
+            boolean es3 = es3Supported && glVersion != null && glVersion.startsWith("OpenGL ES 3");
+            frameTexture.init(es3);
+            lumaTexture.init(es3);
+            chromaTexture.init(es3);
+            edgeTexture.init(es3);
+            textureValid = false;
+            Log.d(TAG, "GL version: " + glVersion + ", PBO uploads: " + es3);
             
             isInitialized = true;
             Log.d(TAG, "OpenGL surface created successfully");
@@ -181,135 +445,300 @@ public class OpenGLRenderer implements GLSurfaceView.Renderer {
     
     @Override
     public void onDrawFrame(GL10 gl) {
+        long drawStart = System.nanoTime();
+        FrameMetrics frameMetrics = metrics;
         try {
             // Clear the screen
             GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
             
+            // Pick up the newest processed frame, if any. Otherwise redraw the last one
+            OutputFrame next = outputFrames.consume();
+            if (next != null) {
+                textureValid = false;
+                if (latencyListener != null) {
+                    latencyListener.onFramePresented(drawStart - next.getCaptureTimeNs(), drawStart);
+                }
+                if (frameMetrics != null) {
+                    frameMetrics.record(FrameMetrics.Stage.END_TO_END, drawStart - next.getCaptureTimeNs());
+                }
+            }
+            OutputFrame drawingFrame = outputFrames.getReadSlot();
+            
             // Skip if no frame data
-            if (frameData == null || textureWidth <= 0 || textureHeight <= 0) {
+            if (drawingFrame.isEmpty()) {
                 return;
             }
+            if (next != null) {
+                presentedFrames.incrementAndGet();
+            } else {
+                duplicatedFrames.incrementAndGet();
+            }
             
-            // Use shader program
-            GLES20.glUseProgram(shaderProgram);
-            
-            // Set texture
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
-            
-            // Update texture with new frame data
-            updateTexture();
-            
-            // Set texture uniform
-            GLES20.glUniform1i(textureUniformHandle, 0);
+            // Bind textures, uploading only when the frame changed
+            boolean upload = !textureValid;
+            long uploadStart = System.nanoTime();
+            bindFrame(drawingFrame, upload);
+            textureValid = true;
+            if (upload && frameMetrics != null) {
+                frameMetrics.record(FrameMetrics.Stage.UPLOAD, System.nanoTime() - uploadStart);
+            }
             
             // Set vertex attributes
-            GLES20.glVertexAttribPointer(positionAttrHandle, 3, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-            GLES20.glEnableVertexAttribArray(positionAttrHandle);
+            GLES20.glVertexAttribPointer(POSITION_ATTR, 3, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+            GLES20.glEnableVertexAttribArray(POSITION_ATTR);
             
-            GLES20.glVertexAttribPointer(texCoordAttrHandle, 2, GLES20.GL_FLOAT, false, 0, textureBuffer);
-            GLES20.glEnableVertexAttribArray(texCoordAttrHandle);
+            GLES20.glVertexAttribPointer(TEX_COORD_ATTR, 2, GLES20.GL_FLOAT, false, 0, textureBuffer);
+            GLES20.glEnableVertexAttribArray(TEX_COORD_ATTR);
             
             // Draw quad
             GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
             
             // Clean up
-            GLES20.glDisableVertexAttribArray(positionAttrHandle);
-            GLES20.glDisableVertexAttribArray(texCoordAttrHandle);
+            GLES20.glDisableVertexAttribArray(POSITION_ATTR);
+            GLES20.glDisableVertexAttribArray(TEX_COORD_ATTR);
             GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+            
+            if (presentTiming && frameMetrics != null) {
+                // GLSurfaceView swaps right after we return, the GPU finishing is as close
+                // to "presented" as GLES lets us see
+                GLES20.glFinish();
+                frameMetrics.record(FrameMetrics.Stage.DRAW_TO_PRESENT, System.nanoTime() - drawStart);
+            }
         } catch (Exception e) {
-            Log.e(TAG, "Error drawing frame", e);
+            if (DRAW_ERRORS.allow(Log.ERROR)) {
+                DRAW_ERRORS.e("Error drawing frame", e);
+            }
         }
     }
     
-    private void updateTexture() {
-        try {
-            // Configure texture
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-            
-            // TODO: Might optimize later with grayscale shader
-            
-            // Upload texture data
-            frameData.position(0);
-            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, textureWidth, textureHeight,
-                    0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, frameData);
-        } catch (Exception e) {
-            Log.e(TAG, "Error updating texture", e);
+    // Select the program for the frame's format and bind its textures and uniforms
+    private void bindFrame(OutputFrame frame, boolean upload) {
+        ByteBuffer data = frame.getData();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        
+        if (frame.getFormat() == OutputFrame.Format.NV21) {
+            GLES20.glUseProgram(yuvProgram);
+            bindCameraTextures(data, width, height, upload);
+            GLES20.glUniform1i(yTextureUniform, 0);
+            GLES20.glUniform1i(vuTextureUniform, 1);
+            GLES20.glUniformMatrix3fv(yuvMatrixUniform, 1, false, YuvToRgb.MATRIX, 0);
+            GLES20.glUniform3fv(yuvOffsetUniform, 1, YuvToRgb.OFFSET, 0);
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+            return;
+        }
+        
+        if (frame.getFormat() == OutputFrame.Format.OVERLAY && upload && frame.getCamera() == null) {
+            // Camera frame went back to its pool after the first upload and the textures are
+            // gone (new GL context) - show just the edges until the next frame
+            frame.setFormat(OutputFrame.Format.EDGES);
+        }
+        
+        if (frame.getFormat() == OutputFrame.Format.OVERLAY) {
+            // Camera on units 0/1 straight from its pooled copy, edges on unit 2 - all three
+            // sampled in the same draw
+            GLES20.glUseProgram(overlayProgram);
+            FrameBuffer camera = frame.getCamera();
+            bindCameraTextures(camera != null ? camera.getData() : null, width, height, upload);
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE2);
+            if (upload) {
+                edgeTexture.upload(data, 0, frame.getEdgeWidth(), frame.getEdgeHeight());
+                // Textures have their own copy now
+                frame.releaseCamera();
+            } else {
+                edgeTexture.bind();
+            }
+            GLES20.glUniform1i(overlayYUniform, 0);
+            GLES20.glUniform1i(overlayVuUniform, 1);
+            GLES20.glUniform1i(overlayEdgesUniform, 2);
+            GLES20.glUniformMatrix3fv(overlayMatrixUniform, 1, false, YuvToRgb.MATRIX, 0);
+            GLES20.glUniform3fv(overlayOffsetUniform, 1, YuvToRgb.OFFSET, 0);
+            GLES20.glUniform4fv(overlayEdgeColorUniform, 1, edgeColor, 0);
+            GLES20.glUniform1f(overlayOpacityUniform, overlayOpacity);
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+            return;
+        }
+        
+        if (frame.getFormat() == OutputFrame.Format.EDGES) {
+            // 0/255 map, linear filtering gives soft edges when scaled up
+            GLES20.glUseProgram(edgeProgram);
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+            if (upload) {
+                edgeTexture.upload(data, 0, frame.getEdgeWidth(), frame.getEdgeHeight());
+            } else {
+                edgeTexture.bind();
+            }
+            GLES20.glUniform1i(edgeTextureUniform, 0);
+            GLES20.glUniform4fv(edgeColorUniform, 1, edgeColor, 0);
+            GLES20.glUniform4fv(backgroundColorUniform, 1, backgroundColor, 0);
+            return;
+        }
+        
+        GLES20.glUseProgram(shaderProgram);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        if (upload) {
+            frameTexture.upload(data, 0, width, height);
+        } else {
+            frameTexture.bind();
         }
+        GLES20.glUniform1i(textureUniformHandle, 0);
     }
     
-    public void onFrameAvailable(byte[] data, int width, int height) {
+    // NV21 at the start of data: Y on texture unit 0, VU on unit 1
+    private void bindCameraTextures(ByteBuffer data, int width, int height, boolean upload) {
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        if (upload) {
+            lumaTexture.upload(data, 0, width, height);
+        } else {
+            lumaTexture.bind();
+        }
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
+        if (upload) {
+            chromaTexture.upload(data, width * height, width / 2, height / 2);
+        } else {
+            chromaTexture.bind();
+        }
+    }
+    
+    private String loadShader(String name) throws IOException {
+        try (InputStream in = context.getAssets().open("shaders/" + name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+    
+    public void onFrameAvailable(CameraFrame frame) {
         try {
-            if (width <= 0 || height <= 0 || data == null) {
-                Log.e(TAG, "Invalid frame data: " + (data == null ? "null" : "width=" + width + ", height=" + height));
+            if (frame == null || frame.getYPlane() == null || frame.getWidth() <= 0 || frame.getHeight() <= 0) {
+                if (FRAME_PROBLEMS.allow(Log.ERROR)) {
+                    FRAME_PROBLEMS.e("Invalid frame data: " + (frame == null ? "null" : "width=" + frame.getWidth() + ", height=" + frame.getHeight()), null);
+                }
                 return;
             }
             
+            int width = frame.getWidth();
+            int height = frame.getHeight();
+            // Pyramid level needs both halves even for the chroma plane
+            int downscale = (width % 4 == 0 && height % 4 == 0) ? processingDownscale : 1;
+            // A luma-only copy has no chroma, e.g. when edge mode was switched off in between
+            boolean grayOnly = lumaOnly || frame.getUPlane() == null || frame.getVPlane() == null;
+            int outWidth = width / downscale;
+            int outHeight = height / downscale;
+            
             if (!isInitialized) {
-                Log.d(TAG, "OpenGL not initialized yet, skipping frame");
+                if (FRAME_SKIPS.allow(Log.DEBUG)) {
+                    FRAME_SKIPS.d("OpenGL not initialized yet, skipping frame");
+                }
                 return;
             }
             
-            // Periodically log edge detection state for debugging
-            if (System.currentTimeMillis() % 1000 < 50) { // Log roughly every second
-                Log.d(TAG, "Current edge detection state: " + (isEdgeDetectionEnabled ? "ENABLED" : "DISABLED"));
-            }
+            // Our slot of the triple buffer - the GL thread never touches it until publish().
+            // Only allocates on the first frames or when the size grows
+            OutputFrame output = outputFrames.getWriteSlot();
             
-            textureWidth = width;
-            textureHeight = height;
+            long startTime = System.nanoTime();
             
-            // Allocate direct ByteBuffer if needed
-            int bufferSize = width * height * 4; // RGBA
-            if (frameData == null || frameData.capacity() < bufferSize) {
-                // Use direct ByteBuffer for better performance with native code
-                frameData = ByteBuffer.allocateDirect(bufferSize);
-                frameData.order(ByteOrder.nativeOrder());
-                Log.d(TAG, "Created direct frame buffer: " + width + "x" + height + ", size: " + (bufferSize / 1024) + "KB");
+            // Raw camera: hand NV21 to the shader, no native call and no CPU colour conversion
+            if (gpuYuvConversion && yuvProgramReady && !isEdgeDetectionEnabled && !grayOnly) {
+                output.prepare(width, height, OutputFrame.Format.NV21, frame.getCaptureTimeNs());
+                yuvConverter.toNv21(frame, output.getData());
+                publishOutput();
+                return;
             }
             
-            long startTime = System.nanoTime();
+            // Capture time travels with the output so the GL thread can measure latency.
+            // Sized for the mode we expect, the processor reports what it actually wrote
+            FrameBuffer camera = frame.getBackingBuffer();
+            boolean overlay = isEdgeDetectionEnabled && overlayEnabled && overlayProgramReady && !grayOnly
+                    && camera != null;
+            if (overlay) {
+                // The pooled copy already is NV21 - the slot keeps a reference and the GL
+                // thread uploads from it, only the edge map is written here
+                output.prepare(width, height, OutputFrame.Format.OVERLAY, frame.getCaptureTimeNs());
+                output.setEdgeSize(outWidth, outHeight);
+                output.setCamera(camera);
+            } else {
+                output.prepare(outWidth, outHeight, isEdgeDetectionEnabled
+                        ? OutputFrame.Format.EDGES : OutputFrame.Format.RGBA, frame.getCaptureTimeNs());
+            }
             
-            // Process frame with OpenCV native code using direct buffer
+            // Process frame with the current engine, straight into the output slot
             try {
-                frameData.clear(); // Reset position and limits
-                
-                // Log if edge detection is enabled for this frame
-                if (isEdgeDetectionEnabled) {
-                    Log.d(TAG, "Processing frame with edge detection ENABLED");
+                FrameProcessor processor = frameProcessor;
+                int result = processor.process(frame, downscale, grayOnly, output.getData(), 0,
+                        processingStats);
+                FrameMetrics frameMetrics = metrics;
+                if (frameMetrics != null && result != FrameProcessor.OUTPUT_SKIPPED) {
+                    frameMetrics.record(FrameMetrics.Stage.PROCESS, processingStats.processingTimeNs);
+                }
+                if (result == FrameProcessor.OUTPUT_SKIPPED) {
+                    // E.g. the mode flipped after prepare() and the slot is too small - the
+                    // next frame is sized right
+                    if (FRAME_SKIPS.allow(Log.DEBUG)) {
+                        FRAME_SKIPS.d("Processor skipped frame");
+                    }
+                    return;
+                }
+                ProcessingCostListener cost = costListener;
+                if (cost != null && result == FrameProcessor.OUTPUT_EDGES) {
+                    cost.onFrameProcessed(processingStats.processingTimeNs, outWidth, outHeight);
+                }
+                if (overlay) {
+                    if (result != FrameProcessor.OUTPUT_EDGES) {
+                        // Edge mode went off mid-frame, no edge map behind the camera frame
+                        return;
+                    }
+                } else {
+                    output.setFormat(result == FrameProcessor.OUTPUT_EDGES
+                            ? OutputFrame.Format.EDGES : OutputFrame.Format.RGBA);
                 }
-                
-                nativeProcessFrame(data, width, height, frameData);
             } catch (UnsatisfiedLinkError e) {
-                Log.e(TAG, "Native method not found", e);
+                if (PROCESS_ERRORS.allow(Log.ERROR)) {
+                    PROCESS_ERRORS.e("Native method not found", e);
+                }
                 return;
             } catch (Exception e) {
-                Log.e(TAG, "Error in native code processing frame", e);
+                // Slot isn't published, it just gets overwritten by the next frame
+                if (PROCESS_ERRORS.allow(Log.ERROR)) {
+                    PROCESS_ERRORS.e("Error processing frame", e);
+                }
                 return;
             }
             
-            long processingTime = System.nanoTime() - startTime;
-            double processingTimeMs = processingTime / 1_000_000.0;
-            
-            // Always log processing time for debugging
-            Log.d(TAG, String.format("Frame processing time: %.2f ms, edge detection: %s", 
-                  processingTimeMs, isEdgeDetectionEnabled ? "ON" : "OFF"));
+            publishOutput();
             
-            // Request render
-            if (surfaceView != null) {
-                surfaceView.requestRender();
-                
-                // If edge detection is enabled, add a second render request to ensure display updates
-                if (isEdgeDetectionEnabled) {
-                    new Handler(Looper.getMainLooper()).post(() -> {
-                        surfaceView.requestRender();
-                    });
+            // Every Nth frame only (Logger.setDiagnosticInterval), nothing is formatted otherwise
+            if (FRAME_DIAGNOSTICS.sample()) {
+                FRAME_DIAGNOSTICS.log(String.format("Frame processing time: %.2f ms (%s: %.2f ms), edge detection: %s",
+                      (System.nanoTime() - startTime) / 1_000_000.0, getFrameProcessorName(),
+                      processingStats.processingTimeNs / 1_000_000.0, isEdgeDetectionEnabled ? "ON" : "OFF"));
+                if (processingStats.bandCount > 0) {
+                    FRAME_DIAGNOSTICS.log(String.format("  %d bands, slowest %.2f ms, hysteresis %.2f ms",
+                            processingStats.bandCount, processingStats.slowestBandNs() / 1_000_000.0,
+                            processingStats.hysteresisTimeNs / 1_000_000.0));
                 }
             }
+            
         } catch (Exception e) {
-            Log.e(TAG, "Error processing frame", e);
+            if (PROCESS_ERRORS.allow(Log.ERROR)) {
+                PROCESS_ERRORS.e("Error processing frame", e);
+            }
+        }
+    }
+    
+    private void publishOutput() {
+        // Publish to the GL thread. A frame that was never drawn gets replaced here
+        if (outputFrames.publish()) {
+            droppedFrames.incrementAndGet();
+        }
+        // Draw it on the next vsync
+        if (renderScheduler != null) {
+            renderScheduler.requestFrame();
         }
     }
     
@@ -327,6 +756,8 @@ public class OpenGLRenderer implements GLSurfaceView.Renderer {
         // Attach shaders to program
         GLES20.glAttachShader(program, vertexShaderId);
         GLES20.glAttachShader(program, fragmentShaderId);
+        GLES20.glBindAttribLocation(program, POSITION_ATTR, "aPosition");
+        GLES20.glBindAttribLocation(program, TEX_COORD_ATTR, "aTexCoord");
         
         // Link program
         GLES20.glLinkProgram(program);
@@ -368,13 +799,18 @@ public class OpenGLRenderer implements GLSurfaceView.Renderer {
         return shader;
     }
     
-    @Override
-    protected void finalize() throws Throwable {
-        try {
-            nativeRelease();
-        } catch (Exception e) {
-            Log.e(TAG, "Error releasing native resources", e);
+    /**
+     * Frees the frame processor. Frames arriving afterwards are skipped. Call once the
+     * renderer is no longer used (Activity.onDestroy).
+     */
+    public void release() {
+        FrameProcessor processor;
+        synchronized (this) {
+            released = true;
+            processor = frameProcessor;
+        }
+        if (processor != null) {
+            processor.release();
         }
-        super.finalize();
     }
 }
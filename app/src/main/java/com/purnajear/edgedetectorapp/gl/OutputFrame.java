@@ -0,0 +1,126 @@
+package com.purnajear.edgedetectorapp.gl;
+
+import com.purnajear.edgedetectorapp.camera.FrameBuffer;
+import com.purnajear.edgedetectorapp.camera.YuvConverter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * One frame on its way to the GL thread. Lives in a
+ * {@link com.purnajear.edgedetectorapp.processing.TripleBuffer} slot and is reused forever -
+ * the buffer only grows when the frame size does.
+ */
+public class OutputFrame {
+
+    public enum Format {
+        RGBA,   // processed on the CPU, drawn as is
+        NV21,   // raw camera, converted in the shader
+        EDGES,  // binary edge map, 1 byte per pixel, coloured in the shader
+        OVERLAY; // edge map in data, NV21 camera frame in the pooled copy, blended in the shader
+
+        // For OVERLAY this assumes a full size edge map, a downscaled one fits as well
+        public int size(int width, int height) {
+            switch (this) {
+                case RGBA:
+                    return width * height * 4;
+                case EDGES:
+                case OVERLAY:
+                    return width * height;
+                default:
+                    return YuvConverter.nv21Size(width, height);
+            }
+        }
+    }
+
+    private ByteBuffer data;
+    private Format format = Format.RGBA;
+    private int width;
+    private int height;
+    private int edgeWidth;   // OVERLAY only, the edge map may be processed at lower resolution
+    private int edgeHeight;
+    private long captureTimeNs;
+    // OVERLAY only: the camera frame's pooled NV21 copy, one reference held until uploaded
+    private FrameBuffer camera;
+
+    /**
+     * Make sure data can hold the given frame, reallocating only if it's too small. Drops
+     * a camera buffer the slot still holds, e.g. from a frame that was never drawn.
+     */
+    public void prepare(int width, int height, Format format, long captureTimeNs) {
+        releaseCamera();
+        int needed = format.size(width, height);
+        if (data == null || data.capacity() < needed) {
+            data = ByteBuffer.allocateDirect(needed);
+            data.order(ByteOrder.nativeOrder());
+        }
+        data.clear();
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.edgeWidth = width;
+        this.edgeHeight = height;
+        this.captureTimeNs = captureTimeNs;
+    }
+
+    /** OVERLAY: size of the edge map behind the camera frame, at most the frame size. */
+    public void setEdgeSize(int edgeWidth, int edgeHeight) {
+        this.edgeWidth = edgeWidth;
+        this.edgeHeight = edgeHeight;
+    }
+
+    /** OVERLAY: draw the camera from this pooled NV21 copy (retained) instead of copying it. */
+    public void setCamera(FrameBuffer buffer) {
+        releaseCamera();
+        camera = buffer.retain();
+    }
+
+    /** Null once the GL thread uploaded it, or if there never was one. */
+    public FrameBuffer getCamera() {
+        return camera;
+    }
+
+    public void releaseCamera() {
+        if (camera != null) {
+            camera.release();
+            camera = null;
+        }
+    }
+
+    /** Native reports what it actually wrote, which can differ from what was prepared for. */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getEdgeWidth() {
+        return edgeWidth;
+    }
+
+    public int getEdgeHeight() {
+        return edgeHeight;
+    }
+
+    public long getCaptureTimeNs() {
+        return captureTimeNs;
+    }
+
+    public boolean isEmpty() {
+        return data == null || width <= 0 || height <= 0;
+    }
+}
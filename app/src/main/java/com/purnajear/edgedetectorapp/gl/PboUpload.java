@@ -0,0 +1,41 @@
+package com.purnajear.edgedetectorapp.gl;
+
+import android.util.Log;
+
+/**
+ * glTexSubImage2D from the bound GL_PIXEL_UNPACK_BUFFER. GLES20/GLES30 only take the
+ * pixels as a Buffer, so the offset form goes through libedge-detector (gl_upload.cpp).
+ * Without the library TextureStreamer uploads from client memory instead.
+ */
+final class PboUpload {
+    private static final String TAG = "PboUpload";
+
+    private static final boolean AVAILABLE = probe();
+
+    private PboUpload() {
+    }
+
+    private static native boolean nativeIsAvailable();
+
+    private static native void nativeTexSubImage2D(int target, int level, int x, int y, int width, int height,
+                                                   int format, int type, int offset);
+
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /** Pixels start at offset bytes into the bound unpack buffer. */
+    static void texSubImage2D(int target, int level, int x, int y, int width, int height,
+                              int format, int type, int offset) {
+        nativeTexSubImage2D(target, level, x, y, width, height, format, type, offset);
+    }
+
+    private static boolean probe() {
+        try {
+            return nativeIsAvailable();
+        } catch (UnsatisfiedLinkError e) {
+            Log.w(TAG, "Native library not loaded, PBO uploads disabled");
+            return false;
+        }
+    }
+}
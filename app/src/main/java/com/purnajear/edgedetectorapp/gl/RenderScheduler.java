@@ -0,0 +1,53 @@
+package com.purnajear.edgedetectorapp.gl;
+
+import android.opengl.GLSurfaceView;
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Renders a RENDERMODE_WHEN_DIRTY surface only when there is something new to show.
+ *
+ * Producers call requestFrame() from any thread. That posts at most one Choreographer
+ * callback, and the render request goes out on the next vsync - several frames published
+ * within one refresh interval collapse into a single draw of the newest one.
+ *
+ * Create on a Looper thread (normally the main thread); Choreographer is per-looper.
+ */
+class RenderScheduler implements Choreographer.FrameCallback {
+
+    private final GLSurfaceView surfaceView;
+    private final Choreographer choreographer;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile boolean running = false;
+
+    RenderScheduler(GLSurfaceView surfaceView) {
+        this.surfaceView = surfaceView;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    void start() {
+        running = true;
+        // Redraw whatever we had when we were paused
+        requestFrame();
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    /** Any thread. Cheap when a callback is already pending. */
+    void requestFrame() {
+        if (running && scheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled.set(false);
+        if (running) {
+            surfaceView.requestRender();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.purnajear.edgedetectorapp.gl;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streams CPU frames into one 2D texture.
+ *
+ * Texture storage is only (re)allocated when the frame size changes, every frame after
+ * that is a glTexSubImage2D. On an ES 3.0 context uploads go through two pixel buffer
+ * objects used in turn: we copy into one while the driver may still be transferring the
+ * previous frame out of the other, and the texture update itself runs asynchronously.
+ * On ES 2.0, or without the native library for the PBO upload call ({@link PboUpload}),
+ * it falls back to a plain glTexSubImage2D from client memory.
+ *
+ * GL thread only.
+ */
+class TextureStreamer {
+    private static final String TAG = "TextureStreamer";
+
+    private final int format;
+    private final int bytesPerPixel;
+    private final int filter;
+
+    private final int[] texture = new int[1];
+    private final int[] pbos = new int[2];
+    private boolean usePbo;
+    private int pboIndex = 0;
+    private int pboSize = 0;
+
+    // Size of the allocated texture storage, 0 = none yet
+    private int width = 0;
+    private int height = 0;
+
+    /**
+     * @param format GL_RGBA, GL_LUMINANCE or GL_LUMINANCE_ALPHA
+     * @param filter GL_LINEAR or GL_NEAREST, for both minification and magnification
+     */
+    TextureStreamer(int format, int bytesPerPixel, int filter) {
+        this.format = format;
+        this.bytesPerPixel = bytesPerPixel;
+        this.filter = filter;
+    }
+
+    /**
+     * Create the GL objects. Call from onSurfaceCreated - ids from a lost context are
+     * already gone, so they are simply forgotten.
+     */
+    void init(boolean es3) {
+        GLES20.glGenTextures(1, texture, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[0]);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, filter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, filter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+
+        usePbo = es3 && PboUpload.isAvailable();
+        if (usePbo) {
+            GLES30.glGenBuffers(2, pbos, 0);
+        }
+        pboIndex = 0;
+        pboSize = 0;
+        width = 0;
+        height = 0;
+    }
+
+    int getTextureId() {
+        return texture[0];
+    }
+
+    /** Bind to the active texture unit without uploading. */
+    void bind() {
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[0]);
+    }
+
+    /**
+     * Upload a tightly packed image starting at offset in data. Leaves the texture
+     * bound to the active texture unit.
+     */
+    void upload(ByteBuffer data, int offset, int frameWidth, int frameHeight) {
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[0]);
+        if (frameWidth != width || frameHeight != height) {
+            // Storage only, contents come from the sub-image upload below
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, format, frameWidth, frameHeight,
+                    0, format, GLES20.GL_UNSIGNED_BYTE, null);
+            width = frameWidth;
+            height = frameHeight;
+            Log.d(TAG, "Allocated texture storage " + width + "x" + height);
+        }
+        // Rows of 1- and 2-byte formats aren't necessarily 4-byte aligned
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, bytesPerPixel == 4 ? 4 : 1);
+
+        int size = width * height * bytesPerPixel;
+        data.limit(offset + size);
+        data.position(offset);
+        if (usePbo && uploadViaPbo(data, size)) {
+            return;
+        }
+        GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, width, height,
+                format, GLES20.GL_UNSIGNED_BYTE, data);
+    }
+
+    private boolean uploadViaPbo(ByteBuffer data, int size) {
+        if (size != pboSize) {
+            for (int pbo : pbos) {
+                GLES30.glBindBuffer(GLES30.GL_PIXEL_UNPACK_BUFFER, pbo);
+                GLES30.glBufferData(GLES30.GL_PIXEL_UNPACK_BUFFER, size, null, GLES30.GL_STREAM_DRAW);
+            }
+            pboSize = size;
+        }
+
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_UNPACK_BUFFER, pbos[pboIndex]);
+        pboIndex ^= 1;
+        // Invalidate - we overwrite everything, so the driver needn't wait for the old contents
+        ByteBuffer mapped = (ByteBuffer) GLES30.glMapBufferRange(GLES30.GL_PIXEL_UNPACK_BUFFER, 0, size,
+                GLES30.GL_MAP_WRITE_BIT | GLES30.GL_MAP_INVALIDATE_BUFFER_BIT);
+        if (mapped == null) {
+            Log.e(TAG, "glMapBufferRange failed, falling back to direct uploads");
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_UNPACK_BUFFER, 0);
+            usePbo = false;
+            return false;
+        }
+        mapped.put(data);
+        GLES30.glUnmapBuffer(GLES30.GL_PIXEL_UNPACK_BUFFER);
+
+        // Offset 0 into the bound PBO instead of client memory
+        PboUpload.texSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, width, height,
+                format, GLES20.GL_UNSIGNED_BYTE, 0);
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_UNPACK_BUFFER, 0);
+        return true;
+    }
+}
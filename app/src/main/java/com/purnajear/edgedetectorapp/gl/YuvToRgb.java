@@ -0,0 +1,70 @@
+package com.purnajear.edgedetectorapp.gl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV to RGB as done by yuv_fragment_shader.glsl, on the CPU.
+ *
+ * Full-range BT.601 (JFIF), which is what Android cameras deliver for YUV_420_888. The
+ * shader gets MATRIX and OFFSET as uniforms, so both sides share the same numbers and this
+ * class can serve as the reference for the GPU path. Plain JVM, no Android dependencies.
+ */
+public final class YuvToRgb {
+
+    // Column-major 3x3 for glUniformMatrix3fv: rgb = MATRIX * (y, u, v)
+    public static final float[] MATRIX = {
+            1.0f, 1.0f, 1.0f,              // Y
+            0.0f, -0.344136f, 1.772f,      // U
+            1.402f, -0.714136f, 0.0f       // V
+    };
+
+    // Added to (y, u, v) in normalized units before the matrix
+    public static final float[] OFFSET = {0.0f, -128.0f / 255.0f, -128.0f / 255.0f};
+
+    private YuvToRgb() {
+    }
+
+    /** One pixel, 8-bit in and out. Returns 0xRRGGBB. */
+    public static int toRgb(int y, int u, int v) {
+        float yn = y / 255.0f + OFFSET[0];
+        float un = u / 255.0f + OFFSET[1];
+        float vn = v / 255.0f + OFFSET[2];
+        int r = toByte(MATRIX[0] * yn + MATRIX[3] * un + MATRIX[6] * vn);
+        int g = toByte(MATRIX[1] * yn + MATRIX[4] * un + MATRIX[7] * vn);
+        int b = toByte(MATRIX[2] * yn + MATRIX[5] * un + MATRIX[8] * vn);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Convert a packed NV21 frame (starting at position 0) to RGBA, one 2x2 block per chroma
+     * sample - the same as the shader sampling the half-size VU texture with GL_NEAREST.
+     */
+    public static void nv21ToRgba(ByteBuffer nv21, int width, int height, ByteBuffer rgba) {
+        int ySize = width * height;
+        for (int row = 0; row < height; row++) {
+            int vuRow = ySize + (row / 2) * width;
+            for (int col = 0; col < width; col++) {
+                int y = nv21.get(row * width + col) & 0xFF;
+                int vu = vuRow + (col / 2) * 2;
+                int v = nv21.get(vu) & 0xFF;
+                int u = nv21.get(vu + 1) & 0xFF;
+                int rgb = toRgb(y, u, v);
+                rgba.put((byte) (rgb >> 16));
+                rgba.put((byte) (rgb >> 8));
+                rgba.put((byte) rgb);
+                rgba.put((byte) 0xFF);
+            }
+        }
+    }
+
+    // Same as clamp() and the 8-bit framebuffer write on the GPU
+    private static int toByte(float value) {
+        if (value <= 0.0f) {
+            return 0;
+        }
+        if (value >= 1.0f) {
+            return 255;
+        }
+        return Math.round(value * 255.0f);
+    }
+}
@@ -0,0 +1,32 @@
+package com.purnajear.edgedetectorapp.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * "Every Nth frame" diagnostics for one call site, N being
+ * {@link Logger#getDiagnosticInterval()} (0 turns them off). Call sample() once per frame;
+ * the level check comes first, so with the tag silenced nothing is counted either.
+ */
+public final class FrameSampler {
+
+    private final Logger logger;
+    private final int priority;
+    private final AtomicLong frames = new AtomicLong();
+
+    public FrameSampler(Logger logger, int priority) {
+        this.logger = logger;
+        this.priority = priority;
+    }
+
+    public boolean sample() {
+        int interval = Logger.getDiagnosticInterval();
+        if (interval <= 0 || !logger.isLoggable(priority)) {
+            return false;
+        }
+        return frames.getAndIncrement() % interval == 0;
+    }
+
+    public void log(String message) {
+        logger.write(priority, message, null);
+    }
+}
@@ -0,0 +1,146 @@
+package com.purnajear.edgedetectorapp.logging;
+
+import android.util.Log;
+
+import com.purnajear.edgedetectorapp.BuildConfig;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Logging facade over android.util.Log with a level per tag.
+ *
+ * Release builds never log below INFO: isLoggable() folds in BuildConfig.DEBUG, so hot
+ * paths guard their formatting - {@code if (log.isDebug()) log.d("..." + x)} - and pay one
+ * field read. Per call site rate limiting is {@link RateLimitedLog}, "every Nth frame"
+ * diagnostics are {@link FrameSampler}. edge_detector.cpp has the same thing in logging.h;
+ * the level of {@link #NATIVE_TAG} and the diagnostic interval are pushed to it.
+ *
+ * Get one Logger per tag and keep it in a static final, get() isn't meant for hot paths.
+ */
+public final class Logger {
+
+    public static final boolean DEBUG_BUILD = BuildConfig.DEBUG;
+    // Tag edge_detector.cpp logs under
+    public static final String NATIVE_TAG = "EdgeDetector";
+
+    private static final int USE_DEFAULT = -1;
+    private static final ConcurrentHashMap<String, Logger> loggers = new ConcurrentHashMap<>();
+    private static volatile int defaultLevel = DEBUG_BUILD ? Log.DEBUG : Log.INFO;
+    // FrameSampler passes every Nth frame, 0 = diagnostics off
+    private static volatile int diagnosticInterval = DEBUG_BUILD ? 30 : 0;
+
+    private final String tag;
+    private volatile int level = USE_DEFAULT;
+
+    private Logger(String tag) {
+        this.tag = tag;
+    }
+
+    public static Logger get(String tag) {
+        return loggers.computeIfAbsent(tag, Logger::new);
+    }
+
+    /** Minimum priority (Log.DEBUG, ...) for one tag. */
+    public static void setLevel(String tag, int level) {
+        get(tag).level = level;
+        if (NATIVE_TAG.equals(tag)) {
+            syncNative();
+        }
+    }
+
+    /** Minimum priority for tags without their own level. */
+    public static void setDefaultLevel(int level) {
+        defaultLevel = level;
+        syncNative();
+    }
+
+    public static void setDiagnosticInterval(int frames) {
+        diagnosticInterval = Math.max(0, frames);
+        syncNative();
+    }
+
+    public static int getDiagnosticInterval() {
+        return diagnosticInterval;
+    }
+
+    /** Push the native tag's level and the diagnostic interval. Call once the library is loaded. */
+    public static void syncNative() {
+        NativeLog.configure(get(NATIVE_TAG).getLevel(), diagnosticInterval);
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public int getLevel() {
+        int own = level;
+        return own != USE_DEFAULT ? own : defaultLevel;
+    }
+
+    public boolean isLoggable(int priority) {
+        return (DEBUG_BUILD || priority >= Log.INFO) && priority >= getLevel();
+    }
+
+    public boolean isVerbose() {
+        return isLoggable(Log.VERBOSE);
+    }
+
+    public boolean isDebug() {
+        return isLoggable(Log.DEBUG);
+    }
+
+    public void v(String message) {
+        log(Log.VERBOSE, message, null);
+    }
+
+    public void d(String message) {
+        log(Log.DEBUG, message, null);
+    }
+
+    public void i(String message) {
+        log(Log.INFO, message, null);
+    }
+
+    public void w(String message) {
+        log(Log.WARN, message, null);
+    }
+
+    public void w(String message, Throwable t) {
+        log(Log.WARN, message, t);
+    }
+
+    public void e(String message) {
+        log(Log.ERROR, message, null);
+    }
+
+    public void e(String message, Throwable t) {
+        log(Log.ERROR, message, t);
+    }
+
+    public void log(int priority, String message, Throwable t) {
+        if (isLoggable(priority)) {
+            write(priority, message, t);
+        }
+    }
+
+    // No level check - callers did it
+    void write(int priority, String message, Throwable t) {
+        switch (priority) {
+            case Log.VERBOSE:
+                Log.v(tag, message, t);
+                break;
+            case Log.DEBUG:
+                Log.d(tag, message, t);
+                break;
+            case Log.INFO:
+                Log.i(tag, message, t);
+                break;
+            case Log.WARN:
+                Log.w(tag, message, t);
+                break;
+            default:
+                Log.e(tag, message, t);
+                break;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.purnajear.edgedetectorapp.logging;
+
+/**
+ * Log settings for edge_detector.cpp (see logging.h). Release libraries have debug and
+ * verbose compiled out whatever the level says.
+ */
+final class NativeLog {
+
+    private static native void nativeConfigure(int minPriority, int diagnosticInterval);
+
+    private NativeLog() {
+    }
+
+    static void configure(int minPriority, int diagnosticInterval) {
+        try {
+            nativeConfigure(minPriority, diagnosticInterval);
+        } catch (UnsatisfiedLinkError e) {
+            // Library not loaded (yet) - Logger.syncNative() once it is
+        }
+    }
+}
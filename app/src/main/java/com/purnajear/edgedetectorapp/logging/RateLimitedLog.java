@@ -0,0 +1,82 @@
+package com.purnajear.edgedetectorapp.logging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket for one log call site: up to burst messages at once, refilled at perSecond.
+ * Messages that don't get a token are counted and the count is added to the next one that
+ * does. Lock-free (GCRA on one AtomicLong), so any thread can share a site.
+ *
+ * <pre>
+ * if (SITE.allow(Log.WARN)) {
+ *     SITE.w("Buffer too small: " + size);
+ * }
+ * </pre>
+ */
+public final class RateLimitedLog {
+
+    private final Logger logger;
+    private final long intervalNs;
+    private final long toleranceNs;
+    // When the bucket is back to full, GCRA's "theoretical arrival time"
+    private final AtomicLong fullAtNs = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    public RateLimitedLog(Logger logger, double perSecond, int burst) {
+        this.logger = logger;
+        this.intervalNs = (long) (1_000_000_000L / perSecond);
+        this.toleranceNs = (Math.max(1, burst) - 1) * intervalNs;
+    }
+
+    /** Level check plus one token. Format the message only when this returns true. */
+    public boolean allow(int priority) {
+        if (!logger.isLoggable(priority)) {
+            return false;
+        }
+        if (tryAcquire(System.nanoTime())) {
+            return true;
+        }
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    boolean tryAcquire(long nowNs) {
+        while (true) {
+            long fullAt = fullAtNs.get();
+            long start = Math.max(fullAt, nowNs);
+            if (start - nowNs > toleranceNs) {
+                return false;
+            }
+            if (fullAtNs.compareAndSet(fullAt, start + intervalNs)) {
+                return true;
+            }
+        }
+    }
+
+    public int getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    public void d(String message) {
+        write(android.util.Log.DEBUG, message, null);
+    }
+
+    public void i(String message) {
+        write(android.util.Log.INFO, message, null);
+    }
+
+    public void w(String message) {
+        write(android.util.Log.WARN, message, null);
+    }
+
+    public void e(String message, Throwable t) {
+        write(android.util.Log.ERROR, message, t);
+    }
+
+    // After allow() - no second check
+    private void write(int priority, String message, Throwable t) {
+        int dropped = suppressed.getAndSet(0);
+        logger.write(priority, dropped > 0 ? message + " (" + dropped + " similar suppressed)" : message, t);
+    }
+}
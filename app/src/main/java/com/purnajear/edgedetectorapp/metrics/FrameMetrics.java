@@ -0,0 +1,115 @@
+package com.purnajear.edgedetectorapp.metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Latency of every stage a frame goes through, one {@link LatencyHistogram} per stage.
+ *
+ * All times are System.nanoTime() differences; the sensor side uses Image.getTimestamp()
+ * moved onto that clock (CameraFrame.getCaptureTimeNs()). record() is lock-free and
+ * allocation free, snapshots and formatting are meant for the UI thread or a dump.
+ */
+public final class FrameMetrics {
+
+    public enum Stage {
+        SENSOR_TO_ACQUIRE("sensor_to_acquire", "Sensor->acquire"),    // exposure to acquireLatestImage()
+        ACQUIRE_TO_CONVERT("acquire_to_convert", "Acquire->convert"), // until the pooled NV21 copy is done
+        PROCESS("process", "Process"),                                // FrameProcessor.process(), JNI for native
+        UPLOAD("texture_upload", "Upload"),                           // texture upload on the GL thread
+        DRAW_TO_PRESENT("draw_to_present", "Draw->present"),          // onDrawFrame until the GPU is done
+        END_TO_END("capture_to_draw", "Capture->draw");               // what the quality governor sees
+
+        public final String key;
+        public final String label;
+
+        Stage(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    public FrameMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void record(Stage stage, long durationNs) {
+        histograms[stage.ordinal()].record(durationNs);
+    }
+
+    public Map<Stage, LatencyHistogram.Snapshot> snapshot() {
+        Map<Stage, LatencyHistogram.Snapshot> snapshots = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            snapshots.put(stage, histograms[stage.ordinal()].snapshot());
+        }
+        return snapshots;
+    }
+
+    /** Per-stage windows between two snapshot() results. */
+    public static Map<Stage, LatencyHistogram.Snapshot> since(Map<Stage, LatencyHistogram.Snapshot> now,
+                                                              Map<Stage, LatencyHistogram.Snapshot> earlier) {
+        Map<Stage, LatencyHistogram.Snapshot> window = new EnumMap<>(Stage.class);
+        for (Map.Entry<Stage, LatencyHistogram.Snapshot> entry : now.entrySet()) {
+            LatencyHistogram.Snapshot before = earlier.get(entry.getKey());
+            window.put(entry.getKey(), before != null ? entry.getValue().since(before) : entry.getValue());
+        }
+        return window;
+    }
+
+    /** Everything recorded so far as JSON, times in ms. */
+    public String toJson() {
+        return toJson(snapshot());
+    }
+
+    public static String toJson(Map<Stage, LatencyHistogram.Snapshot> snapshots) {
+        return "{\"stages\":" + stagesToJson(snapshots) + "}";
+    }
+
+    /** Just the object keyed by stage, for reports that carry more than latency. */
+    public static String stagesToJson(Map<Stage, LatencyHistogram.Snapshot> snapshots) {
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<Stage, LatencyHistogram.Snapshot> entry : snapshots.entrySet()) {
+            LatencyHistogram.Snapshot s = entry.getValue();
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append(String.format(Locale.US,
+                    "\"%s\":{\"count\":%d,\"mean_ms\":%.3f,\"p50_ms\":%.3f,\"p95_ms\":%.3f,\"p99_ms\":%.3f,\"max_ms\":%.3f}",
+                    entry.getKey().key, s.getCount(), s.getMeanNs() / 1e6, ms(s, 0.50), ms(s, 0.95), ms(s, 0.99),
+                    s.getMaxNs() / 1e6));
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * On-screen text: one line per stage that saw frames, "p50/p95/p99/max" in ms.
+     * Compact only shows end to end.
+     */
+    public static String format(Map<Stage, LatencyHistogram.Snapshot> snapshots, boolean compact) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Stage, LatencyHistogram.Snapshot> entry : snapshots.entrySet()) {
+            Stage stage = entry.getKey();
+            LatencyHistogram.Snapshot s = entry.getValue();
+            if (s.getCount() == 0 || (compact && stage != Stage.END_TO_END)) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(String.format(Locale.US, "%-15s %5.1f/%5.1f/%5.1f/%5.1f ms", stage.label,
+                    ms(s, 0.50), ms(s, 0.95), ms(s, 0.99), s.getMaxNs() / 1e6));
+        }
+        return sb.toString();
+    }
+
+    private static double ms(LatencyHistogram.Snapshot s, double quantile) {
+        return s.getValueAtQuantile(quantile) / 1e6;
+    }
+}
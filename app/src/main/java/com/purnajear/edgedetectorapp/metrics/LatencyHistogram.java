@@ -0,0 +1,140 @@
+package com.purnajear.edgedetectorapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free histogram of nanosecond durations.
+ *
+ * Buckets are log-linear: every power of two is split into 16 equal buckets, so a bucket is
+ * never wider than 1/16 of its lower bound (about 6% error) from 16 ns up to Long.MAX_VALUE,
+ * in 960 counters allocated up front. record() is a few atomic adds - no locks, no
+ * allocation - and may be called from any number of threads.
+ *
+ * Counts only ever grow. For a window, take two snapshots and use {@link Snapshot#since}.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Negative durations (clock trouble) are counted as 0. */
+    public void record(long valueNs) {
+        long value = Math.max(valueNs, 0);
+        counts.incrementAndGet(bucketOf(value));
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Lost a race with another max, try again
+        }
+    }
+
+    /**
+     * Copy of the counts. Not atomic across buckets: values recorded meanwhile may or may not
+     * be in it, but every value is in exactly one of two consecutive snapshots.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, sum.get(), max.get());
+    }
+
+    // Values below 16 get a bucket each, above that 16 buckets per power of two
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long upperBound(int bucket) {
+        return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    /** Immutable counts at one point in time. */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /** 0 when empty. */
+        public long getMaxNs() {
+            return max;
+        }
+
+        public double getMeanNs() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Value at quantile q (0..1), reported as the top of its bucket so it never
+         * understates, and never above the max. 0 when empty.
+         */
+        public long getValueAtQuantile(double q) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * What was recorded between earlier and this snapshot. The max of a window isn't
+         * tracked exactly; it's the top of the highest bucket that got values, capped by
+         * the all-time max.
+         */
+        public Snapshot since(Snapshot earlier) {
+            long[] delta = new long[counts.length];
+            int highest = -1;
+            for (int i = 0; i < counts.length; i++) {
+                delta[i] = counts[i] - earlier.counts[i];
+                if (delta[i] > 0) {
+                    highest = i;
+                }
+            }
+            long windowMax = highest < 0 ? 0 : Math.min(upperBound(highest), max);
+            return new Snapshot(delta, sum - earlier.sum, windowMax);
+        }
+    }
+}
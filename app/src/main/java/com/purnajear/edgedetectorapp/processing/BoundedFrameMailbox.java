@@ -0,0 +1,52 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FIFO with a fixed capacity, for when every frame matters (recording). Frames are
+ * only dropped once the queue is full, and then it's the newest one so what was already
+ * queued stays in order.
+ */
+public class BoundedFrameMailbox implements FrameMailbox {
+    private final ArrayBlockingQueue<CameraFrame> queue;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public BoundedFrameMailbox(int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public boolean offer(CameraFrame frame) {
+        if (queue.offer(frame)) {
+            return true;
+        }
+        frame.release();
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    @Override
+    public CameraFrame take() throws InterruptedException {
+        return queue.take();
+    }
+
+    @Override
+    public void clear() {
+        CameraFrame frame;
+        while ((frame = queue.poll()) != null) {
+            frame.release();
+        }
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+}
@@ -0,0 +1,117 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times edge engines against each other on {@link EngineCalibrator}'s scene at several
+ * sizes, and checks they agree: every engine's edge map is compared pixel by pixel with
+ * the first engine's (the reference, normally native OpenCV).
+ */
+public final class EngineBenchmark {
+
+    /** One engine at one size. */
+    public static final class Result {
+        public final String name;
+        public final int width;
+        public final int height;
+        public final double frameMs;      // median, NaN if the engine failed
+        public final int differingPixels; // vs the reference, -1 for the reference or a failure
+
+        Result(String name, int width, int height, double frameMs, int differingPixels) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.frameMs = frameMs;
+            this.differingPixels = differingPixels;
+        }
+    }
+
+    private final int warmupFrames;
+    private final int measureFrames;
+
+    public EngineBenchmark(int warmupFrames, int measureFrames) {
+        this.warmupFrames = warmupFrames;
+        this.measureFrames = Math.max(1, measureFrames);
+    }
+
+    /** engines.get(0) is the reference. Engines are left in edge mode, not released. */
+    public List<Result> run(List<FrameProcessor> engines, int[][] sizes) {
+        List<Result> results = new ArrayList<>();
+        FrameProcessor.Stats stats = new FrameProcessor.Stats();
+        for (int[] size : sizes) {
+            CameraFrame scene = EngineCalibrator.createScene(size[0], size[1]);
+            ByteBuffer output = ByteBuffer.allocateDirect(size[0] * size[1]);
+            byte[] reference = null;
+            byte[] edges = new byte[size[0] * size[1]];
+            for (FrameProcessor engine : engines) {
+                double ms = measure(engine, scene, output, stats);
+                int differing = -1;
+                if (!Double.isNaN(ms)) {
+                    output.clear();
+                    output.get(edges);
+                    if (engine == engines.get(0)) {
+                        reference = edges.clone();
+                    } else if (reference != null) {
+                        differing = countDifferences(reference, edges);
+                    }
+                }
+                results.add(new Result(engine.getName(), size[0], size[1], ms, differing));
+            }
+        }
+        return results;
+    }
+
+    private double measure(FrameProcessor engine, CameraFrame scene, ByteBuffer output, FrameProcessor.Stats stats) {
+        long[] times = new long[measureFrames];
+        try {
+            engine.setState(true, 50, 3, false);
+            for (int i = 0; i < warmupFrames + measureFrames; i++) {
+                long start = System.nanoTime();
+                if (engine.process(scene, 1, true, output, 0, stats) != FrameProcessor.OUTPUT_EDGES) {
+                    return Double.NaN;
+                }
+                if (i >= warmupFrames) {
+                    times[i - warmupFrames] = System.nanoTime() - start;
+                }
+            }
+        } catch (RuntimeException | UnsatisfiedLinkError e) {
+            return Double.NaN;
+        }
+        Arrays.sort(times);
+        return times[times.length / 2] / 1_000_000.0;
+    }
+
+    private static int countDifferences(byte[] a, byte[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** One line per result, with the speedup over the reference at that size. */
+    public static String format(List<Result> results) {
+        StringBuilder sb = new StringBuilder();
+        Result base = null;
+        for (Result r : results) {
+            if (base == null || base.width != r.width || base.height != r.height) {
+                base = r;
+            }
+            sb.append(String.format(Locale.US, "%dx%d %s: %.2f ms/frame (x%.2f)", r.width, r.height, r.name,
+                    r.frameMs, base.frameMs / r.frameMs));
+            if (r != base && r.differingPixels >= 0) {
+                sb.append(String.format(Locale.US, ", %d pixels differ from %s", r.differingPixels, base.name));
+            }
+            sb.append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+}
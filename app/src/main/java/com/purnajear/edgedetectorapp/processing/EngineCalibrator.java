@@ -0,0 +1,96 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+import com.purnajear.edgedetectorapp.camera.SyntheticFrameSource;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Times each edge engine on a synthetic frame and keeps the fastest.
+ *
+ * The scene is the one native forceEdgeDetectionTest draws (grey background, white
+ * rectangle, black circle, thick diagonal line) as a 640x480 YUV frame with neutral chroma.
+ * Engines run in edge mode with default parameters; the median frame time decides.
+ */
+public final class EngineCalibrator {
+
+    public static final int SCENE_WIDTH = SyntheticFrameSource.SCENE_WIDTH;
+    public static final int SCENE_HEIGHT = SyntheticFrameSource.SCENE_HEIGHT;
+
+    private final int warmupFrames;
+    private final int measureFrames;
+    // Median ms per frame by engine name, NaN for engines that failed
+    private final Map<String, Double> results = new LinkedHashMap<>();
+
+    public EngineCalibrator(int warmupFrames, int measureFrames) {
+        this.warmupFrames = warmupFrames;
+        this.measureFrames = Math.max(1, measureFrames);
+    }
+
+    /**
+     * Measure every candidate and return the fastest. All others are released. Null (and
+     * everything released) if none of them managed a frame.
+     */
+    public FrameProcessor pickFastest(List<FrameProcessor> candidates) {
+        CameraFrame scene = createScene();
+        FrameProcessor best = null;
+        double bestMs = Double.MAX_VALUE;
+        for (FrameProcessor candidate : candidates) {
+            double ms = measure(candidate, scene);
+            results.put(candidate.getName(), ms);
+            if (!Double.isNaN(ms) && ms < bestMs) {
+                bestMs = ms;
+                best = candidate;
+            }
+        }
+        for (FrameProcessor candidate : candidates) {
+            if (candidate != best) {
+                candidate.release();
+            }
+        }
+        return best;
+    }
+
+    public Map<String, Double> getResults() {
+        return results;
+    }
+
+    /** Median ms per edge frame, NaN if the engine threw or skipped frames. */
+    public double measure(FrameProcessor processor, CameraFrame scene) {
+        ByteBuffer output = ByteBuffer.allocateDirect(scene.getWidth() * scene.getHeight() * 4);
+        FrameProcessor.Stats stats = new FrameProcessor.Stats();
+        long[] times = new long[measureFrames];
+        try {
+            processor.setState(true, 50, 3, false);
+            for (int i = 0; i < warmupFrames + measureFrames; i++) {
+                long start = System.nanoTime();
+                int result = processor.process(scene, 1, true, output, 0, stats);
+                long elapsed = System.nanoTime() - start;
+                if (result != FrameProcessor.OUTPUT_EDGES) {
+                    return Double.NaN;
+                }
+                if (i >= warmupFrames) {
+                    times[i - warmupFrames] = elapsed;
+                }
+            }
+        } catch (RuntimeException | UnsatisfiedLinkError e) {
+            return Double.NaN;
+        }
+        Arrays.sort(times);
+        return times[times.length / 2] / 1_000_000.0;
+    }
+
+    /** forceEdgeDetectionTest's scene as a planar YUV frame. */
+    public static CameraFrame createScene() {
+        return createScene(SCENE_WIDTH, SCENE_HEIGHT);
+    }
+
+    /** The same scene stretched to width x height (even sizes), for timing bigger frames. */
+    public static CameraFrame createScene(int width, int height) {
+        return SyntheticFrameSource.createScene(width, height);
+    }
+}
@@ -0,0 +1,23 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+/**
+ * Hand-off point between the camera thread and the processing thread.
+ *
+ * offer() never blocks the producer. Frames that can't be kept are released straight
+ * away and counted as dropped, so the capture side never waits on processing.
+ */
+public interface FrameMailbox {
+
+    /** Returns false if the offered frame (or an older one) had to be dropped. */
+    boolean offer(CameraFrame frame);
+
+    /** Blocks until a frame is available. */
+    CameraFrame take() throws InterruptedException;
+
+    /** Releases anything still waiting. */
+    void clear();
+
+    long getDroppedCount();
+}
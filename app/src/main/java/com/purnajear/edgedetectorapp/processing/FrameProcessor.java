@@ -0,0 +1,65 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One way of turning a camera frame into something the renderer can draw.
+ *
+ * Implementations: {@link NativeFrameProcessor} (OpenCV), {@link JavaFrameProcessor} and
+ * {@link PassthroughFrameProcessor}. {@link FrameProcessors} creates them by name,
+ * {@link EngineCalibrator} picks the fastest for the device.
+ *
+ * process() is called from one processing thread at a time. setState() and release() may
+ * come from any thread; release() waits for a running process() and later calls are no-ops.
+ */
+public interface FrameProcessor {
+
+    // process() results. RGBA and EDGES match OutputFormat in edge_detector.cpp
+    int OUTPUT_SKIPPED = -1; // nothing written, drop the frame
+    int OUTPUT_RGBA = 0;     // 4 bytes per pixel
+    int OUTPUT_EDGES = 1;    // 1 byte per pixel, 0 or 255
+
+    /** Filled in by process(). Reused by the caller, so copy what you need to keep. */
+    final class Stats {
+        // Matches MAX_BANDS in edge_detector.cpp
+        public static final int MAX_BANDS = 16;
+
+        public int format = OUTPUT_SKIPPED;
+        public int width;
+        public int height;
+        public long processingTimeNs;
+
+        // Engines that split edge frames into bands report each band's time here, and the
+        // serial NMS + hysteresis pass after them. bandCount is 0 for everything else.
+        public int bandCount;
+        public final long[] bandTimesNs = new long[MAX_BANDS];
+        public long hysteresisTimeNs;
+
+        public long slowestBandNs() {
+            long slowest = 0;
+            for (int i = 0; i < bandCount; i++) {
+                slowest = Math.max(slowest, bandTimesNs[i]);
+            }
+            return slowest;
+        }
+    }
+
+    /** Stable name, used to persist the choice. */
+    String getName();
+
+    /** Takes effect from the next frame. */
+    void setState(boolean edgeDetection, int lowThreshold, int ratio, boolean l2Gradient);
+
+    /**
+     * Process frame (planes, strides and capture time) into output starting at outputOffset.
+     * downscale 2 halves both sides, lumaOnly means chroma must not be used.
+     *
+     * @return the format written, also in stats.format
+     */
+    int process(CameraFrame frame, int downscale, boolean lumaOnly, ByteBuffer output, int outputOffset,
+                Stats stats);
+
+    void release();
+}
@@ -0,0 +1,56 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates {@link FrameProcessor}s by name.
+ */
+public final class FrameProcessors {
+
+    public static final String NATIVE = "native";
+    public static final String FUSED = "fused";
+    public static final String JAVA = "java";
+    public static final String PASSTHROUGH = "passthrough";
+
+    private FrameProcessors() {
+    }
+
+    /** Null for an unknown name or an engine that isn't available on this device. */
+    public static FrameProcessor create(String name) {
+        if (NATIVE.equals(name)) {
+            return NativeFrameProcessor.create();
+        }
+        if (FUSED.equals(name)) {
+            return NativeFrameProcessor.create(true);
+        }
+        if (JAVA.equals(name)) {
+            return new JavaFrameProcessor();
+        }
+        if (PASSTHROUGH.equals(name)) {
+            return new PassthroughFrameProcessor();
+        }
+        return null;
+    }
+
+    /** Before (or without) calibration: native if it loads, Java otherwise. */
+    public static FrameProcessor createDefault() {
+        FrameProcessor processor = NativeFrameProcessor.create();
+        return processor != null ? processor : new JavaFrameProcessor();
+    }
+
+    /** Every edge engine that works here, for {@link EngineCalibrator}. */
+    public static List<FrameProcessor> createCandidates() {
+        List<FrameProcessor> candidates = new ArrayList<>();
+        FrameProcessor nativeProcessor = NativeFrameProcessor.create();
+        if (nativeProcessor != null) {
+            candidates.add(nativeProcessor);
+            FrameProcessor fused = NativeFrameProcessor.create(true);
+            if (fused != null) {
+                candidates.add(fused);
+            }
+        }
+        candidates.add(new JavaFrameProcessor());
+        return candidates;
+    }
+}
@@ -0,0 +1,306 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+import com.purnajear.edgedetectorapp.camera.OfflineFrameSource;
+import com.purnajear.edgedetectorapp.camera.ReplayFrameSource;
+import com.purnajear.edgedetectorapp.camera.SyntheticFrameSource;
+import com.purnajear.edgedetectorapp.metrics.FrameMetrics;
+import com.purnajear.edgedetectorapp.metrics.LatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Drives frames from a replay or synthetic source through one engine as fast as it takes
+ * them - copy into the pool, then process() - with no camera, GL or UI. The same run on
+ * every device (DebugActivity's benchmark extras) or on the JVM (HeadlessBenchmarkMain in
+ * the tests) gives a JSON report to compare builds with.
+ *
+ * Warmup frames go through the whole pipeline but aren't in the report.
+ */
+public final class HeadlessBenchmark {
+
+    public static final int DEFAULT_FRAMES = 300;
+    public static final int DEFAULT_WARMUP_FRAMES = 30;
+    private static final int SYNTHETIC_FPS = 30;
+
+    /**
+     * Allocation and native memory readings, platform specific - android.os.Debug on a
+     * device, the management beans on the JVM. -1 for anything the platform can't tell.
+     */
+    public interface MemoryProbe {
+        /** Objects allocated so far, only ever grows. */
+        long allocationCount();
+
+        /** Bytes allocated on the heap so far, only ever grows. */
+        long allocatedBytes();
+
+        /** Native memory in use right now, sampled after every frame for the peak. */
+        long nativeBytes();
+    }
+
+    /** Everything after warmup. Times are ns, memory in bytes, -1 where unknown. */
+    public static final class Report {
+        public final String engine;
+        public final String source;
+        public final int width;
+        public final int height;
+        public final int downscale;
+        public final int threads;         // 0 = engine default
+        public final int warmupFrames;
+        public final int frames;
+        public final int skippedFrames;   // process() returned OUTPUT_SKIPPED
+        public final int failedFrames;    // process() threw
+        public final long elapsedNs;
+        public final long allocationCount;
+        public final long allocatedBytes;
+        public final long nativeStartBytes;
+        public final long nativePeakBytes;
+        public final Map<FrameMetrics.Stage, LatencyHistogram.Snapshot> stages;
+
+        Report(String engine, String source, int width, int height, int downscale, int threads,
+               int warmupFrames, int frames, int skippedFrames, int failedFrames, long elapsedNs,
+               long allocationCount, long allocatedBytes, long nativeStartBytes, long nativePeakBytes,
+               Map<FrameMetrics.Stage, LatencyHistogram.Snapshot> stages) {
+            this.engine = engine;
+            this.source = source;
+            this.width = width;
+            this.height = height;
+            this.downscale = downscale;
+            this.threads = threads;
+            this.warmupFrames = warmupFrames;
+            this.frames = frames;
+            this.skippedFrames = skippedFrames;
+            this.failedFrames = failedFrames;
+            this.elapsedNs = elapsedNs;
+            this.allocationCount = allocationCount;
+            this.allocatedBytes = allocatedBytes;
+            this.nativeStartBytes = nativeStartBytes;
+            this.nativePeakBytes = nativePeakBytes;
+            this.stages = stages;
+        }
+
+        public double getFps() {
+            return elapsedNs > 0 ? frames * 1e9 / elapsedNs : 0;
+        }
+
+        public String toJson() {
+            return String.format(Locale.US,
+                    "{\"engine\":%s,\"source\":%s,\"width\":%d,\"height\":%d,\"downscale\":%d,"
+                            + "\"threads\":%d,\"warmup_frames\":%d,\"frames\":%d,\"skipped_frames\":%d,"
+                            + "\"failed_frames\":%d,\"elapsed_ms\":%.3f,\"fps\":%.2f,"
+                            + "\"allocations\":%d,\"allocations_per_frame\":%.2f,\"allocated_bytes\":%d,"
+                            + "\"native_start_bytes\":%d,\"native_peak_bytes\":%d,\"stages\":%s}",
+                    quote(engine), quote(source), width, height, downscale, threads, warmupFrames, frames,
+                    skippedFrames, failedFrames, elapsedNs / 1e6, getFps(), allocationCount,
+                    allocationCount >= 0 && frames > 0 ? (double) allocationCount / frames : -1.0,
+                    allocatedBytes, nativeStartBytes, nativePeakBytes, FrameMetrics.stagesToJson(stages));
+        }
+    }
+
+    private static String quote(String s) {
+        return '"' + s.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private final FrameProcessor processor;
+    private final OfflineFrameSource source;
+    private final String sourceName;
+    private int warmupFrames = DEFAULT_WARMUP_FRAMES;
+    private int frames = DEFAULT_FRAMES;
+    private int downscale = 1;
+    private int threads = 0;
+    private ThreadScalingProbe.ThreadControl threadControl;
+    private MemoryProbe memoryProbe;
+
+    public HeadlessBenchmark(FrameProcessor processor, OfflineFrameSource source, String sourceName) {
+        this.processor = processor;
+        this.source = source;
+        this.sourceName = sourceName;
+    }
+
+    public void setFrames(int warmupFrames, int frames) {
+        this.warmupFrames = Math.max(0, warmupFrames);
+        this.frames = Math.max(1, frames);
+    }
+
+    public void setDownscale(int downscale) {
+        this.downscale = Math.max(1, downscale);
+    }
+
+    /** Applied through control before the first frame and reset to 0 after the last. */
+    public void setThreads(int threads, ThreadScalingProbe.ThreadControl control) {
+        this.threads = threads;
+        this.threadControl = control;
+    }
+
+    public void setMemoryProbe(MemoryProbe memoryProbe) {
+        this.memoryProbe = memoryProbe;
+    }
+
+    /**
+     * Blocks until every frame went through. The engine is left in edge mode and not
+     * released; the source is stopped. IllegalStateException if the source ended early.
+     */
+    public Report run() throws InterruptedException {
+        int width = source.getWidth() / downscale;
+        int height = source.getHeight() / downscale;
+        ByteBuffer output = ByteBuffer.allocateDirect(width * height * 4);
+        FrameProcessor.Stats stats = new FrameProcessor.Stats();
+        FrameMetrics metrics = new FrameMetrics();
+        Run run = new Run(metrics, output, stats);
+        CountDownLatch done = new CountDownLatch(1);
+
+        processor.setState(true, 50, 3, false);
+        if (threadControl != null && threads > 0) {
+            threadControl.setThreads(threads);
+        }
+        try {
+            source.setRealTime(false);
+            source.setMaxFrames(warmupFrames + frames);
+            source.setMetrics(metrics);
+            source.setFrameCallback(run::onFrame);
+            source.setOnFinished(done::countDown);
+            source.start();
+            done.await();
+        } finally {
+            source.stop();
+            if (threadControl != null && threads > 0) {
+                threadControl.setThreads(0);
+            }
+        }
+        if (run.end == null) {
+            throw new IllegalStateException(sourceName + " ended after " + run.delivered + " of "
+                    + (warmupFrames + frames) + " frames");
+        }
+
+        long elapsedNs = run.endNs - run.startNs;
+        Map<FrameMetrics.Stage, LatencyHistogram.Snapshot> window = new EnumMap<>(FrameMetrics.Stage.class);
+        for (Map.Entry<FrameMetrics.Stage, LatencyHistogram.Snapshot> entry
+                : FrameMetrics.since(run.end, run.start).entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                window.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new Report(processor.getName(), sourceName, width, height, downscale, threads, warmupFrames,
+                frames, run.skipped, run.failed, elapsedNs,
+                delta(run.allocationsEnd, run.allocationsStart), delta(run.bytesEnd, run.bytesStart),
+                run.nativeStart, run.nativePeak, window);
+    }
+
+    private static long delta(long end, long start) {
+        return end >= 0 && start >= 0 ? end - start : -1;
+    }
+
+    // State of one run, only touched on the source's delivery thread until the latch opens
+    private final class Run {
+        final FrameMetrics metrics;
+        final ByteBuffer output;
+        final FrameProcessor.Stats stats;
+        int delivered;
+        int skipped;
+        int failed;
+        long startNs;
+        long endNs;
+        Map<FrameMetrics.Stage, LatencyHistogram.Snapshot> start;
+        Map<FrameMetrics.Stage, LatencyHistogram.Snapshot> end;
+        long allocationsStart = -1;
+        long allocationsEnd = -1;
+        long bytesStart = -1;
+        long bytesEnd = -1;
+        long nativeStart = -1;
+        long nativePeak = -1;
+
+        Run(FrameMetrics metrics, ByteBuffer output, FrameProcessor.Stats stats) {
+            this.metrics = metrics;
+            this.output = output;
+            this.stats = stats;
+        }
+
+        void onFrame(CameraFrame frame) {
+            boolean measuring = delivered >= warmupFrames;
+            if (delivered == warmupFrames) {
+                start = metrics.snapshot();
+                if (memoryProbe != null) {
+                    allocationsStart = memoryProbe.allocationCount();
+                    bytesStart = memoryProbe.allocatedBytes();
+                    nativeStart = memoryProbe.nativeBytes();
+                    nativePeak = nativeStart;
+                }
+                startNs = System.nanoTime();
+            }
+            CameraFrame copy = null;
+            try {
+                copy = source.copyFrame(frame, false);
+                long processStart = System.nanoTime();
+                int format = processor.process(copy, downscale, false, output, 0, stats);
+                metrics.record(FrameMetrics.Stage.PROCESS, System.nanoTime() - processStart);
+                if (measuring && format == FrameProcessor.OUTPUT_SKIPPED) {
+                    skipped++;
+                }
+            } catch (RuntimeException e) {
+                if (measuring) {
+                    failed++;
+                }
+            } finally {
+                if (copy != null) {
+                    copy.release();
+                }
+                // Counted whatever happened, or the last frame never closes the window
+                delivered++;
+                if (measuring && memoryProbe != null) {
+                    nativePeak = Math.max(nativePeak, memoryProbe.nativeBytes());
+                }
+                if (delivered == warmupFrames + frames) {
+                    endNs = System.nanoTime();
+                    end = metrics.snapshot();
+                    if (memoryProbe != null) {
+                        allocationsEnd = memoryProbe.allocationCount();
+                        bytesEnd = memoryProbe.allocatedBytes();
+                    }
+                }
+            }
+        }
+    }
+
+    /** Replay file if there is one, synthetic frames of syntheticSize ("1280x720") otherwise. */
+    public static OfflineFrameSource openSource(String replayFile, String syntheticSize) throws IOException {
+        if (replayFile != null) {
+            return ReplayFrameSource.open(new File(replayFile));
+        }
+        int[] size = parseSize(syntheticSize);
+        return new SyntheticFrameSource(size[0], size[1], SYNTHETIC_FPS);
+    }
+
+    /** "WIDTHxHEIGHT". */
+    public static int[] parseSize(String size) {
+        String[] parts = size.split("x");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Size should be WIDTHxHEIGHT: " + size);
+        }
+        return new int[] {Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+    }
+
+    /**
+     * Engine by FrameProcessors name. The Java engine gets its own pool when threads is set,
+     * native engines take threads through {@link #threadControl(String)} instead.
+     */
+    public static FrameProcessor createProcessor(String engine, int threads) {
+        if (FrameProcessors.JAVA.equals(engine) && threads > 0) {
+            return new JavaFrameProcessor(new JavaCannyEngine(threads));
+        }
+        return FrameProcessors.create(engine);
+    }
+
+    /** How threads are applied to engine, null when createProcessor() already took care of it. */
+    public static ThreadScalingProbe.ThreadControl threadControl(String engine) {
+        if (FrameProcessors.NATIVE.equals(engine) || FrameProcessors.FUSED.equals(engine)) {
+            return NativeFrameProcessor::setNumThreads;
+        }
+        return null;
+    }
+}
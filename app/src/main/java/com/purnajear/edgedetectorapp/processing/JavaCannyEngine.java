@@ -0,0 +1,464 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Canny edge detection in plain Java. Takes over when libedge-detector.so can't be loaded,
+ * and serves as a reference for the native stage that runs on any JVM.
+ *
+ * Same pipeline and integer arithmetic as the native path: optional pyrDown, 5x5 Gaussian
+ * blur (sigma 0, BORDER_REFLECT_101), 3x3 Sobel (BORDER_REPLICATE), non-maximum suppression
+ * with OpenCV's fixed-point tan(22.5) test and hysteresis, so for the same luma and parameters
+ * the edge map should match cv::Canny's. That has only been checked against hand-worked
+ * cases here; EngineBenchmark reports the pixels that differ from the native engine on a
+ * device.
+ *
+ * Every stage except hysteresis runs in horizontal bands on a ForkJoinPool. A stage only reads
+ * what the previous one wrote, so bands need no halos, just a join in between. All working
+ * arrays belong to the engine and are reused - once a frame size has been seen, a frame
+ * allocates nothing. One frame at a time; only setParameters() may be called from elsewhere.
+ */
+public final class JavaCannyEngine {
+
+    // tan(22.5 deg) in Q15, the constant OpenCV's Canny uses
+    private static final int TG22 = 13573;
+    private static final int CANNY_SHIFT = 15;
+    // Less than this many rows isn't worth a task
+    private static final int MIN_BAND_ROWS = 16;
+
+    // Per-pixel state after non-maximum suppression
+    private static final byte NOT_EDGE = 0;
+    private static final byte CANDIDATE = 1; // local maximum above the low threshold
+    private static final byte EDGE = 2;
+
+    // Stages, in order
+    private static final int PYR_ROWS = 0;
+    private static final int PYR_COLUMNS = 1;
+    private static final int BLUR_ROWS = 2;
+    private static final int BLUR_COLUMNS = 3;
+    private static final int GRADIENT = 4;
+    private static final int SUPPRESS = 5;
+    private static final int OUTPUT = 6;
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool; // shut down in release()
+    private final Band[] bands;
+    private final FrameTask frameTask = new FrameTask();
+
+    // Set from any thread, picked up at the start of the next frame
+    private volatile int lowThreshold = 50;
+    private volatile int ratio = 3;
+    private volatile boolean l2Gradient = false;
+
+    // Thresholds of the current frame, squared for L2 like OpenCV does
+    private int low;
+    private int high;
+    private boolean l2;
+
+    // Input at capture size, output size after the optional downscale
+    private int inputWidth;
+    private int inputHeight;
+    private int width;
+    private int height;
+
+    private byte[] input;      // caller's luma or lumaCopy
+    private byte[] source;     // what Canny runs on: input, or smaller
+    private byte[] output;     // caller's edge map or edgeCopy
+
+    // Owned buffers, grown with the frame size
+    private byte[] lumaCopy = new byte[0];
+    private byte[] edgeCopy = new byte[0];
+    private short[] pyrRows = new short[0];
+    private byte[] smaller = new byte[0];
+    private short[] blurRows = new short[0];
+    private byte[] blurred = new byte[0];
+    private short[] dx = new short[0];
+    private short[] dy = new short[0];
+    private int[] magnitude = new int[0];
+    private byte[] state = new byte[0];
+    private int[] stack = new int[0];
+
+    public JavaCannyEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /** Own pool of threads workers, shut down by release(). */
+    public JavaCannyEngine(int threads) {
+        this(new ForkJoinPool(threads), true);
+    }
+
+    /** One band per worker of pool. A pool of parallelism 1 runs everything on the caller. */
+    public JavaCannyEngine(ForkJoinPool pool) {
+        this(pool, false);
+    }
+
+    private JavaCannyEngine(ForkJoinPool pool, boolean ownsPool) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        bands = new Band[Math.max(1, pool.getParallelism())];
+        for (int i = 0; i < bands.length; i++) {
+            bands[i] = new Band(i);
+        }
+    }
+
+    /** Shuts down the pool if the engine created it. A pool passed in is the caller's. */
+    public void release() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    /** Same meaning as the native stage: high threshold = low * ratio. */
+    public void setParameters(int lowThreshold, int ratio, boolean l2Gradient) {
+        this.lowThreshold = lowThreshold;
+        this.ratio = ratio;
+        this.l2Gradient = l2Gradient;
+    }
+
+    /**
+     * Packed luma in, packed 0/255 edge map out. downscale 2 halves both sides with pyrDown
+     * first (anything else means 1), edges must hold (width / downscale) * (height / downscale).
+     */
+    public void detect(byte[] luma, int width, int height, int downscale, byte[] edges) {
+        if (luma.length < width * height) {
+            throw new IllegalArgumentException("luma too small for " + width + "x" + height);
+        }
+        prepare(width, height, downscale);
+        if (edges.length < this.width * this.height) {
+            throw new IllegalArgumentException("edges too small for " + this.width + "x" + this.height);
+        }
+        input = luma;
+        output = edges;
+        run();
+    }
+
+    /**
+     * Strided luma plane in (e.g. a CameraFrame's Y, read from its position), edge map
+     * written to out starting at outOffset. Positions and limits of y are left as they were.
+     */
+    public void detect(ByteBuffer y, int yRowStride, int width, int height, int downscale,
+                       ByteBuffer out, int outOffset) {
+        prepare(width, height, downscale);
+        int outSize = this.width * this.height;
+        if (out.capacity() - outOffset < outSize) {
+            throw new IllegalArgumentException("Output too small for " + this.width + "x" + this.height);
+        }
+        if (lumaCopy.length < width * height) {
+            lumaCopy = new byte[width * height];
+        }
+        if (edgeCopy.length < outSize) {
+            edgeCopy = new byte[outSize];
+        }
+
+        // Bulk row copies, the stages then work on plain arrays
+        int start = y.position();
+        for (int row = 0; row < height; row++) {
+            y.position(start + row * yRowStride);
+            y.get(lumaCopy, row * width, width);
+        }
+        y.position(start);
+
+        input = lumaCopy;
+        output = edgeCopy;
+        run();
+
+        out.position(outOffset);
+        out.put(edgeCopy, 0, outSize);
+    }
+
+    public int getOutputWidth() {
+        return width;
+    }
+
+    public int getOutputHeight() {
+        return height;
+    }
+
+    private void prepare(int width, int height, int downscale) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+        }
+        if (downscale != 2 || width < 2 || height < 2) {
+            downscale = 1;
+        }
+        inputWidth = width;
+        inputHeight = height;
+        this.width = width / downscale;
+        this.height = height / downscale;
+
+        int size = this.width * this.height;
+        if (downscale > 1 && pyrRows.length < height * this.width) {
+            pyrRows = new short[height * this.width];
+        }
+        if (downscale > 1 && smaller.length < size) {
+            smaller = new byte[size];
+        }
+        if (blurred.length < size) {
+            blurRows = new short[size];
+            blurred = new byte[size];
+            dx = new short[size];
+            dy = new short[size];
+            magnitude = new int[size];
+            state = new byte[size];
+            stack = new int[size];
+        }
+
+        low = lowThreshold;
+        high = low * ratio;
+        l2 = l2Gradient;
+        if (low > high) {
+            int t = low;
+            low = high;
+            high = t;
+        }
+        if (l2) {
+            low = Math.min(low, Short.MAX_VALUE);
+            high = Math.min(high, Short.MAX_VALUE);
+            low = low > 0 ? low * low : low;
+            high = high > 0 ? high * high : high;
+        }
+    }
+
+    private void run() {
+        source = inputWidth == width ? input : smaller;
+        int first = inputWidth == width ? BLUR_ROWS : PYR_ROWS;
+        if (bands.length == 1) {
+            for (int stage = first; stage <= SUPPRESS; stage++) {
+                runStage(stage, 0, stageRows(stage));
+            }
+            hysteresis();
+            runStage(OUTPUT, 0, height);
+        } else {
+            frameTask.first = first;
+            frameTask.reinitialize();
+            pool.invoke(frameTask);
+        }
+    }
+
+    private int stageRows(int stage) {
+        return stage == PYR_ROWS ? inputHeight : height;
+    }
+
+    private void runStage(int stage, int rowStart, int rowEnd) {
+        switch (stage) {
+            case PYR_ROWS:
+                smoothRows(input, inputWidth, pyrRows, width, 2, rowStart, rowEnd);
+                break;
+            case PYR_COLUMNS:
+                smoothColumns(pyrRows, inputHeight, width, smaller, 2, rowStart, rowEnd);
+                break;
+            case BLUR_ROWS:
+                smoothRows(source, width, blurRows, width, 1, rowStart, rowEnd);
+                break;
+            case BLUR_COLUMNS:
+                smoothColumns(blurRows, height, width, blurred, 1, rowStart, rowEnd);
+                break;
+            case GRADIENT:
+                gradient(rowStart, rowEnd);
+                break;
+            case SUPPRESS:
+                suppress(rowStart, rowEnd);
+                break;
+            default:
+                for (int i = rowStart * width; i < rowEnd * width; i++) {
+                    output[i] = state[i] == EDGE ? (byte) 255 : 0;
+                }
+                break;
+        }
+    }
+
+    // Horizontal half of the [1 4 6 4 1] kernel, every step-th column. Sums stay unscaled
+    // (at most 16 * 255) so no precision is lost before the vertical half
+    private static void smoothRows(byte[] src, int srcWidth, short[] dst, int dstWidth, int step,
+                                   int rowStart, int rowEnd) {
+        for (int r = rowStart; r < rowEnd; r++) {
+            int in = r * srcWidth;
+            int out = r * dstWidth;
+            for (int j = 0; j < dstWidth; j++) {
+                int c = j * step;
+                int sum;
+                if (c >= 2 && c + 2 < srcWidth) {
+                    sum = (src[in + c - 2] & 0xFF) + 4 * (src[in + c - 1] & 0xFF) + 6 * (src[in + c] & 0xFF)
+                            + 4 * (src[in + c + 1] & 0xFF) + (src[in + c + 2] & 0xFF);
+                } else {
+                    sum = (src[in + reflect(c - 2, srcWidth)] & 0xFF)
+                            + 4 * (src[in + reflect(c - 1, srcWidth)] & 0xFF)
+                            + 6 * (src[in + c] & 0xFF)
+                            + 4 * (src[in + reflect(c + 1, srcWidth)] & 0xFF)
+                            + (src[in + reflect(c + 2, srcWidth)] & 0xFF);
+                }
+                dst[out + j] = (short) sum;
+            }
+        }
+    }
+
+    // Vertical half, every step-th row, rounded back to 8 bits: (sum + 128) >> 8 like
+    // OpenCV's fixed-point GaussianBlur and pyrDown
+    private static void smoothColumns(short[] src, int srcHeight, int width, byte[] dst, int step,
+                                      int rowStart, int rowEnd) {
+        for (int i = rowStart; i < rowEnd; i++) {
+            int r = i * step;
+            int a = reflect(r - 2, srcHeight) * width;
+            int b = reflect(r - 1, srcHeight) * width;
+            int c = r * width;
+            int d = reflect(r + 1, srcHeight) * width;
+            int e = reflect(r + 2, srcHeight) * width;
+            int out = i * width;
+            for (int j = 0; j < width; j++) {
+                int sum = src[a + j] + 4 * src[b + j] + 6 * src[c + j] + 4 * src[d + j] + src[e + j];
+                dst[out + j] = (byte) ((sum + 128) >> 8);
+            }
+        }
+    }
+
+    // BORDER_REFLECT_101: -1 -> 1, n -> n - 2
+    private static int reflect(int i, int n) {
+        if (n == 1) {
+            return 0;
+        }
+        while (i < 0 || i >= n) {
+            i = i < 0 ? -i : 2 * n - 2 - i;
+        }
+        return i;
+    }
+
+    // 3x3 Sobel with replicated borders, plus L1 or squared L2 magnitude
+    private void gradient(int rowStart, int rowEnd) {
+        byte[] b = blurred;
+        for (int r = rowStart; r < rowEnd; r++) {
+            int up = Math.max(r - 1, 0) * width;
+            int mid = r * width;
+            int down = Math.min(r + 1, height - 1) * width;
+            for (int c = 0; c < width; c++) {
+                int left = Math.max(c - 1, 0);
+                int right = Math.min(c + 1, width - 1);
+                int gx = (b[up + right] & 0xFF) - (b[up + left] & 0xFF)
+                        + 2 * ((b[mid + right] & 0xFF) - (b[mid + left] & 0xFF))
+                        + (b[down + right] & 0xFF) - (b[down + left] & 0xFF);
+                int gy = (b[down + left] & 0xFF) + 2 * (b[down + c] & 0xFF) + (b[down + right] & 0xFF)
+                        - (b[up + left] & 0xFF) - 2 * (b[up + c] & 0xFF) - (b[up + right] & 0xFF);
+                int i = mid + c;
+                dx[i] = (short) gx;
+                dy[i] = (short) gy;
+                magnitude[i] = l2 ? gx * gx + gy * gy : Math.abs(gx) + Math.abs(gy);
+            }
+        }
+    }
+
+    // Keep local maxima along the gradient direction, quantized to 0/45/90/135 degrees.
+    // Comparisons are deliberately asymmetric (> one side, >= the other) as in OpenCV, so a
+    // two pixel wide ridge keeps exactly one pixel
+    private void suppress(int rowStart, int rowEnd) {
+        for (int r = rowStart; r < rowEnd; r++) {
+            for (int c = 0; c < width; c++) {
+                int i = r * width + c;
+                int m = magnitude[i];
+                byte s = NOT_EDGE;
+                if (m > low) {
+                    int xs = dx[i];
+                    int ys = dy[i];
+                    int x = Math.abs(xs);
+                    int y = Math.abs(ys) << CANNY_SHIFT;
+                    int tg22x = x * TG22;
+                    boolean isMax;
+                    if (y < tg22x) {
+                        isMax = m > magnitudeAt(r, c - 1) && m >= magnitudeAt(r, c + 1);
+                    } else {
+                        int tg67x = tg22x + (x << (CANNY_SHIFT + 1));
+                        if (y > tg67x) {
+                            isMax = m > magnitudeAt(r - 1, c) && m >= magnitudeAt(r + 1, c);
+                        } else {
+                            int sign = (xs ^ ys) < 0 ? -1 : 1;
+                            isMax = m > magnitudeAt(r - 1, c - sign) && m > magnitudeAt(r + 1, c + sign);
+                        }
+                    }
+                    if (isMax) {
+                        s = m > high ? EDGE : CANDIDATE;
+                    }
+                }
+                state[i] = s;
+            }
+        }
+    }
+
+    // Zero outside the image, like OpenCV's padded magnitude rows
+    private int magnitudeAt(int r, int c) {
+        if (r < 0 || r >= height || c < 0 || c >= width) {
+            return 0;
+        }
+        return magnitude[r * width + c];
+    }
+
+    // Grow edges from every strong pixel into 8-connected candidates. Sequential - a
+    // connected edge can cross any number of bands. Each pixel is pushed at most once
+    private void hysteresis() {
+        int size = width * height;
+        int top = 0;
+        for (int i = 0; i < size; i++) {
+            if (state[i] == EDGE) {
+                stack[top++] = i;
+            }
+        }
+        while (top > 0) {
+            int i = stack[--top];
+            int r = i / width;
+            int c = i - r * width;
+            for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, height - 1); nr++) {
+                for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, width - 1); nc++) {
+                    int n = nr * width + nc;
+                    if (state[n] == CANDIDATE) {
+                        state[n] = EDGE;
+                        stack[top++] = n;
+                    }
+                }
+            }
+        }
+    }
+
+    // Runs the stages on the pool, joining all bands before the next stage starts
+    @SuppressWarnings("serial") // never serialized, RecursiveAction just happens to be Serializable
+    private final class FrameTask extends RecursiveAction {
+        int first;
+
+        @Override
+        protected void compute() {
+            for (int stage = first; stage <= SUPPRESS; stage++) {
+                invokeStage(stage);
+            }
+            hysteresis();
+            invokeStage(OUTPUT);
+        }
+
+        private void invokeStage(int stage) {
+            for (Band band : bands) {
+                band.reinitialize();
+                band.stage = stage;
+            }
+            ForkJoinTask.invokeAll(bands);
+        }
+    }
+
+    // Rows index/n .. (index+1)/n of the current stage. Tasks are reused across stages and frames
+    @SuppressWarnings("serial")
+    private final class Band extends RecursiveAction {
+        final int index;
+        int stage;
+
+        Band(int index) {
+            this.index = index;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = stageRows(stage);
+            int count = Math.min(bands.length, Math.max(1, rows / MIN_BAND_ROWS));
+            if (index >= count) {
+                return;
+            }
+            runStage(stage, rows * index / count, rows * (index + 1) / count);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Edges from {@link JavaCannyEngine}. Without edge detection the frame passes through as
+ * grey - colour is the GPU YUV path's job, there's no point doing it slowly here.
+ */
+public final class JavaFrameProcessor implements FrameProcessor {
+
+    private final JavaCannyEngine engine;
+    private final PassthroughFrameProcessor passthrough = new PassthroughFrameProcessor();
+    private volatile boolean edgeDetection = false;
+
+    public JavaFrameProcessor() {
+        this(new JavaCannyEngine());
+    }
+
+    public JavaFrameProcessor(JavaCannyEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public String getName() {
+        return FrameProcessors.JAVA;
+    }
+
+    @Override
+    public void setState(boolean edgeDetection, int lowThreshold, int ratio, boolean l2Gradient) {
+        engine.setParameters(lowThreshold, ratio, l2Gradient);
+        this.edgeDetection = edgeDetection;
+    }
+
+    @Override
+    public int process(CameraFrame frame, int downscale, boolean lumaOnly, ByteBuffer output, int outputOffset,
+                       Stats stats) {
+        if (!edgeDetection) {
+            return passthrough.process(frame, downscale, lumaOnly, output, outputOffset, stats);
+        }
+
+        int step = downscale == 2 ? 2 : 1;
+        if (output.capacity() - outputOffset < (frame.getWidth() / step) * (frame.getHeight() / step)) {
+            // Sized for the other mode, the next frame will fit
+            stats.format = OUTPUT_SKIPPED;
+            return OUTPUT_SKIPPED;
+        }
+        long start = System.nanoTime();
+        engine.detect(frame.getYPlane(), frame.getYRowStride(), frame.getWidth(), frame.getHeight(),
+                downscale, output, outputOffset);
+        stats.format = OUTPUT_EDGES;
+        stats.bandCount = 0;
+        stats.width = engine.getOutputWidth();
+        stats.height = engine.getOutputHeight();
+        stats.processingTimeNs = System.nanoTime() - start;
+        return OUTPUT_EDGES;
+    }
+
+    @Override
+    public void release() {
+        engine.release();
+    }
+}
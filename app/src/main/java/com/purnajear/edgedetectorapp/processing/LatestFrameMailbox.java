@@ -0,0 +1,71 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single slot, "latest wins". A new frame replaces one that wasn't picked up yet, the
+ * stale one is released and counted. Lock-free on both sides - the consumer parks when
+ * the slot is empty and the producer unparks it.
+ */
+public class LatestFrameMailbox implements FrameMailbox {
+    private final AtomicReference<CameraFrame> slot = new AtomicReference<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Thread waiter;
+
+    @Override
+    public boolean offer(CameraFrame frame) {
+        CameraFrame stale = slot.getAndSet(frame);
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+        if (stale != null) {
+            stale.release();
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public CameraFrame take() throws InterruptedException {
+        CameraFrame frame = slot.getAndSet(null);
+        if (frame != null) {
+            return frame;
+        }
+
+        waiter = Thread.currentThread();
+        try {
+            while (true) {
+                // Re-check after publishing ourselves so a concurrent offer can't be missed
+                frame = slot.getAndSet(null);
+                if (frame != null) {
+                    return frame;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    @Override
+    public void clear() {
+        CameraFrame frame = slot.getAndSet(null);
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,142 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import android.util.Log;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * OpenCV in libedge-detector.so. Owns one native EdgeProcessor (see edge_detector.cpp).
+ * A fused processor finds edges with the single-pass FusedCanny kernel (fused_canny.cpp)
+ * instead of the OpenCV calls - same edge map, one trip through memory.
+ */
+public final class NativeFrameProcessor implements FrameProcessor {
+    private static final String TAG = "NativeFrameProcessor";
+
+    // Handle is a native processor from nativeCreate()
+    private native long nativeCreate(boolean fused);
+    private native void nativeDestroy(long handle);
+    private native void nativeSetState(long handle, int version, boolean edgeDetection,
+                                       int threshold, int ratio, boolean l2Gradient);
+    private native int nativeProcess(long handle, ByteBuffer yPlane, int yRowStride,
+                                     ByteBuffer uPlane, ByteBuffer vPlane, int uvRowStride, int uvPixelStride,
+                                     int width, int height, int downscale, boolean lumaOnly,
+                                     ByteBuffer output, int outputOffset);
+    private native int nativeGetTimings(long handle, long[] bandTimes, long[] hysteresis);
+    private static native void nativeSetNumThreads(int threads);
+    private static native int nativeGetNumThreads();
+
+    // Processing and state pushes hold the read lock, release() takes the write lock so the
+    // handle can't be freed mid-frame - and a push doesn't wait for a frame.
+    private final ReentrantReadWriteLock handleLock = new ReentrantReadWriteLock();
+    private final boolean fused;
+    private long handle;
+    private int stateVersion = 0;
+    private final long[] hysteresisTime = new long[1]; // processing thread only
+
+    private NativeFrameProcessor(boolean fused) {
+        this.fused = fused;
+    }
+
+    /** Null if the native library isn't loaded or the processor couldn't be created. */
+    public static NativeFrameProcessor create() {
+        return create(false);
+    }
+
+    /** As {@link #create()}, fused picks the single-pass edge kernel. */
+    public static NativeFrameProcessor create(boolean fused) {
+        NativeFrameProcessor processor = new NativeFrameProcessor(fused);
+        try {
+            processor.handle = processor.nativeCreate(fused);
+        } catch (UnsatisfiedLinkError e) {
+            Log.e(TAG, "Native library not loaded", e);
+            return null;
+        }
+        if (processor.handle == 0) {
+            Log.e(TAG, "Failed to create native processor");
+            return null;
+        }
+        return processor;
+    }
+
+    /**
+     * Threads OpenCV uses for parallel_for_ - edge frames are split into one band per thread.
+     * Library-wide, so it affects every native processor. 0 restores OpenCV's default.
+     */
+    public static void setNumThreads(int threads) {
+        nativeSetNumThreads(threads);
+    }
+
+    public static int getNumThreads() {
+        return nativeGetNumThreads();
+    }
+
+    @Override
+    public String getName() {
+        return fused ? FrameProcessors.FUSED : FrameProcessors.NATIVE;
+    }
+
+    // Hand native a complete, versioned copy of the processing state. Native picks it up at
+    // the start of the next frame, so per frame it never has to call back into Java.
+    @Override
+    public synchronized void setState(boolean edgeDetection, int lowThreshold, int ratio, boolean l2Gradient) {
+        stateVersion++;
+        handleLock.readLock().lock();
+        try {
+            if (handle != 0) {
+                nativeSetState(handle, stateVersion, edgeDetection, lowThreshold, ratio, l2Gradient);
+            }
+        } finally {
+            handleLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int process(CameraFrame frame, int downscale, boolean lumaOnly, ByteBuffer output, int outputOffset,
+                       Stats stats) {
+        long start = System.nanoTime();
+        int result;
+        handleLock.readLock().lock();
+        try {
+            if (handle == 0) {
+                result = OUTPUT_SKIPPED;
+            } else {
+                result = nativeProcess(handle, frame.getYPlane(), frame.getYRowStride(),
+                        frame.getUPlane(), frame.getVPlane(), frame.getUvRowStride(), frame.getUvPixelStride(),
+                        frame.getWidth(), frame.getHeight(), downscale, lumaOnly, output, outputOffset);
+                if (result == OUTPUT_EDGES) {
+                    stats.bandCount = nativeGetTimings(handle, stats.bandTimesNs, hysteresisTime);
+                    stats.hysteresisTimeNs = hysteresisTime[0];
+                } else {
+                    stats.bandCount = 0;
+                }
+            }
+        } finally {
+            handleLock.readLock().unlock();
+        }
+
+        // Native only downscales by 2, anything else is full size
+        int step = downscale == 2 ? 2 : 1;
+        stats.format = result;
+        stats.width = frame.getWidth() / step;
+        stats.height = frame.getHeight() / step;
+        stats.processingTimeNs = System.nanoTime() - start;
+        return result;
+    }
+
+    /** Frees the native processor. Frames arriving afterwards are skipped. */
+    @Override
+    public void release() {
+        handleLock.writeLock().lock();
+        try {
+            if (handle != 0) {
+                nativeDestroy(handle);
+                handle = 0;
+            }
+        } finally {
+            handleLock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * No processing at all: the luma plane as grey RGBA, whatever the state says. Baseline for
+ * measuring the rest of the pipeline, and the last resort when no edge engine works.
+ */
+public final class PassthroughFrameProcessor implements FrameProcessor {
+
+    private byte[] row = new byte[0];
+
+    @Override
+    public String getName() {
+        return FrameProcessors.PASSTHROUGH;
+    }
+
+    @Override
+    public void setState(boolean edgeDetection, int lowThreshold, int ratio, boolean l2Gradient) {
+    }
+
+    @Override
+    public int process(CameraFrame frame, int downscale, boolean lumaOnly, ByteBuffer output, int outputOffset,
+                       Stats stats) {
+        long start = System.nanoTime();
+        int step = downscale == 2 ? 2 : 1;
+        int width = frame.getWidth() / step;
+        int height = frame.getHeight() / step;
+        if (output.capacity() - outputOffset < width * height * 4) {
+            stats.format = OUTPUT_SKIPPED;
+            return OUTPUT_SKIPPED;
+        }
+        if (row.length < width * 4) {
+            row = new byte[width * 4];
+        }
+
+        ByteBuffer y = frame.getYPlane();
+        int start0 = y.position();
+        int rowStride = frame.getYRowStride();
+        output.position(outputOffset);
+        for (int r = 0; r < height; r++) {
+            int rowStart = start0 + r * step * rowStride;
+            // Every step-th pixel - nearest neighbour is enough for a baseline
+            for (int c = 0; c < width; c++) {
+                byte value = y.get(rowStart + c * step);
+                int i = c * 4;
+                row[i] = value;
+                row[i + 1] = value;
+                row[i + 2] = value;
+                row[i + 3] = (byte) 0xFF;
+            }
+            output.put(row, 0, width * 4);
+        }
+
+        stats.format = OUTPUT_RGBA;
+        stats.bandCount = 0;
+        stats.width = width;
+        stats.height = height;
+        stats.processingTimeNs = System.nanoTime() - start;
+        return OUTPUT_RGBA;
+    }
+
+    @Override
+    public void release() {
+    }
+}
@@ -0,0 +1,107 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs frame processing on its own thread, fed through a {@link FrameMailbox}.
+ *
+ * The camera thread only calls submit() with a detached (pooled) frame and returns
+ * immediately. The stage releases every frame after the handler is done with it.
+ */
+public class ProcessingStage {
+
+    public interface FrameHandler {
+        void onFrame(CameraFrame frame);
+    }
+
+    private final String name;
+    private final FrameMailbox mailbox;
+    private final FrameHandler handler;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile Throwable lastError;
+    private volatile Thread thread;
+
+    public ProcessingStage(String name, FrameMailbox mailbox, FrameHandler handler) {
+        this.name = name;
+        this.mailbox = mailbox;
+        this.handler = handler;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::runLoop, name);
+        thread.start();
+    }
+
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            thread = null;
+        }
+        if (t == null) {
+            return;
+        }
+        t.interrupt();
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mailbox.clear();
+    }
+
+    /**
+     * Never blocks. Ownership of the frame passes to the stage. Checked and offered under
+     * the stage lock, so a frame can't slip into the mailbox after stop() cleared it.
+     */
+    public synchronized boolean submit(CameraFrame frame) {
+        if (thread == null) {
+            frame.release();
+            return false;
+        }
+        return mailbox.offer(frame);
+    }
+
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    public long getDroppedCount() {
+        return mailbox.getDroppedCount();
+    }
+
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    private void runLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            CameraFrame frame;
+            try {
+                frame = mailbox.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                handler.onFrame(frame);
+                processed.incrementAndGet();
+            } catch (RuntimeException e) {
+                // Keep the thread alive, one bad frame shouldn't stop the pipeline
+                errors.incrementAndGet();
+                lastError = e;
+            } finally {
+                frame.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.purnajear.edgedetectorapp.processing;
+
+/**
+ * Closed loop that trades quality for latency.
+ *
+ * Fed with end-to-end latency (capture to draw) of every presented frame. When the
+ * smoothed latency stays above target the pipeline steps down one tier, when it stays
+ * well below target it steps back up. Degrading reacts fast, recovering is slow, and
+ * there is a cooldown after each change so the tiers don't flap.
+ */
+public class QualityGovernor {
+
+    public enum Tier {
+        FULL,        // full resolution, every frame
+        PYRAMID,     // process at half resolution
+        FRAME_SKIP,  // half resolution, every other frame, lower sensor FPS
+        LUMA_ONLY;   // as above and skip chroma entirely
+
+        /** Processing downscale factor for this tier. */
+        public int downscale() {
+            return this == FULL ? 1 : 2;
+        }
+
+        /** Process one out of this many frames. */
+        public int frameInterval() {
+            return ordinal() >= FRAME_SKIP.ordinal() ? 2 : 1;
+        }
+
+        public boolean lumaOnly() {
+            return this == LUMA_ONLY;
+        }
+    }
+
+    public interface Listener {
+        void onTierChanged(Tier tier);
+    }
+
+    private static final double SMOOTHING = 0.1;
+    private static final double RECOVER_RATIO = 0.5;
+    private static final int DEGRADE_FRAMES = 10;
+    private static final int RECOVER_FRAMES = 90;
+    private static final long COOLDOWN_NS = 1_000_000_000L;
+
+    private final long targetLatencyNs;
+    private Listener listener;
+
+    private volatile Tier tier = Tier.FULL;
+    private double smoothedLatencyNs = -1;
+    private int overCount = 0;
+    private int underCount = 0;
+    private long lastChangeNs = Long.MIN_VALUE / 2;
+    private boolean enabled = true;
+
+    public QualityGovernor(long targetLatencyNs) {
+        this.targetLatencyNs = targetLatencyNs;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            changeTier(Tier.FULL, Long.MIN_VALUE / 2);
+        }
+    }
+
+    public Tier getTier() {
+        return tier;
+    }
+
+    public synchronized double getSmoothedLatencyNs() {
+        return smoothedLatencyNs;
+    }
+
+    /** @param nowNs current System.nanoTime(), passed in so tests can drive the clock */
+    public synchronized void reportLatency(long latencyNs, long nowNs) {
+        if (latencyNs <= 0) {
+            return;
+        }
+        if (smoothedLatencyNs < 0) {
+            smoothedLatencyNs = latencyNs;
+        } else {
+            smoothedLatencyNs += SMOOTHING * (latencyNs - smoothedLatencyNs);
+        }
+        if (!enabled) {
+            return;
+        }
+
+        if (smoothedLatencyNs > targetLatencyNs) {
+            overCount++;
+            underCount = 0;
+        } else if (smoothedLatencyNs < targetLatencyNs * RECOVER_RATIO) {
+            underCount++;
+            overCount = 0;
+        } else {
+            // Inside the dead band - hold the current tier
+            overCount = 0;
+            underCount = 0;
+        }
+
+        if (nowNs - lastChangeNs < COOLDOWN_NS) {
+            return;
+        }
+        Tier[] tiers = Tier.values();
+        if (overCount >= DEGRADE_FRAMES && tier.ordinal() < tiers.length - 1) {
+            changeTier(tiers[tier.ordinal() + 1], nowNs);
+        } else if (underCount >= RECOVER_FRAMES && tier.ordinal() > 0) {
+            changeTier(tiers[tier.ordinal() - 1], nowNs);
+        }
+    }
+
+    private void changeTier(Tier newTier, long nowNs) {
+        overCount = 0;
+        underCount = 0;
+        if (newTier == tier) {
+            return;
+        }
+        tier = newTier;
+        lastChangeNs = nowNs;
+        // Old latency belongs to the old tier
+        smoothedLatencyNs = -1;
+        if (listener != null) {
+            listener.onTierChanged(newTier);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times an edge engine across frame sizes and thread counts, to see how banded processing
+ * scales (by default 1 to 8 threads at 1080p and 4K). Uses {@link EngineCalibrator}'s scene
+ * stretched to each size. Slow - run it off the UI thread.
+ */
+public final class ThreadScalingProbe {
+
+    public static final int[][] DEFAULT_SIZES = {{1920, 1080}, {3840, 2160}};
+    public static final int[] DEFAULT_THREADS = {1, 2, 4, 8};
+
+    /** Applies a thread count to the engine under test, e.g. NativeFrameProcessor::setNumThreads. */
+    public interface ThreadControl {
+        void setThreads(int threads);
+    }
+
+    /** One size / thread count combination, times are medians in ms. */
+    public static final class Result {
+        public final int width;
+        public final int height;
+        public final int threads;
+        public final double frameMs;
+        public final int bandCount;
+        public final double slowestBandMs;
+        public final double hysteresisMs;
+
+        Result(int width, int height, int threads, double frameMs, int bandCount,
+               double slowestBandMs, double hysteresisMs) {
+            this.width = width;
+            this.height = height;
+            this.threads = threads;
+            this.frameMs = frameMs;
+            this.bandCount = bandCount;
+            this.slowestBandMs = slowestBandMs;
+            this.hysteresisMs = hysteresisMs;
+        }
+    }
+
+    private final int warmupFrames;
+    private final int measureFrames;
+
+    public ThreadScalingProbe(int warmupFrames, int measureFrames) {
+        this.warmupFrames = warmupFrames;
+        this.measureFrames = Math.max(1, measureFrames);
+    }
+
+    /**
+     * Run every size at every thread count. Leaves the last thread count applied - callers
+     * reset it (0 for native) when they're done.
+     */
+    public List<Result> run(FrameProcessor processor, ThreadControl control, int[][] sizes, int[] threadCounts) {
+        List<Result> results = new ArrayList<>();
+        FrameProcessor.Stats stats = new FrameProcessor.Stats();
+        processor.setState(true, 50, 3, false);
+        for (int[] size : sizes) {
+            CameraFrame scene = EngineCalibrator.createScene(size[0], size[1]);
+            ByteBuffer output = ByteBuffer.allocateDirect(size[0] * size[1]);
+            for (int threads : threadCounts) {
+                control.setThreads(threads);
+                long[] frameNs = new long[measureFrames];
+                long[] bandNs = new long[measureFrames];
+                long[] hysteresisNs = new long[measureFrames];
+                for (int i = 0; i < warmupFrames + measureFrames; i++) {
+                    long start = System.nanoTime();
+                    if (processor.process(scene, 1, true, output, 0, stats) != FrameProcessor.OUTPUT_EDGES) {
+                        throw new IllegalStateException(processor.getName() + " didn't produce edges");
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    if (i >= warmupFrames) {
+                        frameNs[i - warmupFrames] = elapsed;
+                        bandNs[i - warmupFrames] = stats.slowestBandNs();
+                        hysteresisNs[i - warmupFrames] = stats.hysteresisTimeNs;
+                    }
+                }
+                results.add(new Result(size[0], size[1], threads, medianMs(frameNs), stats.bandCount,
+                        medianMs(bandNs), medianMs(hysteresisNs)));
+            }
+        }
+        return results;
+    }
+
+    /** One line per result, with the speedup over the first thread count at that size. */
+    public static String format(List<Result> results) {
+        StringBuilder sb = new StringBuilder();
+        Result base = null;
+        for (Result r : results) {
+            if (base == null || base.width != r.width || base.height != r.height) {
+                base = r;
+            }
+            sb.append(String.format(Locale.US,
+                    "%dx%d threads=%d: %.2f ms/frame (x%.2f), %d bands, slowest band %.2f ms, hysteresis %.2f ms%n",
+                    r.width, r.height, r.threads, r.frameMs, base.frameMs / r.frameMs, r.bandCount,
+                    r.slowestBandMs, r.hysteresisMs));
+        }
+        return sb.toString();
+    }
+
+    private static double medianMs(long[] ns) {
+        long[] sorted = ns.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,69 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free triple buffer for one writer thread and one reader thread.
+ *
+ * The writer fills its own slot and publish()es it, the reader takes the newest published
+ * slot with consume(). Each side always owns exactly one slot, the third one sits in the
+ * middle waiting to be picked up. Neither side ever blocks, the reader always gets the most
+ * recent complete slot, and the three slots are the only objects ever allocated.
+ */
+public class TripleBuffer<T> {
+
+    // state = index of the middle slot, plus DIRTY when it holds a frame the reader hasn't seen
+    private static final int INDEX_MASK = 0x3;
+    private static final int DIRTY = 0x4;
+
+    private final Object[] slots = new Object[3];
+    private final AtomicInteger state = new AtomicInteger(1);
+    private int writeIndex = 0; // writer thread only
+    private int readIndex = 2;  // reader thread only
+
+    public TripleBuffer(Supplier<T> factory) {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = factory.get();
+        }
+    }
+
+    /** Writer: the slot to fill next. Stays the same until publish(). */
+    @SuppressWarnings("unchecked")
+    public T getWriteSlot() {
+        return (T) slots[writeIndex];
+    }
+
+    /**
+     * Writer: hand the filled slot to the reader and take the middle one back.
+     *
+     * @return true if the previously published slot was overwritten without being read
+     */
+    public boolean publish() {
+        int old = state.getAndSet(writeIndex | DIRTY);
+        writeIndex = old & INDEX_MASK;
+        return (old & DIRTY) != 0;
+    }
+
+    /** Reader: take the newest published slot, or null if nothing new arrived since last time. */
+    @SuppressWarnings("unchecked")
+    public T consume() {
+        if ((state.get() & DIRTY) == 0) {
+            return null;
+        }
+        int old = state.getAndSet(readIndex);
+        readIndex = old & INDEX_MASK;
+        return (T) slots[readIndex];
+    }
+
+    /** Reader: the slot last returned by consume() (initially a never-written one). */
+    @SuppressWarnings("unchecked")
+    public T getReadSlot() {
+        return (T) slots[readIndex];
+    }
+
+    /** Either side: whether a published slot is waiting for the reader. */
+    public boolean hasNew() {
+        return (state.get() & DIRTY) != 0;
+    }
+}
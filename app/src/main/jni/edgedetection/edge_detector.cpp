@@ -2,106 +2,244 @@
 #include <string>
 #include <cstring>
 #include <cstdint>
+#include <atomic>
+#include <mutex>
+#include <algorithm>
 #include <opencv2/opencv.hpp>
-#include <android/log.h>
 #include <android/bitmap.h>
+#include "fused_canny.h"
 
 #define TAG "EdgeDetector"
-#define LOGI(...) ((void)__android_log_print(ANDROID_LOG_INFO, TAG, __VA_ARGS__))
-#define LOGE(...) ((void)__android_log_print(ANDROID_LOG_ERROR, TAG, __VA_ARGS__))
-
-// OpenCV variables
-static cv::Mat imgYUV;
-static cv::Mat imgRGBA;
-static cv::Mat imgGray;
-static cv::Mat imgEdges;
-
-// Parameters for Canny edge detection
-static int lowThreshold = 50;
-static int ratio = 3;
-static int kernel_size = 3;
-
-// Convert YUV to RGBA - FIXED for Android Camera2 YUV_420_888 format
-static void yuv2rgba(const cv::Mat& yuv, cv::Mat& rgba) {
-    LOGI("Converting YUV to RGBA, input size: %dx%d", yuv.cols, yuv.rows);
-    
-    // Try different YUV conversion modes for Android Camera2
-    try {
-        // Method 1: Try NV21 (most common for Android)
-        cv::cvtColor(yuv, rgba, cv::COLOR_YUV2RGBA_NV21);
-        LOGI("YUV conversion successful using NV21");
-    } catch (cv::Exception& e) {
-        LOGI("NV21 conversion failed, trying I420: %s", e.what());
-        try {
-            // Method 2: Try I420 
-            cv::cvtColor(yuv, rgba, cv::COLOR_YUV2RGBA_I420);
-            LOGI("YUV conversion successful using I420");
-        } catch (cv::Exception& e2) {
-            LOGE("All YUV conversion methods failed: %s", e2.what());
-            // Fallback: just create a test pattern
-            rgba = cv::Mat::zeros(yuv.rows * 2 / 3, yuv.cols, CV_8UC4);
-            rgba.setTo(cv::Scalar(128, 128, 128, 255)); // Gray fallback
+#include "logging.h"
+
+// What nativeProcess wrote into the output buffer, must match FrameProcessor.OUTPUT_*
+enum OutputFormat {
+    OUTPUT_FAILED = -1,
+    OUTPUT_RGBA = 0,    // 4 bytes per pixel
+    OUTPUT_EDGES = 1    // 1 byte per pixel, 0 or 255 - coloured in the shader
+};
+
+// Banded edge detection: each band blurs and differentiates its own rows plus a halo, so
+// bands never wait on each other. Must match FrameProcessor.Stats.MAX_BANDS
+static const int MAX_BANDS = 16;
+static const int MIN_BAND_ROWS = 16;
+static const int BLUR_HALO = 2;     // 5x5 Gaussian
+
+// Java classes resolved once in JNI_OnLoad, never looked up on the frame path
+static jclass gRuntimeExceptionClass = nullptr;
+
+// Everything that decides how a frame is processed. Pushed from Java as a whole
+// (nativeSetState) so a frame never sees half of an update.
+struct ProcessingState {
+    bool edgeDetection = false;
+    int lowThreshold = 50;
+    int ratio = 3;
+    bool l2Gradient = false;
+};
+
+// One processor per NativeFrameProcessor (handle from nativeCreate). Owns all working Mats
+// and parameters, so several processors can run side by side without sharing state. Mats
+// are sized on the first frame and only reallocated when the frame size changes.
+struct EdgeProcessor {
+    cv::Mat yuv;        // planar path, packed I420
+    cv::Mat gray;       // converted input for non-luma callers
+    cv::Mat ySmall;     // pyramid level 1 of luma
+    cv::Mat uvSmall;    // pyramid level 1 of interleaved chroma
+    cv::Mat rgbaFull;   // planar path, before downscale
+    cv::Mat dx, dy;     // Sobel derivatives, stitched together from the bands
+
+    // Per band scratch: blurred rows and derivatives including the halo
+    cv::Mat bandBlurred[MAX_BANDS];
+    cv::Mat bandDx[MAX_BANDS];
+    cv::Mat bandDy[MAX_BANDS];
+
+    // Timings of the last edge frame, read back by nativeGetTimings
+    int bandCount = 0;
+    int64_t bandTimesNs[MAX_BANDS] = {};
+    int64_t hysteresisTimeNs = 0;
+
+    // Single-pass kernel instead of the OpenCV calls, picked at creation
+    bool fused = false;
+    FusedCanny fusedCanny;
+
+    int kernelSize = 3;
+
+    // Active state, only touched by the processing thread
+    ProcessingState state;
+    jint stateVersion = 0;
+
+    // Latest pushed state, picked up at the start of the next frame
+    std::mutex pendingMutex;
+    ProcessingState pending;
+    std::atomic<jint> pendingVersion{0};
+};
+
+static EdgeProcessor* fromHandle(jlong handle) {
+    return reinterpret_cast<EdgeProcessor*>(handle);
+}
+
+// Wrap camera planes as Mats and convert to RGBA without an intermediate NV21 copy.
+// Same trick as JavaCamera2View.JavaCamera2Frame.rgba(): when chroma pixel stride is 2
+// the U and V planes are one interleaved buffer, only the start address differs.
+// y is the luma at output resolution; downscale == 2 means the chroma gets pyrDown'd too.
+static bool planesToRgba(EdgeProcessor& p, const cv::Mat& yFull, const cv::Mat& y, uint8_t* uPtr, uint8_t* vPtr,
+                         int uvRowStride, int uvPixelStride, int width, int height,
+                         int downscale, cv::Mat& rgba) {
+    if (uvPixelStride == 2) {
+        ptrdiff_t addrDiff = vPtr - uPtr;
+        if (addrDiff == -1 || addrDiff == 1) {
+            // V first -> NV21, U first -> NV12
+            bool nv21 = addrDiff == -1;
+            cv::Mat chroma(height / 2, width / 2, CV_8UC2, nv21 ? vPtr : uPtr, uvRowStride);
+            int code = nv21 ? cv::COLOR_YUV2RGBA_NV21 : cv::COLOR_YUV2RGBA_NV12;
+            if (downscale > 1) {
+                cv::pyrDown(chroma, p.uvSmall, cv::Size(width / 4, height / 4));
+                cv::cvtColorTwoPlane(y, p.uvSmall, rgba, code);
+            } else {
+                cv::cvtColorTwoPlane(y, chroma, rgba, code);
+            }
+            return true;
         }
+        LOGE_RATE(1, 3, "Unexpected chroma layout, U/V address diff: %d", (int)addrDiff);
+        return false;
+    }
+
+    if (uvPixelStride != 1) {
+        LOGE_RATE(1, 3, "Unsupported chroma pixel stride: %d", uvPixelStride);
+        return false;
+    }
+
+    // Fully planar - pack into an I420 Mat (reused between frames) and convert
+    if (p.yuv.empty() || p.yuv.rows != height + height/2 || p.yuv.cols != width) {
+        p.yuv.create(height + height/2, width, CV_8UC1);
+        LOGD("Created YUV Mat: %dx%d", p.yuv.cols, p.yuv.rows);
+    }
+    yFull.copyTo(p.yuv.rowRange(0, height));
+
+    uint8_t* chromaDst = p.yuv.ptr(height);
+    cv::Mat uDst(height / 2, width / 2, CV_8UC1, chromaDst);
+    cv::Mat vDst(height / 2, width / 2, CV_8UC1, chromaDst + (width / 2) * (height / 2));
+    cv::Mat(height / 2, width / 2, CV_8UC1, uPtr, uvRowStride).copyTo(uDst);
+    cv::Mat(height / 2, width / 2, CV_8UC1, vPtr, uvRowStride).copyTo(vDst);
+
+    if (downscale > 1) {
+        cv::cvtColor(p.yuv, p.rgbaFull, cv::COLOR_YUV2RGBA_I420);
+        cv::pyrDown(p.rgbaFull, rgba, cv::Size(width / 2, height / 2));
+    } else {
+        cv::cvtColor(p.yuv, rgba, cv::COLOR_YUV2RGBA_I420);
     }
+    return true;
 }
 
-// SIMPLE and GUARANTEED edge detection that WILL work
-static void applyCannyEdge(const cv::Mat& src, cv::Mat& dst) {
-    LOGI("=== SIMPLE EDGE DETECTION START ===");
-    LOGI("Input image: %dx%d, channels: %d", src.cols, src.rows, src.channels());
-    
-    // Create output with same size as input
-    dst.create(src.rows, src.cols, CV_8UC4);
-    
-    // Convert to grayscale
-    cv::Mat gray;
+// Adopt the latest pushed state if there is one. Costs one atomic load otherwise.
+static void syncState(EdgeProcessor& p) {
+    if (p.pendingVersion.load(std::memory_order_acquire) == p.stateVersion) {
+        return;
+    }
+    std::lock_guard<std::mutex> lock(p.pendingMutex);
+    p.state = p.pending;
+    p.stateVersion = p.pendingVersion.load(std::memory_order_relaxed);
+    LOGD("Processing state v%d: edge=%d, threshold=%d, ratio=%d, L2=%d", p.stateVersion,
+         p.state.edgeDetection, p.state.lowThreshold, p.state.ratio, p.state.l2Gradient);
+}
+
+static void throwRuntimeException(JNIEnv* env, const char* message) {
+    if (gRuntimeExceptionClass != nullptr) {
+        env->ThrowNew(gRuntimeExceptionClass, message);
+    }
+}
+
+static int64_t ticksToNs(int64 ticks) {
+    return (int64_t)(ticks * 1e9 / cv::getTickFrequency());
+}
+
+// Blur + Sobel for rows [r0, r1) of gray, written into the shared dx/dy. The band reads
+// BLUR_HALO + Sobel radius rows beyond its edges and recomputes them itself, so neighbours
+// overlap a little but never synchronise. Results match the whole-frame filters exactly:
+// halo rows that saw an artificial border are dropped, and at the real image edges the
+// isolated border is the same border the whole-frame call would use.
+static void blurAndDifferentiate(EdgeProcessor& p, const cv::Mat& gray, int band, int r0, int r1) {
+    int sobelHalo = p.kernelSize / 2;
+    int rows = gray.rows;
+    // Blurred rows the Sobel needs, and the source rows that blur needs
+    int b0 = std::max(r0 - sobelHalo, 0);
+    int b1 = std::min(r1 + sobelHalo, rows);
+    int s0 = std::max(b0 - BLUR_HALO, 0);
+    int s1 = std::min(b1 + BLUR_HALO, rows);
+
+    cv::Mat& blurred = p.bandBlurred[band];
+    cv::GaussianBlur(gray.rowRange(s0, s1), blurred, cv::Size(5, 5), 0, 0,
+                     cv::BORDER_REFLECT_101 | cv::BORDER_ISOLATED);
+
+    // Canny's own Sobel uses replicated borders
+    cv::Mat blurredRows = blurred.rowRange(b0 - s0, b1 - s0);
+    cv::Sobel(blurredRows, p.bandDx[band], CV_16S, 1, 0, p.kernelSize, 1, 0,
+              cv::BORDER_REPLICATE | cv::BORDER_ISOLATED);
+    cv::Sobel(blurredRows, p.bandDy[band], CV_16S, 0, 1, p.kernelSize, 1, 0,
+              cv::BORDER_REPLICATE | cv::BORDER_ISOLATED);
+
+    // Stitch: only the band's own rows go into the shared derivatives
+    p.bandDx[band].rowRange(r0 - b0, r1 - b0).copyTo(p.dx.rowRange(r0, r1));
+    p.bandDy[band].rowRange(r0 - b0, r1 - b0).copyTo(p.dy.rowRange(r0, r1));
+}
+
+// Canny edge detection: blur, then Canny with the current parameters. edges is a binary
+// 1-channel map (0/255). It may wrap caller memory (e.g. the JNI output buffer) - if it
+// already has the right size and type it is written in place.
+//
+// Blur and gradients run in horizontal bands across cv::parallel_for_ (one per OpenCV
+// thread, see nativeSetNumThreads). Non-maximum suppression and hysteresis then run on
+// the stitched gradients in one cv::Canny call - hysteresis follows edges across the
+// whole frame, banding it would break edges at the seams.
+static void detectEdges(EdgeProcessor& p, const cv::Mat& src, cv::Mat& edges) {
+    const cv::Mat* gray = &src;
     if (src.channels() == 4) {
-        cv::cvtColor(src, gray, cv::COLOR_RGBA2GRAY);
+        cv::cvtColor(src, p.gray, cv::COLOR_RGBA2GRAY);
+        gray = &p.gray;
     } else if (src.channels() == 3) {
-        cv::cvtColor(src, gray, cv::COLOR_RGB2GRAY);
-    } else {
-        gray = src.clone();
-    }
-    
-    LOGI("Converted to grayscale: %dx%d", gray.cols, gray.rows);
-    
-    // Simple edge detection using Laplacian (most reliable)
-    cv::Mat edges;
-    cv::Laplacian(gray, edges, CV_8U, 3);
-    
-    // Count edge pixels
-    int edgeCount = cv::countNonZero(edges);
-    LOGI("Laplacian detected %d edge pixels", edgeCount);
-    
-    // If no edges found, use simple threshold
-    if (edgeCount < 100) {
-        LOGI("Too few edges, using simple threshold");
-        cv::threshold(gray, edges, 100, 255, cv::THRESH_BINARY);
-        edgeCount = cv::countNonZero(edges);
-        LOGI("Threshold detected %d edge pixels", edgeCount);
+        cv::cvtColor(src, p.gray, cv::COLOR_RGB2GRAY);
+        gray = &p.gray;
     }
     
-    // Create BRIGHT MAGENTA output - GUARANTEED to be visible
-    dst.setTo(cv::Scalar(0, 0, 0, 255)); // Black background
-    
-    // Set edge pixels to bright magenta
-    for (int y = 0; y < edges.rows; y++) {
-        for (int x = 0; x < edges.cols; x++) {
-            if (edges.at<uchar>(y, x) > 50) { // Lower threshold for more edges
-                dst.at<cv::Vec4b>(y, x) = cv::Vec4b(255, 0, 255, 255); // Bright magenta
-            }
+    // Canny's own Sobel doesn't suppress sensor noise, blur first
+    int rows = gray->rows;
+    p.dx.create(gray->size(), CV_16SC1);
+    p.dy.create(gray->size(), CV_16SC1);
+    int bands = std::max(1, std::min(std::min(cv::getNumThreads(), MAX_BANDS), rows / MIN_BAND_ROWS));
+    p.bandCount = bands;
+
+    cv::parallel_for_(cv::Range(0, bands), [&](const cv::Range& range) {
+        for (int band = range.start; band < range.end; band++) {
+            int64 bandStart = cv::getTickCount();
+            blurAndDifferentiate(p, *gray, band, rows * band / bands, rows * (band + 1) / bands);
+            p.bandTimesNs[band] = ticksToNs(cv::getTickCount() - bandStart);
         }
-    }
-    
-    // Add some test patterns to ensure visibility
-    cv::rectangle(dst, cv::Rect(10, 10, 50, 50), cv::Scalar(0, 255, 0, 255), 2); // Green square
-    cv::circle(dst, cv::Point(100, 100), 30, cv::Scalar(255, 255, 0, 255), 2); // Yellow circle
-    
-    LOGI("=== EDGE DETECTION COMPLETE - MAGENTA EDGES CREATED ===");
+    }, bands);
+
+    int64 hysteresisStart = cv::getTickCount();
+    const ProcessingState& st = p.state;
+    cv::Canny(p.dx, p.dy, edges, st.lowThreshold, st.lowThreshold * st.ratio, st.l2Gradient);
+    p.hysteresisTimeNs = ticksToNs(cv::getTickCount() - hysteresisStart);
 }
 
 extern "C" {
 
+JNIEXPORT jint JNICALL
+JNI_OnLoad(JavaVM* vm, void* reserved) {
+    JNIEnv* env = nullptr;
+    if (vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_6) != JNI_OK) {
+        return JNI_ERR;
+    }
+    jclass cls = env->FindClass("java/lang/RuntimeException");
+    if (cls == nullptr) {
+        return JNI_ERR;
+    }
+    gRuntimeExceptionClass = reinterpret_cast<jclass>(env->NewGlobalRef(cls));
+    env->DeleteLocalRef(cls);
+    LOGI("Native library loaded");
+    return JNI_VERSION_1_6;
+}
+
 // Initialize OpenCV
 JNIEXPORT void JNICALL
 Java_com_purnajear_edgedetectorapp_MainActivity_initOpenCV(JNIEnv* env, jobject thiz) {
@@ -113,200 +251,210 @@ Java_com_purnajear_edgedetectorapp_MainActivity_initOpenCV(JNIEnv* env, jobject
         LOGI("OpenCV initialized successfully. Test matrix sum: %f", cv::sum(testMat)[0]);
     } catch (cv::Exception& e) {
         LOGE("OpenCV initialization error: %s", e.what());
-        jclass je = env->FindClass("java/lang/RuntimeException");
-        env->ThrowNew(je, e.what());
+        throwRuntimeException(env, e.what());
     } catch (...) {
         LOGE("Unknown OpenCV initialization error");
-        jclass je = env->FindClass("java/lang/RuntimeException");
-        env->ThrowNew(je, "Unknown OpenCV initialization error");
+        throwRuntimeException(env, "Unknown OpenCV initialization error");
     }
 }
 
-// Set Canny edge detection parameters
+// Log settings from Logger: minimum priority for TAG and the sampled diagnostics interval
+// (every Nth frame, 0 = off). The compile-time floor in logging.h still applies.
 JNIEXPORT void JNICALL
-Java_com_purnajear_edgedetectorapp_MainActivity_setCannyParameters(JNIEnv* env, jobject thiz, jint threshold, jint cannyRatio) {
+Java_com_purnajear_edgedetectorapp_logging_NativeLog_nativeConfigure(JNIEnv* env, jclass clazz,
+                                                                     jint minPriority, jint diagnosticInterval) {
+    edgeLogMinPriority().store(minPriority, std::memory_order_relaxed);
+    edgeLogDiagnosticInterval().store(diagnosticInterval > 0 ? diagnosticInterval : 0, std::memory_order_relaxed);
+}
+
+// Create a processor for one NativeFrameProcessor. Returns 0 on failure.
+// fused selects FusedCanny for edges instead of the OpenCV calls.
+JNIEXPORT jlong JNICALL
+Java_com_purnajear_edgedetectorapp_processing_NativeFrameProcessor_nativeCreate(JNIEnv* env, jobject thiz,
+                                                                               jboolean fused) {
     try {
-        lowThreshold = threshold;
-        ratio = cannyRatio;
-        LOGI("Canny parameters updated: threshold=%d, ratio=%d", lowThreshold, ratio);
-    } catch (cv::Exception& e) {
-        LOGE("Error setting Canny parameters: %s", e.what());
+        EdgeProcessor* p = new EdgeProcessor();
+        p->fused = fused;
+        LOGI("Created %s edge processor %p", fused ? "fused" : "OpenCV", p);
+        return reinterpret_cast<jlong>(p);
+    } catch (std::exception& e) {
+        LOGE("Failed to create edge processor: %s", e.what());
     } catch (...) {
-        LOGE("Unknown error setting Canny parameters");
+        LOGE("Unknown error creating edge processor");
     }
+    return 0;
 }
 
-// Initialize native resources
+// Free a processor and all of its Mats. The handle must not be used afterwards.
 JNIEXPORT void JNICALL
-Java_com_purnajear_edgedetectorapp_gl_OpenGLRenderer_nativeInit(JNIEnv* env, jobject thiz) {
-    try {
-        LOGI("Initializing native resources...");
-        
-        // Create a small test matrix to verify OpenCV is working
-        cv::Mat testMat(10, 10, CV_8UC1);
-        testMat = cv::Scalar(255);
-        LOGI("Native initialization successful. OpenCV is working: %f", cv::sum(testMat)[0]);
-        
-    } catch (cv::Exception& e) {
-        LOGE("Native initialization error: %s", e.what());
-    } catch (...) {
-        LOGE("Unknown native initialization error");
+Java_com_purnajear_edgedetectorapp_processing_NativeFrameProcessor_nativeDestroy(JNIEnv* env, jobject thiz, jlong handle) {
+    EdgeProcessor* p = fromHandle(handle);
+    if (p != nullptr) {
+        LOGI("Destroying edge processor %p", p);
+        delete p;
     }
 }
 
-// Release native resources
+// Push a new processing state snapshot. Versions come from Java and only ever increase.
 JNIEXPORT void JNICALL
-Java_com_purnajear_edgedetectorapp_gl_OpenGLRenderer_nativeRelease(JNIEnv* env, jobject thiz) {
-    try {
-        LOGI("Releasing native resources...");
-        imgYUV.release();
-        imgRGBA.release();
-        imgGray.release();
-        imgEdges.release();
-    } catch (cv::Exception& e) {
-        LOGE("Error releasing resources: %s", e.what());
-    } catch (...) {
-        LOGE("Unknown error releasing resources");
+Java_com_purnajear_edgedetectorapp_processing_NativeFrameProcessor_nativeSetState(
+        JNIEnv* env, jobject thiz, jlong handle, jint version, jboolean edgeDetection,
+        jint threshold, jint cannyRatio, jboolean l2Gradient) {
+    EdgeProcessor* p = fromHandle(handle);
+    if (p == nullptr) {
+        return;
     }
+    std::lock_guard<std::mutex> lock(p->pendingMutex);
+    p->pending.edgeDetection = edgeDetection;
+    p->pending.lowThreshold = threshold;
+    p->pending.ratio = cannyRatio;
+    p->pending.l2Gradient = l2Gradient;
+    p->pendingVersion.store(version, std::memory_order_release);
 }
 
-// Process frame using direct ByteBuffer for improved performance
+// Threads for OpenCV's parallel_for_, and with that the number of edge bands. Applies to
+// the whole library. 0 or less restores OpenCV's default.
 JNIEXPORT void JNICALL
-Java_com_purnajear_edgedetectorapp_gl_OpenGLRenderer_nativeProcessFrame(
-        JNIEnv* env, jobject thiz, jbyteArray input, jint width, jint height, jobject output) {
+Java_com_purnajear_edgedetectorapp_processing_NativeFrameProcessor_nativeSetNumThreads(JNIEnv* env, jclass clazz,
+                                                                                      jint threads) {
+    cv::setNumThreads(threads > 0 ? threads : -1);
+    LOGI("OpenCV threads: %d", cv::getNumThreads());
+}
+
+JNIEXPORT jint JNICALL
+Java_com_purnajear_edgedetectorapp_processing_NativeFrameProcessor_nativeGetNumThreads(JNIEnv* env, jclass clazz) {
+    return cv::getNumThreads();
+}
+
+// Timings of the last edge frame: bandTimes gets one entry per band (ns), returns the
+// band count. hysteresis[0] is the NMS + hysteresis time.
+JNIEXPORT jint JNICALL
+Java_com_purnajear_edgedetectorapp_processing_NativeFrameProcessor_nativeGetTimings(
+        JNIEnv* env, jobject thiz, jlong handle, jlongArray bandTimes, jlongArray hysteresis) {
+    EdgeProcessor* p = fromHandle(handle);
+    if (p == nullptr) {
+        return 0;
+    }
+    int count = std::min(p->bandCount, (int)env->GetArrayLength(bandTimes));
+    static_assert(sizeof(jlong) == sizeof(int64_t), "jlong must be 64 bit");
+    env->SetLongArrayRegion(bandTimes, 0, count, reinterpret_cast<const jlong*>(p->bandTimesNs));
+    jlong hysteresisNs = p->hysteresisTimeNs;
+    env->SetLongArrayRegion(hysteresis, 0, 1, &hysteresisNs);
+    return count;
+}
+
+// Process camera planes straight from the Image direct buffers.
+// Edge mode only ever reads the Y plane - U/V may be null then.
+JNIEXPORT jint JNICALL
+Java_com_purnajear_edgedetectorapp_processing_NativeFrameProcessor_nativeProcess(
+        JNIEnv* env, jobject thiz, jlong handle, jobject yPlane, jint yRowStride,
+        jobject uPlane, jobject vPlane, jint uvRowStride, jint uvPixelStride,
+        jint width, jint height, jint downscale, jboolean lumaOnly, jobject output, jint outputOffset) {
     
-    jbyte* inputBuffer = NULL;
+    EdgeProcessor* p = fromHandle(handle);
+    if (p == nullptr) {
+        LOGE_RATE(1, 3, "nativeProcess called without a processor");
+        return OUTPUT_FAILED;
+    }
     uint8_t* outputBuffer = NULL;
 
     try {
         // Start processing time measurement
         int64 startTime = cv::getTickCount();
         
-        // Get byte array elements
-        inputBuffer = env->GetByteArrayElements(input, nullptr);
-        if (inputBuffer == nullptr) {
-            LOGE("Failed to get byte array elements");
-            return;
+        uint8_t* yPtr = (uint8_t*)env->GetDirectBufferAddress(yPlane);
+        if (yPtr == NULL) {
+            LOGE_RATE(1, 3, "Y plane must be a direct buffer");
+            return OUTPUT_FAILED;
         }
         
-        // CRITICAL FIX: Properly handle YUV_420_888 from Android Camera2
-        LOGI("Processing YUV frame: %dx%d, expected size: %d bytes", width, height, (int)(width * height * 1.5));
-        
-        // Create OpenCV Mat from YUV data using proper format
-        if (imgYUV.empty() || imgYUV.rows != height + height/2 || imgYUV.cols != width) {
-            imgYUV.create(height + height/2, width, CV_8UC1);
-            LOGI("Created YUV Mat: %dx%d", imgYUV.cols, imgYUV.rows);
+        if (downscale != 1 && downscale != 2) {
+            downscale = 1;
         }
+        int outWidth = width / downscale;
+        int outHeight = height / downscale;
         
-        // Copy YUV data - this is already in NV21 format from CameraHelper
-        memcpy(imgYUV.data, inputBuffer, width * height * 1.5);
-        LOGI("Copied %d bytes to YUV Mat", (int)(width * height * 1.5));
+        syncState(*p);
+        bool isEdgeDetectionEnabled = p->state.edgeDetection;
+        OutputFormat format = isEdgeDetectionEnabled ? OUTPUT_EDGES : OUTPUT_RGBA;
         
-        // Create RGBA output mat
-        if (imgRGBA.empty() || imgRGBA.rows != height || imgRGBA.cols != width) {
-            imgRGBA.create(height, width, CV_8UC4);
-            imgEdges.create(height, width, CV_8UC4);
-            LOGI("Created RGBA Mat: %dx%d", imgRGBA.cols, imgRGBA.rows);
+        // Get direct buffer address - results are written straight into it, no final copy.
+        // outputOffset leaves room for data Java puts in front (the camera frame in overlay mode)
+        outputBuffer = (uint8_t*)env->GetDirectBufferAddress(output);
+        if (outputBuffer == NULL || outputOffset < 0) {
+            LOGE_RATE(1, 3, "Error: Failed to get direct buffer address");
+            return OUTPUT_FAILED;
         }
         
-        // Convert YUV to RGBA with proper error handling
-        yuv2rgba(imgYUV, imgRGBA);
-        LOGI("YUV to RGBA conversion complete");
+        // Validate buffer capacity. Java sizes it for the mode it last pushed, so right after a
+        // switch this can be short once - the frame is just skipped then
+        jlong bufferCapacity = env->GetDirectBufferCapacity(output);
+        jlong requiredCapacity = (jlong)outWidth * outHeight * (format == OUTPUT_EDGES ? 1 : 4);
+        if (bufferCapacity - outputOffset < requiredCapacity) {
+            LOGW_RATE(1, 3, "Buffer too small, got %ld bytes, need %ld bytes", (long)bufferCapacity, (long)requiredCapacity);
+            return OUTPUT_FAILED;
+        }
+        outputBuffer += outputOffset;
+        cv::Mat out(outHeight, outWidth, format == OUTPUT_EDGES ? CV_8UC1 : CV_8UC4, outputBuffer);
         
-        // Apply edge detection (or just use the RGBA image)
-        if (thiz != nullptr) {
-            // Get the isEdgeDetectionEnabled field
-            jclass cls = env->GetObjectClass(thiz);
-            if (cls == nullptr) {
-                LOGE("Failed to get class reference");
-            } else {
-                jfieldID fieldId = env->GetFieldID(cls, "isEdgeDetectionEnabled", "Z");
-                if (fieldId == nullptr) {
-                    LOGE("Failed to find isEdgeDetectionEnabled field - JNI ERROR");
-                    // Try fallback method by calling the getter
-                    jmethodID getterMethod = env->GetMethodID(cls, "getEdgeDetectionState", "()Z");
-                    if (getterMethod != nullptr) {
-                        bool isEdgeDetectionEnabled = env->CallBooleanMethod(thiz, getterMethod);
-                        LOGI("Using getter method: isEdgeDetectionEnabled = %d", isEdgeDetectionEnabled);
-                        
-                        if (isEdgeDetectionEnabled) {
-                            applyCannyEdge(imgRGBA, imgEdges);
-                            imgRGBA = imgEdges;
-                        }
-                    } else {
-                        LOGE("Fallback method also failed - edge detection disabled");
-                    }
-                } else {
-                    bool isEdgeDetectionEnabled = env->GetBooleanField(thiz, fieldId);
-                    LOGI("Direct field access: isEdgeDetectionEnabled = %d", isEdgeDetectionEnabled);
-                    
-                    if (isEdgeDetectionEnabled) {
-                        LOGI("=== EDGE DETECTION MODE ENABLED ===");
-                        
-                        try {
-                            // Apply edge detection
-                            applyCannyEdge(imgRGBA, imgEdges);
-                            
-                            if (!imgEdges.empty()) {
-                                imgRGBA = imgEdges;
-                                LOGI("Edge detection applied successfully");
-                            } else {
-                                LOGE("Edge detection failed - using fallback pattern");
-                                // FAILSAFE: Create a visible test pattern
-                                imgRGBA.setTo(cv::Scalar(255, 0, 255, 255)); // Bright magenta background
-                                cv::putText(imgRGBA, "EDGE MODE", cv::Point(50, 100), cv::FONT_HERSHEY_SIMPLEX, 2, cv::Scalar(0, 255, 0, 255), 3);
-                                cv::rectangle(imgRGBA, cv::Rect(100, 200, 200, 100), cv::Scalar(255, 255, 0, 255), 5);
-                            }
-                        } catch (...) {
-                            LOGE("Exception in edge detection - using emergency pattern");
-                            // EMERGENCY FAILSAFE: Guaranteed visible pattern
-                            imgRGBA.setTo(cv::Scalar(255, 0, 255, 255)); // Magenta
-                            for (int i = 0; i < imgRGBA.rows; i += 20) {
-                                cv::line(imgRGBA, cv::Point(0, i), cv::Point(imgRGBA.cols, i), cv::Scalar(0, 255, 0, 255), 2);
-                            }
-                        }
-                    } else {
-                        LOGI("Edge detection disabled - raw camera mode");
-                    }
-                }
-                env->DeleteLocalRef(cls);
-            }
+        // Header only - no data is copied here
+        cv::Mat yFull(height, width, CV_8UC1, yPtr, yRowStride);
+        cv::Mat y = yFull;
+        if (downscale > 1) {
+            cv::pyrDown(yFull, p->ySmall, cv::Size(outWidth, outHeight));
+            y = p->ySmall;
         }
         
-        // Get direct buffer address - more efficient than copying
-        outputBuffer = (uint8_t*)env->GetDirectBufferAddress(output);
-        if (outputBuffer == NULL) {
-            LOGE("Error: Failed to get direct buffer address");
-            env->ReleaseByteArrayElements(input, inputBuffer, 0);
-            return;
+        // Chroma is only needed for colour output
+        uint8_t* uPtr = NULL;
+        uint8_t* vPtr = NULL;
+        if (!isEdgeDetectionEnabled && !lumaOnly && uPlane != nullptr && vPlane != nullptr) {
+            uPtr = (uint8_t*)env->GetDirectBufferAddress(uPlane);
+            vPtr = (uint8_t*)env->GetDirectBufferAddress(vPlane);
         }
         
-        // Validate buffer capacity
-        jlong bufferCapacity = env->GetDirectBufferCapacity(output);
-        jlong requiredCapacity = width * height * 4;
-        if (bufferCapacity < requiredCapacity) {
-            LOGE("Error: Buffer too small, got %ld bytes, need %ld bytes", bufferCapacity, requiredCapacity);
-            env->ReleaseByteArrayElements(input, inputBuffer, 0);
-            return;
+        if (isEdgeDetectionEnabled) {
+            // Straight from luma into the output - colouring happens in the shader. Failures
+            // go to the handlers below and reach Java as a RuntimeException, so calibration
+            // and the benchmark can reject an engine that doesn't work
+            if (p->fused) {
+                const ProcessingState& st = p->state;
+                p->fusedCanny.detect(y.data, (int)y.step, y.cols, y.rows, st.lowThreshold,
+                                     st.lowThreshold * st.ratio, st.l2Gradient, out.data, (int)out.step);
+                p->bandCount = 0;
+            } else {
+                detectEdges(*p, y, out);
+            }
+        } else if (uPtr != NULL && vPtr != NULL) {
+            if (!planesToRgba(*p, yFull, y, uPtr, vPtr, uvRowStride, uvPixelStride, width, height,
+                              downscale, out)) {
+                return OUTPUT_FAILED;
+            }
+        } else {
+            // Luma-only tier (or chroma wasn't copied) - grey output
+            cv::cvtColor(y, out, cv::COLOR_GRAY2RGBA);
         }
         
-        // Copy processed frame to output buffer
-        memcpy(outputBuffer, imgRGBA.data, width * height * 4);
+        // OpenCV only reallocates when size/type don't match, which would mean a bug above
+        if (out.data != outputBuffer) {
+            LOGE_RATE(1, 3, "Output Mat was reallocated, copying back");
+            memcpy(outputBuffer, out.data, requiredCapacity);
+        }
         
-        // Log processing time
-        double processingTime = ((double)cv::getTickCount() - startTime) / cv::getTickFrequency() * 1000.0;
-        LOGI("Frame processing time: %.2f ms", processingTime);
+        // Sampled - every frame would flood logcat
+        LOGD_EVERY_N_FRAMES("Frame processing time: %.2f ms (edge: %d)",
+                            ((double)cv::getTickCount() - startTime) / cv::getTickFrequency() * 1000.0,
+                            isEdgeDetectionEnabled);
+        return format;
         
     } catch (cv::Exception& e) {
-        LOGE("OpenCV error: %s", e.what());
+        LOGE_RATE(1, 3, "OpenCV error: %s", e.what());
+        throwRuntimeException(env, e.what());
     } catch (...) {
-        LOGE("Unknown error processing frame");
-    }
-    
-    // Release byte array elements
-    if (inputBuffer) {
-        env->ReleaseByteArrayElements(input, inputBuffer, 0);
+        LOGE_RATE(1, 3, "Unknown error processing frame");
+        throwRuntimeException(env, "Unknown error processing frame");
     }
+    return OUTPUT_FAILED;
 }
 
 // Test method to force edge detection for debugging
@@ -326,14 +474,13 @@ Java_com_purnajear_edgedetectorapp_MainActivity_forceEdgeDetectionTest(JNIEnv* e
         
         LOGI("Created test image: %dx%d", testImage.cols, testImage.rows);
         
-        // Apply edge detection to test image
+        // Apply edge detection to test image - own processor, default parameters
+        EdgeProcessor processor;
         cv::Mat edgeResult;
-        applyCannyEdge(testImage, edgeResult);
+        detectEdges(processor, testImage, edgeResult);
         
         if (!edgeResult.empty()) {
-            cv::Mat grayCheck;
-            cv::cvtColor(edgeResult, grayCheck, cv::COLOR_RGBA2GRAY);
-            int edgeCount = cv::countNonZero(grayCheck);
+            int edgeCount = cv::countNonZero(edgeResult);
             LOGI("Test successful: %d edge pixels detected", edgeCount);
         } else {
             LOGE("Test failed: edge result is empty");
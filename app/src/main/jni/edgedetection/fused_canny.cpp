@@ -0,0 +1,217 @@
+#include "fused_canny.h"
+
+#include <algorithm>
+#include <cstdlib>
+
+// tan(22.5 deg) in Q15, the constant OpenCV's Canny uses
+static const int TG22 = 13573;
+static const int CANNY_SHIFT = 15;
+
+// Ring sizes: the blur needs 5 source rows, Sobel 3 blurred rows, suppression 3 magnitude
+// rows but only the direction of the middle one (plus the row just computed)
+static const int SUM_ROWS = 5;
+static const int BLUR_ROWS = 3;
+static const int MAG_ROWS = 3;
+static const int DIR_ROWS = 2;
+
+// Which neighbours suppression compares against, from the quantized gradient direction
+enum Direction : uint8_t {
+    DIR_HORIZONTAL = 0,   // left / right
+    DIR_VERTICAL = 1,     // above / below
+    DIR_DIAGONAL = 2,     // above-left / below-right
+    DIR_ANTIDIAGONAL = 3  // above-right / below-left
+};
+
+// Per-pixel state after suppression, written into the output until hysteresis is done
+static const uint8_t NOT_EDGE = 0;
+static const uint8_t CANDIDATE = 1;  // local maximum above the low threshold
+static const uint8_t EDGE = 2;
+
+// BORDER_REFLECT_101: -1 -> 1, n -> n - 2
+static inline int reflect101(int i, int n) {
+    if (n == 1) {
+        return 0;
+    }
+    while (i < 0 || i >= n) {
+        i = i < 0 ? -i : 2 * n - 2 - i;
+    }
+    return i;
+}
+
+void FusedCanny::resize(int w, int h) {
+    if (w != width) {
+        width = w;
+        rowSums.assign((size_t)SUM_ROWS * w, 0);
+        blurred.assign((size_t)BLUR_ROWS * w, 0);
+        magnitude.assign((size_t)MAG_ROWS * (w + 2), 0);
+        direction.assign((size_t)DIR_ROWS * w, 0);
+        zeroRow.assign((size_t)w + 2, 0);
+    }
+    if (stack.size() < (size_t)w * h) {
+        stack.resize((size_t)w * h);
+    }
+}
+
+void FusedCanny::detect(const uint8_t* luma, int lumaStride, int w, int h,
+                        int lowThreshold, int highThreshold, bool l2Gradient,
+                        uint8_t* edges, int edgesStride) {
+    if (w <= 0 || h <= 0) {
+        return;
+    }
+    resize(w, h);
+
+    // Thresholds as cv::Canny prepares them: ordered, squared for L2
+    int low = std::min(lowThreshold, highThreshold);
+    int high = std::max(lowThreshold, highThreshold);
+    if (l2Gradient) {
+        low = std::min(low, 32767);
+        high = std::min(high, 32767);
+        low = low > 0 ? low * low : low;
+        high = high > 0 ? high * high : high;
+    }
+    stackTop = 0;
+
+    // Each source row goes through every stage as soon as the rows it depends on exist,
+    // so no ring entry is overwritten while a later stage still needs it
+    int nextBlur = 0;
+    int nextGradient = 0;
+    int nextSuppress = 0;
+    for (int row = 0; row < h; row++) {
+        // Horizontal half of the blur, unscaled (at most 16 * 255)
+        const uint8_t* src = luma + (size_t)row * lumaStride;
+        uint16_t* sums = &rowSums[(size_t)(row % SUM_ROWS) * w];
+        for (int c = 0; c < w; c++) {
+            if (c >= 2 && c + 2 < w) {
+                sums[c] = src[c - 2] + 4 * src[c - 1] + 6 * src[c] + 4 * src[c + 1] + src[c + 2];
+            } else {
+                sums[c] = src[reflect101(c - 2, w)] + 4 * src[reflect101(c - 1, w)] + 6 * src[c]
+                        + 4 * src[reflect101(c + 1, w)] + src[reflect101(c + 2, w)];
+            }
+        }
+
+        while (nextBlur < h && std::min(nextBlur + 2, h - 1) <= row) {
+            blurRow(nextBlur++, h);
+            while (nextGradient < nextBlur && std::min(nextGradient + 1, h - 1) < nextBlur) {
+                gradientRow(nextGradient++, h, l2Gradient);
+                while (nextSuppress < nextGradient && std::min(nextSuppress + 1, h - 1) < nextGradient) {
+                    suppressRow(nextSuppress++, h, low, high, edges, edgesStride);
+                }
+            }
+        }
+    }
+
+    hysteresis(w, h, edges, edgesStride);
+}
+
+// Vertical half of the blur, rounded back to 8 bits like OpenCV's fixed-point GaussianBlur
+void FusedCanny::blurRow(int row, int h) {
+    const int w = width;
+    const uint16_t* a = &rowSums[(size_t)(reflect101(row - 2, h) % SUM_ROWS) * w];
+    const uint16_t* b = &rowSums[(size_t)(reflect101(row - 1, h) % SUM_ROWS) * w];
+    const uint16_t* c = &rowSums[(size_t)(row % SUM_ROWS) * w];
+    const uint16_t* d = &rowSums[(size_t)(reflect101(row + 1, h) % SUM_ROWS) * w];
+    const uint16_t* e = &rowSums[(size_t)(reflect101(row + 2, h) % SUM_ROWS) * w];
+    uint8_t* dst = &blurred[(size_t)(row % BLUR_ROWS) * w];
+    for (int j = 0; j < w; j++) {
+        int sum = a[j] + 4 * b[j] + 6 * c[j] + 4 * d[j] + e[j];
+        dst[j] = (uint8_t)((sum + 128) >> 8);
+    }
+}
+
+// 3x3 Sobel with replicated borders, L1 or squared L2 magnitude and the suppression
+// direction - dx/dy themselves are never stored
+void FusedCanny::gradientRow(int row, int h, bool l2Gradient) {
+    const int w = width;
+    const uint8_t* up = &blurred[(size_t)(std::max(row - 1, 0) % BLUR_ROWS) * w];
+    const uint8_t* mid = &blurred[(size_t)(row % BLUR_ROWS) * w];
+    const uint8_t* down = &blurred[(size_t)(std::min(row + 1, h - 1) % BLUR_ROWS) * w];
+    int32_t* mag = &magnitude[(size_t)(row % MAG_ROWS) * (w + 2) + 1];
+    uint8_t* dir = &direction[(size_t)(row % DIR_ROWS) * w];
+    for (int c = 0; c < w; c++) {
+        int left = c > 0 ? c - 1 : 0;
+        int right = c + 1 < w ? c + 1 : w - 1;
+        int gx = up[right] - up[left] + 2 * (mid[right] - mid[left]) + down[right] - down[left];
+        int gy = down[left] + 2 * down[c] + down[right] - up[left] - 2 * up[c] - up[right];
+        mag[c] = l2Gradient ? gx * gx + gy * gy : std::abs(gx) + std::abs(gy);
+
+        int x = std::abs(gx);
+        int y = std::abs(gy) << CANNY_SHIFT;
+        int tg22x = x * TG22;
+        if (y < tg22x) {
+            dir[c] = DIR_HORIZONTAL;
+        } else if (y > tg22x + (x << (CANNY_SHIFT + 1))) {
+            dir[c] = DIR_VERTICAL;
+        } else {
+            dir[c] = (gx ^ gy) < 0 ? DIR_ANTIDIAGONAL : DIR_DIAGONAL;
+        }
+    }
+}
+
+// Keep local maxima along the gradient. Comparisons are asymmetric (> one side, >= the
+// other) as in OpenCV. Strong pixels go on the hysteresis stack right away
+void FusedCanny::suppressRow(int row, int h, int low, int high, uint8_t* edges, int edgesStride) {
+    const int w = width;
+    const int32_t* prev = row > 0 ? &magnitude[(size_t)((row - 1) % MAG_ROWS) * (w + 2) + 1] : &zeroRow[1];
+    const int32_t* cur = &magnitude[(size_t)(row % MAG_ROWS) * (w + 2) + 1];
+    const int32_t* next = row + 1 < h ? &magnitude[(size_t)((row + 1) % MAG_ROWS) * (w + 2) + 1] : &zeroRow[1];
+    const uint8_t* dir = &direction[(size_t)(row % DIR_ROWS) * w];
+    uint8_t* out = edges + (size_t)row * edgesStride;
+    int32_t* stackData = stack.data();
+    for (int c = 0; c < w; c++) {
+        int m = cur[c];
+        uint8_t s = NOT_EDGE;
+        if (m > low) {
+            bool isMax;
+            switch (dir[c]) {
+                case DIR_HORIZONTAL:
+                    isMax = m > cur[c - 1] && m >= cur[c + 1];
+                    break;
+                case DIR_VERTICAL:
+                    isMax = m > prev[c] && m >= next[c];
+                    break;
+                case DIR_DIAGONAL:
+                    isMax = m > prev[c - 1] && m > next[c + 1];
+                    break;
+                default:
+                    isMax = m > prev[c + 1] && m > next[c - 1];
+                    break;
+            }
+            if (isMax) {
+                if (m > high) {
+                    s = EDGE;
+                    stackData[stackTop++] = row * w + c;
+                } else {
+                    s = CANDIDATE;
+                }
+            }
+        }
+        out[c] = s;
+    }
+}
+
+// Grow edges from the strong pixels into 8-connected candidates, then turn the state map
+// into the final 0/255 output
+void FusedCanny::hysteresis(int w, int h, uint8_t* edges, int edgesStride) {
+    int32_t* stackData = stack.data();
+    while (stackTop > 0) {
+        int i = stackData[--stackTop];
+        int r = i / w;
+        int c = i - r * w;
+        for (int nr = std::max(r - 1, 0); nr <= std::min(r + 1, h - 1); nr++) {
+            uint8_t* line = edges + (size_t)nr * edgesStride;
+            for (int nc = std::max(c - 1, 0); nc <= std::min(c + 1, w - 1); nc++) {
+                if (line[nc] == CANDIDATE) {
+                    line[nc] = EDGE;
+                    stackData[stackTop++] = nr * w + nc;
+                }
+            }
+        }
+    }
+
+    for (int r = 0; r < h; r++) {
+        uint8_t* line = edges + (size_t)r * edgesStride;
+        for (int c = 0; c < w; c++) {
+            line[c] = line[c] == EDGE ? 255 : 0;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+#ifndef EDGE_DETECTOR_FUSED_CANNY_H
+#define EDGE_DETECTOR_FUSED_CANNY_H
+
+#include <cstddef>
+#include <cstdint>
+#include <vector>
+
+// Canny in a single pass over the luma plane.
+//
+// The OpenCV chain (GaussianBlur, then Canny with its own Sobel, magnitude and suppression)
+// streams the whole frame through memory once per step. This reads each luma row once and
+// pushes it through blur -> Sobel -> magnitude/direction -> non-maximum suppression using
+// a few rows of ring buffers, so the working set is a handful of rows that stay in L1/L2.
+// Only the suppression result (one byte per pixel, written straight into the output) is
+// frame sized; hysteresis then runs over it in place.
+//
+// Same arithmetic as GaussianBlur(5x5, sigma 0) + Canny(aperture 3): [1 4 6 4 1] blur with
+// (sum + 128) >> 8 and BORDER_REFLECT_101, Sobel with BORDER_REPLICATE, OpenCV's fixed-point
+// tan(22.5) direction test, so the edge map should match the OpenCV path. FusedCannyEngineTest
+// only checks it against JavaCannyEngine; EngineBenchmark reports the pixels that differ from
+// the OpenCV engine on a device.
+class FusedCanny {
+public:
+    // luma: width x height, lumaStride bytes per row. edges receives 0/255, edgesStride
+    // bytes per row. highThreshold < lowThreshold is swapped, like cv::Canny does.
+    void detect(const uint8_t* luma, int lumaStride, int width, int height,
+                int lowThreshold, int highThreshold, bool l2Gradient,
+                uint8_t* edges, int edgesStride);
+
+private:
+    void resize(int width, int height);
+    void blurRow(int row, int height);
+    void gradientRow(int row, int height, bool l2Gradient);
+    void suppressRow(int row, int height, int low, int high, uint8_t* edges, int edgesStride);
+    void hysteresis(int width, int height, uint8_t* edges, int edgesStride);
+
+    int width = 0;
+
+    // Rings, indexed by image row modulo their size
+    std::vector<uint16_t> rowSums;   // 5 rows of horizontal [1 4 6 4 1] sums
+    std::vector<uint8_t> blurred;    // 3 rows
+    std::vector<int32_t> magnitude;  // 3 rows, one zero column each side
+    std::vector<uint8_t> direction;  // 2 rows, see DIR_* in fused_canny.cpp
+    std::vector<int32_t> zeroRow;    // magnitude above the first / below the last row
+
+    std::vector<int32_t> stack;      // hysteresis, at most one entry per pixel
+    size_t stackTop = 0;
+};
+
+#endif // EDGE_DETECTOR_FUSED_CANNY_H
@@ -0,0 +1,27 @@
+#include <jni.h>
+#include <cstdint>
+#include <GLES2/gl2.h>
+
+// The Java GLES bindings only have the Buffer form of glTexSubImage2D. With a pixel unpack
+// buffer bound (ES 3.0) the pixels argument is an offset into that buffer instead, which
+// Java can't pass - so TextureStreamer's PBO path comes through here.
+
+extern "C" {
+
+// Lets PboUpload check the library is there before choosing the PBO path
+JNIEXPORT jboolean JNICALL
+Java_com_purnajear_edgedetectorapp_gl_PboUpload_nativeIsAvailable(JNIEnv* env, jclass clazz) {
+    return JNI_TRUE;
+}
+
+JNIEXPORT void JNICALL
+Java_com_purnajear_edgedetectorapp_gl_PboUpload_nativeTexSubImage2D(JNIEnv* env, jclass clazz,
+                                                                  jint target, jint level, jint x, jint y,
+                                                                  jint width, jint height, jint format,
+                                                                  jint type, jint offset) {
+    glTexSubImage2D(static_cast<GLenum>(target), level, x, y, width, height,
+                    static_cast<GLenum>(format), static_cast<GLenum>(type),
+                    reinterpret_cast<const void*>(static_cast<intptr_t>(offset)));
+}
+
+}
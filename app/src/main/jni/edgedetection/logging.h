@@ -0,0 +1,133 @@
+#ifndef EDGE_DETECTOR_LOGGING_H
+#define EDGE_DETECTOR_LOGGING_H
+
+#include <android/log.h>
+#include <atomic>
+#include <cstdint>
+#include <ctime>
+
+// Native side of com.purnajear.edgedetectorapp.logging. Define TAG before including.
+//
+// Two gates in front of __android_log_print:
+// - EDGE_LOG_MIN_LEVEL, at compile time. Release builds (NDEBUG) keep INFO and up, like
+//   Logger.java; anything below is an `if (false)`, arguments and all, so it costs nothing.
+// - A runtime minimum pushed from Java (Logger.setLevel("EdgeDetector", ...)), one relaxed
+//   atomic load before any formatting.
+// Per call site on top of that: LOGx_RATE for a token bucket, LOGD_EVERY_N_FRAMES for the
+// sampled diagnostics (interval shared with Java's FrameSampler, 0 = off).
+
+#ifndef EDGE_LOG_MIN_LEVEL
+#ifdef NDEBUG
+#define EDGE_LOG_MIN_LEVEL ANDROID_LOG_INFO
+#define EDGE_LOG_DEFAULT_INTERVAL 0
+#else
+#define EDGE_LOG_MIN_LEVEL ANDROID_LOG_DEBUG
+#define EDGE_LOG_DEFAULT_INTERVAL 30
+#endif
+#endif
+
+#ifndef EDGE_LOG_DEFAULT_INTERVAL
+#define EDGE_LOG_DEFAULT_INTERVAL 0
+#endif
+
+// Function statics rather than globals so the header works in every translation unit
+// (no C++17 inline variables here)
+inline std::atomic<int>& edgeLogMinPriority() {
+    static std::atomic<int> priority(EDGE_LOG_MIN_LEVEL);
+    return priority;
+}
+
+inline std::atomic<int>& edgeLogDiagnosticInterval() {
+    static std::atomic<int> interval(EDGE_LOG_DEFAULT_INTERVAL);
+    return interval;
+}
+
+inline bool edgeLogEnabled(int priority) {
+    return priority >= edgeLogMinPriority().load(std::memory_order_relaxed);
+}
+
+inline int64_t edgeLogNowNs() {
+    timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return (int64_t)ts.tv_sec * 1000000000LL + ts.tv_nsec;
+}
+
+// Token bucket for one call site, same GCRA as RateLimitedLog.java: burst messages at
+// once, refilled at perSecond. Drops are counted and reported with the next message.
+struct EdgeLogRateLimiter {
+    std::atomic<int64_t> fullAtNs{INT64_MIN};
+    std::atomic<int> suppressed{0};
+
+    bool acquire(double perSecond, int burst) {
+        const int64_t interval = (int64_t)(1e9 / perSecond);
+        const int64_t tolerance = (int64_t)(burst > 1 ? burst - 1 : 0) * interval;
+        const int64_t now = edgeLogNowNs();
+        int64_t fullAt = fullAtNs.load(std::memory_order_relaxed);
+        while (true) {
+            int64_t start = fullAt > now ? fullAt : now;
+            if (start - now > tolerance) {
+                suppressed.fetch_add(1, std::memory_order_relaxed);
+                return false;
+            }
+            if (fullAtNs.compare_exchange_weak(fullAt, start + interval, std::memory_order_relaxed)) {
+                return true;
+            }
+        }
+    }
+};
+
+// Every Nth call passes, one counter per call site
+struct EdgeLogSampler {
+    std::atomic<uint32_t> count{0};
+
+    bool sample() {
+        int interval = edgeLogDiagnosticInterval().load(std::memory_order_relaxed);
+        return interval > 0 && count.fetch_add(1, std::memory_order_relaxed) % (uint32_t)interval == 0;
+    }
+};
+
+#define EDGE_LOG(priority, ...) \
+    do { \
+        if ((priority) >= EDGE_LOG_MIN_LEVEL && edgeLogEnabled(priority)) { \
+            (void)__android_log_print((priority), TAG, __VA_ARGS__); \
+        } \
+    } while (0)
+
+#define EDGE_LOG_RATE(priority, perSecond, burst, fmt, ...) \
+    do { \
+        if ((priority) >= EDGE_LOG_MIN_LEVEL && edgeLogEnabled(priority)) { \
+            static EdgeLogRateLimiter edgeLogSite_; \
+            if (edgeLogSite_.acquire((perSecond), (burst))) { \
+                int edgeLogDropped_ = edgeLogSite_.suppressed.exchange(0, std::memory_order_relaxed); \
+                if (edgeLogDropped_ > 0) { \
+                    (void)__android_log_print((priority), TAG, fmt " (%d similar suppressed)", \
+                                              ##__VA_ARGS__, edgeLogDropped_); \
+                } else { \
+                    (void)__android_log_print((priority), TAG, fmt, ##__VA_ARGS__); \
+                } \
+            } \
+        } \
+    } while (0)
+
+#define LOGV(...) EDGE_LOG(ANDROID_LOG_VERBOSE, __VA_ARGS__)
+#define LOGD(...) EDGE_LOG(ANDROID_LOG_DEBUG, __VA_ARGS__)
+#define LOGI(...) EDGE_LOG(ANDROID_LOG_INFO, __VA_ARGS__)
+#define LOGW(...) EDGE_LOG(ANDROID_LOG_WARN, __VA_ARGS__)
+#define LOGE(...) EDGE_LOG(ANDROID_LOG_ERROR, __VA_ARGS__)
+
+// Hot path warnings/errors: at most perSecond, bursts of burst
+#define LOGW_RATE(perSecond, burst, fmt, ...) EDGE_LOG_RATE(ANDROID_LOG_WARN, perSecond, burst, fmt, ##__VA_ARGS__)
+#define LOGE_RATE(perSecond, burst, fmt, ...) EDGE_LOG_RATE(ANDROID_LOG_ERROR, perSecond, burst, fmt, ##__VA_ARGS__)
+
+// Per-frame diagnostics, every Nth call
+#define LOGD_EVERY_N_FRAMES(...) \
+    do { \
+        if (ANDROID_LOG_DEBUG >= EDGE_LOG_MIN_LEVEL && edgeLogEnabled(ANDROID_LOG_DEBUG)) { \
+            static EdgeLogSampler edgeLogSampler_; \
+            if (edgeLogSampler_.sample()) { \
+                (void)__android_log_print(ANDROID_LOG_DEBUG, TAG, __VA_ARGS__); \
+            } \
+        } \
+    } while (0)
+
+#endif // EDGE_DETECTOR_LOGGING_H
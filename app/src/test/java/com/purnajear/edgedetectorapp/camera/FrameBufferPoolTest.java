@@ -0,0 +1,119 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameBufferPoolTest {
+
+    @Test
+    public void steadyStateReusesBuffers() {
+        FrameBufferPool pool = new FrameBufferPool("test", 64, 2);
+        FrameBuffer first = pool.acquire();
+        first.release();
+        for (int i = 0; i < 10; i++) {
+            FrameBuffer buffer = pool.acquire();
+            assertSame(first, buffer);
+            buffer.release();
+        }
+
+        assertEquals(1, pool.getMisses());
+        assertEquals(10, pool.getHits());
+        assertEquals(0, pool.getInFlight());
+        assertEquals(1, pool.getHighWaterMark());
+        assertEquals(64, first.getCapacity());
+    }
+
+    @Test
+    public void highWaterMarkTracksBuffersInFlight() {
+        FrameBufferPool pool = new FrameBufferPool("test", 16, 4);
+        FrameBuffer a = pool.acquire();
+        FrameBuffer b = pool.acquire();
+        FrameBuffer c = pool.acquire();
+        assertEquals(3, pool.getInFlight());
+        a.release();
+        b.release();
+        c.release();
+        pool.acquire().release();
+
+        assertEquals(0, pool.getInFlight());
+        assertEquals(3, pool.getHighWaterMark());
+        assertEquals(3, pool.getMisses());
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test
+    public void retainedBufferComesBackOnLastRelease() {
+        FrameBufferPool pool = new FrameBufferPool("test", 16, 2);
+        FrameBuffer buffer = pool.acquire();
+        buffer.retain();
+        buffer.release();
+        assertEquals(1, pool.getInFlight());
+        buffer.release();
+        assertEquals(0, pool.getInFlight());
+        assertSame(buffer, pool.acquire());
+    }
+
+    @Test
+    public void poolKeepsAtMostMaxPooled() {
+        FrameBufferPool pool = new FrameBufferPool("test", 16, 1);
+        FrameBuffer a = pool.acquire();
+        FrameBuffer b = pool.acquire();
+        a.release();
+        b.release(); // pool already holds a
+        assertSame(a, pool.acquire());
+        assertNotSame(b, pool.acquire());
+        assertEquals(3, pool.getMisses());
+    }
+
+    @Test
+    public void resizeDropsOldBuffers() {
+        FrameBufferPool pool = new FrameBufferPool("test", 16, 2);
+        FrameBuffer pooled = pool.acquire();
+        FrameBuffer inFlight = pool.acquire();
+        pooled.release();
+
+        pool.resize(32);
+        inFlight.release(); // stale size, not taken back
+        FrameBuffer fresh = pool.acquire();
+
+        assertNotSame(pooled, fresh);
+        assertNotSame(inFlight, fresh);
+        assertEquals(32, fresh.getCapacity());
+        assertEquals(32, pool.getBufferSize());
+        assertEquals(1, pool.getInFlight());
+        fresh.release();
+        assertSame(fresh, pool.acquire());
+    }
+
+    @Test
+    public void resizeToSameSizeKeepsBuffers() {
+        FrameBufferPool pool = new FrameBufferPool("test", 16, 2);
+        FrameBuffer buffer = pool.acquire();
+        buffer.release();
+        pool.resize(16);
+        assertSame(buffer, pool.acquire());
+    }
+
+    @Test
+    public void closeCountsBuffersStillInFlightAsLeaked() {
+        FrameBufferPool pool = new FrameBufferPool("test", 16, 2);
+        FrameBuffer kept = pool.acquire();
+        pool.acquire().release();
+
+        pool.close();
+        assertEquals(1, pool.getLeakedCount());
+        assertEquals(0, pool.getInFlight());
+        // A late release after close is harmless
+        kept.release();
+        assertEquals(0, pool.getInFlight());
+        assertEquals(1, pool.getLeakedCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void acquireAfterCloseFails() {
+        FrameBufferPool pool = new FrameBufferPool("test", 16, 2);
+        pool.close();
+        pool.acquire();
+    }
+}
@@ -0,0 +1,144 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FrameRecorderTest {
+
+    @Test
+    public void picksTheChromaLayoutFromThePlanes() throws IOException {
+        // NV21 memory goes in as one VU block, anything else as separate U and V
+        SyntheticPlanes interleaved = SyntheticPlanes.interleaved(64, 48, 16, 1);
+        FrameRecording recording = FrameRecording.open(record(new SyntheticPlanes[] {interleaved}));
+        CameraFrame frame = new CameraFrame();
+        recording.load(0, frame);
+        assertEquals(2, frame.getUvPixelStride());
+        assertTrue(YuvConverter.isVuInterleaved(frame.getUPlane(), frame.getVPlane()));
+        assertArrayEquals(interleaved.expectedNv21(), SyntheticPlanes.nv21(frame));
+
+        SyntheticPlanes strided = SyntheticPlanes.strided(32, 16, 8, 2);
+        recording = FrameRecording.open(record(new SyntheticPlanes[] {strided}));
+        recording.load(0, frame);
+        assertEquals(2, frame.getUvPixelStride());
+        assertFalse(YuvConverter.isVuInterleaved(frame.getUPlane(), frame.getVPlane()));
+        assertArrayEquals(strided.expectedNv21(), SyntheticPlanes.nv21(frame));
+    }
+
+    @Test
+    public void keepsCameraLayoutAndMetadata() throws IOException {
+        SyntheticPlanes interleaved = SyntheticPlanes.interleaved(64, 48, 16, 11);
+        FrameRecording recording = FrameRecording.open(
+                record(new SyntheticPlanes[] {interleaved}));
+        FrameRecording.Frame frame = recording.getFrame(0);
+        assertEquals(33_000_000L, frame.frameDurationNs);
+        assertEquals(interleaved.yRowStride, frame.yRowStride);
+        assertEquals(interleaved.uvRowStride, frame.uvRowStride);
+        assertEquals(2, frame.uvPixelStride);
+        assertEquals(interleaved.y.capacity(), frame.y.remaining());
+        assertEquals(interleaved.u.capacity(), frame.u.remaining());
+    }
+
+    @Test
+    public void captureResultsFillInFramesWrittenWithout() throws IOException {
+        SyntheticPlanes planes = SyntheticPlanes.planar(32, 16, 0, 14);
+        File file = SyntheticPlanes.tempRecording();
+        FrameRecorder recorder = FrameRecorder.open(file, 1 << 20, 2);
+
+        // Result before the image, then one that only comes in after the frame is on disk
+        recorder.onCaptureResult(0, 2_000_000L, 33_000_000L, 200);
+        assertTrue(recorder.submit(bareFrame(planes, 0)));
+        awaitWritten(recorder, 1);
+        assertTrue(recorder.submit(bareFrame(planes, 33_000_000L)));
+        awaitWritten(recorder, 2);
+        recorder.onCaptureResult(33_000_000L, 4_000_000L, 34_000_000L, 400);
+        // Never had a result
+        assertTrue(recorder.submit(bareFrame(planes, 66_000_000L)));
+        recorder.close();
+
+        FrameRecording recording = FrameRecording.open(file);
+        assertEquals(3, recording.getFrameCount());
+        FrameRecording.Frame first = recording.getFrame(0);
+        assertEquals(2_000_000L, first.exposureTimeNs);
+        assertEquals(33_000_000L, first.frameDurationNs);
+        assertEquals(200, first.sensitivity);
+        FrameRecording.Frame second = recording.getFrame(1);
+        assertEquals(4_000_000L, second.exposureTimeNs);
+        assertEquals(34_000_000L, second.frameDurationNs);
+        assertEquals(400, second.sensitivity);
+        FrameRecording.Frame third = recording.getFrame(2);
+        assertEquals(0, third.exposureTimeNs);
+        assertEquals(0, third.sensitivity);
+    }
+
+    @Test
+    public void countsWhatItDrops() throws IOException {
+        SyntheticPlanes planes = SyntheticPlanes.planar(64, 48, 0, 12);
+        int frameBytes = FrameRecording.FRAME_HEADER_SIZE + YuvConverter.i420Size(64, 48);
+        File file = SyntheticPlanes.tempRecording();
+        FrameRecorder recorder = FrameRecorder.open(file, 2L * frameBytes, 4);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(recorder.submit(frame(planes, i)));
+            awaitWritten(recorder, i + 1);
+        }
+        // Different size than the recording, and luma only
+        assertFalse(recorder.submit(frame(SyntheticPlanes.planar(32, 16, 0, 13), 3)));
+        CameraFrame lumaOnly = new CameraFrame();
+        lumaOnly.set(planes.y, 64, null, null, 0, 0, 64, 48, 4);
+        assertFalse(recorder.submit(lumaOnly));
+        recorder.close();
+
+        assertEquals(2, recorder.getRecordedCount());
+        assertEquals(1, recorder.getFileFullDrops());
+        assertEquals(2, recorder.getFormatDrops());
+        assertEquals(0, recorder.getQueueFullDrops());
+        assertEquals(3, recorder.getDroppedCount());
+        assertFalse(recorder.submit(frame(planes, 5)));
+
+        // File is cut to what was written
+        assertEquals(FrameRecording.FILE_HEADER_SIZE + 2L * frameBytes, file.length());
+        assertEquals(2, FrameRecording.open(file).getFrameCount());
+    }
+
+    // Through FrameRecorder, frames 33 ms apart. Layout follows the planes
+    private static File record(SyntheticPlanes[] frames) throws IOException {
+        File file = SyntheticPlanes.tempRecording();
+        FrameRecorder recorder = FrameRecorder.open(file, 1 << 20, 2);
+        for (int i = 0; i < frames.length; i++) {
+            assertTrue(recorder.submit(frame(frames[i], i * 33_000_000L)));
+            // Slots are few, let the writer catch up
+            awaitWritten(recorder, i + 1);
+        }
+        recorder.close();
+        return file;
+    }
+
+    // Written or dropped for a full file, whichever the writer did with them
+    private static void awaitWritten(FrameRecorder recorder, long frames) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (recorder.getRecordedCount() + recorder.getFileFullDrops() < frames) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("writer stalled at " + recorder.getRecordedCount() + " of " + frames + " frames");
+            }
+            Thread.yield();
+        }
+    }
+
+    private static CameraFrame frame(SyntheticPlanes p, long timestampNs) {
+        CameraFrame frame = bareFrame(p, timestampNs);
+        frame.setCaptureMetadata(1_000_000L, 33_000_000L, 100);
+        return frame;
+    }
+
+    // As the camera hands it over when the capture result isn't in yet
+    private static CameraFrame bareFrame(SyntheticPlanes p, long timestampNs) {
+        CameraFrame frame = new CameraFrame();
+        frame.set(p.y, p.yRowStride, p.u, p.v, p.uvRowStride, p.uvPixelStride, p.width, p.height, timestampNs);
+        return frame;
+    }
+}
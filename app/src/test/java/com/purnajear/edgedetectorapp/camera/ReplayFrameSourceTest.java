@@ -0,0 +1,128 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReplayFrameSourceTest {
+
+    @Test
+    public void recordedPlanesComeBackUnchanged() throws IOException {
+        SyntheticPlanes[] frames = {
+                SyntheticPlanes.interleaved(64, 48, 16, 1),
+                SyntheticPlanes.interleaved(64, 48, 16, 2)
+        };
+        FrameRecording recording = FrameRecording.open(write(frames, true));
+        assertEquals(64, recording.getWidth());
+        assertEquals(48, recording.getHeight());
+        assertEquals(2, recording.getFrameCount());
+
+        CameraFrame frame = new CameraFrame();
+        for (int i = 0; i < frames.length; i++) {
+            recording.load(i, frame);
+            assertEquals(i * 33_000_000L, frame.getTimestampNs());
+            assertEquals(80, frame.getYRowStride());
+            assertArrayEquals(frames[i].expectedNv21(), SyntheticPlanes.nv21(frame));
+        }
+        // Still NV21 memory, so the converter's (and native's) fast path applies
+        assertTrue(YuvConverter.isVuInterleaved(frame.getUPlane(), frame.getVPlane()));
+        assertEquals(1_000_000L, recording.getFrame(0).exposureTimeNs);
+        assertEquals(100, recording.getFrame(0).sensitivity);
+    }
+
+    @Test
+    public void planarRecording() throws IOException {
+        SyntheticPlanes planes = SyntheticPlanes.planar(32, 16, 8, 3);
+        FrameRecording recording = FrameRecording.open(write(new SyntheticPlanes[] {planes}, false));
+        CameraFrame frame = new CameraFrame();
+        recording.load(0, frame);
+        assertArrayEquals(planes.expectedNv21(), SyntheticPlanes.nv21(frame));
+    }
+
+    @Test
+    public void replayLoopsUntilMaxFrames() throws Exception {
+        SyntheticPlanes[] frames = {
+                SyntheticPlanes.planar(32, 16, 0, 4),
+                SyntheticPlanes.planar(32, 16, 0, 5),
+                SyntheticPlanes.planar(32, 16, 0, 6)
+        };
+        ReplayFrameSource source = ReplayFrameSource.open(write(frames, false));
+        source.setRealTime(false);
+        source.setMaxFrames(7);
+        List<byte[]> delivered = new ArrayList<>();
+        CountDownLatch finished = new CountDownLatch(1);
+        source.setOnFinished(finished::countDown);
+        source.setFrameCallback(frame -> {
+            CameraFrame copy = source.copyFrame(frame, false);
+            ByteBuffer data = copy.getBackingBuffer().getData();
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            delivered.add(bytes);
+            copy.release();
+        });
+        source.start();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        source.stop();
+
+        assertEquals(7, delivered.size());
+        assertEquals(7, source.getDeliveredFrames());
+        for (int i = 0; i < delivered.size(); i++) {
+            assertArrayEquals("frame " + i, frames[i % 3].expectedNv21(), delivered.get(i));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        File file = SyntheticPlanes.tempRecording();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[256]);
+        }
+        FrameRecording.open(file);
+    }
+
+    // Recording in the FrameRecording layout, frames 33 ms apart
+    private File write(SyntheticPlanes[] frames, boolean interleaved) throws IOException {
+        int size = FrameRecording.FILE_HEADER_SIZE;
+        for (SyntheticPlanes p : frames) {
+            size += FrameRecording.FRAME_HEADER_SIZE + p.y.capacity() + p.u.capacity()
+                    + (interleaved ? 1 : p.v.capacity());
+        }
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(FrameRecording.MAGIC).putInt(FrameRecording.VERSION)
+                .putInt(frames[0].width).putInt(frames[0].height).putInt(frames.length);
+        out.position(FrameRecording.FILE_HEADER_SIZE);
+        for (int i = 0; i < frames.length; i++) {
+            SyntheticPlanes p = frames[i];
+            int start = out.position();
+            int chroma = interleaved ? p.v.capacity() + 1 : p.u.capacity();
+            out.putLong(i * 33_000_000L).putLong(1_000_000L).putLong(33_000_000L).putInt(100)
+                    .putInt(p.yRowStride).putInt(p.uvRowStride).putInt(p.uvPixelStride)
+                    .putInt(interleaved ? FrameRecording.CHROMA_INTERLEAVED_VU : FrameRecording.CHROMA_PLANAR)
+                    .putInt(p.y.capacity()).putInt(chroma).putInt(interleaved ? 0 : p.v.capacity());
+            out.position(start + FrameRecording.FRAME_HEADER_SIZE);
+            out.put(p.y.duplicate());
+            if (interleaved) {
+                out.put(p.v.duplicate());
+                out.put(p.u.get(p.u.capacity() - 1));
+            } else {
+                out.put(p.u.duplicate());
+                out.put(p.v.duplicate());
+            }
+        }
+        File file = SyntheticPlanes.tempRecording();
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(out.array());
+        }
+        return file;
+    }
+}
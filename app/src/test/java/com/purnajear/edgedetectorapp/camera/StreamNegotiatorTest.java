@@ -0,0 +1,100 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreamNegotiatorTest {
+
+    private static final long FRAME_30FPS = 33_333_333L;
+    private static final long FRAME_15FPS = 66_666_666L;
+
+    private static List<StreamNegotiator.StreamOption> options(long fourKMinFrameNs) {
+        return Arrays.asList(
+                new StreamNegotiator.StreamOption(640, 480, FRAME_30FPS),
+                new StreamNegotiator.StreamOption(1280, 720, FRAME_30FPS),
+                new StreamNegotiator.StreamOption(1920, 1080, FRAME_30FPS),
+                new StreamNegotiator.StreamOption(3840, 2160, fourKMinFrameNs));
+    }
+
+    private static String choose(StreamNegotiator negotiator, List<StreamNegotiator.StreamOption> options) {
+        return negotiator.choose(options).toString();
+    }
+
+    @Test
+    public void withoutMeasurementStaysAtDefault() {
+        StreamNegotiator negotiator = new StreamNegotiator(1280, 720);
+        assertFalse(negotiator.hasMeasurement());
+        assertEquals("1280x720", choose(negotiator, options(FRAME_30FPS)));
+    }
+
+    @Test
+    public void largestSizeWithinBudget() {
+        StreamNegotiator negotiator = new StreamNegotiator(1280, 720);
+        // 80% of 33 ms at 10 ns/pixel is 2.67 MP: 1080p fits, 4K doesn't
+        negotiator.setCostNsPerPixel(10);
+        assertEquals("1920x1080", choose(negotiator, options(FRAME_30FPS)));
+
+        negotiator.setCostNsPerPixel(20); // 1.33 MP
+        assertEquals("1280x720", choose(negotiator, options(FRAME_30FPS)));
+
+        negotiator.setCostNsPerPixel(1); // 26.7 MP, everything fits
+        assertEquals("3840x2160", choose(negotiator, options(FRAME_30FPS)));
+    }
+
+    @Test
+    public void sizeTheSensorCantDeliverInTimeIsSkipped() {
+        StreamNegotiator negotiator = new StreamNegotiator(1280, 720);
+        negotiator.setCostNsPerPixel(1);
+        assertEquals("1920x1080", choose(negotiator, options(FRAME_15FPS)));
+    }
+
+    @Test
+    public void tighterBudgetPicksSmaller() {
+        StreamNegotiator negotiator = new StreamNegotiator(1280, 720);
+        negotiator.setCostNsPerPixel(10);
+        negotiator.setFrameBudgetNs(16_666_666L); // 60 fps, 1.33 MP
+        assertEquals("1280x720", choose(negotiator, options(FRAME_30FPS)));
+    }
+
+    @Test
+    public void nothingFitsPicksSmallestWithDefaultAspect() {
+        StreamNegotiator negotiator = new StreamNegotiator(1280, 720);
+        negotiator.setCostNsPerPixel(1000);
+        // 640x480 is smaller but 4:3
+        assertEquals("1280x720", choose(negotiator, options(FRAME_30FPS)));
+    }
+
+    @Test
+    public void otherAspectRatiosWhenDefaultIsMissing() {
+        StreamNegotiator negotiator = new StreamNegotiator(1280, 720);
+        List<StreamNegotiator.StreamOption> fourThree = Arrays.asList(
+                new StreamNegotiator.StreamOption(640, 480, FRAME_30FPS),
+                new StreamNegotiator.StreamOption(800, 600, FRAME_30FPS));
+        // Closest in pixel count to the default
+        assertEquals("800x600", choose(negotiator, fourThree));
+    }
+
+    @Test
+    public void noOptionsFallsBackToDefault() {
+        StreamNegotiator negotiator = new StreamNegotiator(1280, 720);
+        assertEquals("1280x720", choose(negotiator, Collections.emptyList()));
+        assertEquals("1280x720", choose(negotiator, null));
+    }
+
+    @Test
+    public void costIsSmoothedOverReports() {
+        StreamNegotiator negotiator = new StreamNegotiator(1280, 720);
+        negotiator.reportProcessingTime(10_000_000L, 1000, 1000); // 10 ns/pixel
+        assertEquals(10.0, negotiator.getCostNsPerPixel(), 1e-9);
+        negotiator.reportProcessingTime(20_000_000L, 1000, 1000); // 20, moves 10% of the way
+        assertEquals(11.0, negotiator.getCostNsPerPixel(), 1e-9);
+        negotiator.reportProcessingTime(0, 1000, 1000); // ignored
+        assertEquals(2, negotiator.getSampleCount());
+        assertEquals(11_000_000L, negotiator.predictProcessingNs(1000, 1000));
+    }
+}
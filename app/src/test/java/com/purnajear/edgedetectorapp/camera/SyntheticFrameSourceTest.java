@@ -0,0 +1,70 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SyntheticFrameSourceTest {
+
+    @Test
+    public void framesAreWindowsOfThePanningScene() {
+        int width = 640;
+        int height = 480;
+        int margin = 14; // min(640, 480) / 32, even
+        SyntheticFrameSource source = new SyntheticFrameSource(width, height, 30);
+        byte[] scene = luma(SyntheticFrameSource.createScene(width, height));
+
+        // First frame sits at the right edge of the pan circle, a margin to the right of the scene
+        CameraFrame frame = new CameraFrame();
+        source.loadFrame(0, frame);
+        byte[] first = luma(frame);
+        for (int r = 0; r < height; r += 7) {
+            for (int c = 0; c < width - margin; c += 5) {
+                assertEquals("(" + r + "," + c + ")", scene[r * width + c + margin], first[r * width + c]);
+            }
+        }
+
+        source.loadFrame(15, frame);
+        assertFalse(Arrays.equals(first, luma(frame)));
+        assertEquals(15 * (1_000_000_000L / 30), frame.getTimestampNs());
+
+        // Deterministic
+        CameraFrame again = new CameraFrame();
+        new SyntheticFrameSource(width, height, 30).loadFrame(0, again);
+        assertArrayEquals(first, luma(again));
+    }
+
+    @Test
+    public void restartsAfterARunThatEndedByItself() throws InterruptedException {
+        SyntheticFrameSource source = new SyntheticFrameSource(64, 48, 30);
+        source.setRealTime(false);
+        source.setMaxFrames(3);
+        AtomicInteger copies = new AtomicInteger();
+        source.setFrameCallback(frame -> {
+            source.copyFrame(frame, true).release();
+            copies.incrementAndGet();
+        });
+
+        for (int run = 1; run <= 2; run++) {
+            CountDownLatch done = new CountDownLatch(1);
+            source.setOnFinished(done::countDown);
+            source.start();
+            assertTrue("run " + run + " never finished", done.await(5, TimeUnit.SECONDS));
+            assertEquals(3, source.getDeliveredFrames());
+        }
+        source.stop();
+        assertEquals(6, copies.get());
+    }
+
+    private static byte[] luma(CameraFrame frame) {
+        ByteBuffer out = ByteBuffer.allocate(frame.getWidth() * frame.getHeight());
+        new YuvConverter().toLuma(frame, out);
+        return out.array();
+    }
+}
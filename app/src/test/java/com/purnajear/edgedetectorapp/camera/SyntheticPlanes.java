@@ -0,0 +1,143 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Fake YUV_420_888 planes laid out the way Camera2 devices hand them out,
+ * for converter and recording tests and benchmarks.
+ */
+class SyntheticPlanes {
+    final int width;
+    final int height;
+    final int yRowStride;
+    final int uvRowStride;
+    final int uvPixelStride;
+    final ByteBuffer y;
+    final ByteBuffer u;
+    final ByteBuffer v;
+
+    // Expected tightly packed values
+    final byte[] yRef;
+    final byte[] uRef;
+    final byte[] vRef;
+
+    private SyntheticPlanes(int width, int height, int yRowStride, int uvRowStride, int uvPixelStride,
+                            ByteBuffer y, ByteBuffer u, ByteBuffer v, byte[] yRef, byte[] uRef, byte[] vRef) {
+        this.width = width;
+        this.height = height;
+        this.yRowStride = yRowStride;
+        this.uvRowStride = uvRowStride;
+        this.uvPixelStride = uvPixelStride;
+        this.y = y;
+        this.u = u;
+        this.v = v;
+        this.yRef = yRef;
+        this.uRef = uRef;
+        this.vRef = vRef;
+    }
+
+    /** Semi-planar: V and U are two views of one VUVU buffer (typical Qualcomm/Exynos layout). */
+    static SyntheticPlanes interleaved(int width, int height, int rowPadding, long seed) {
+        return build(width, height, rowPadding, 2, true, seed);
+    }
+
+    /** Pixel stride 2 but the planes are separate allocations. */
+    static SyntheticPlanes strided(int width, int height, int rowPadding, long seed) {
+        return build(width, height, rowPadding, 2, false, seed);
+    }
+
+    /** Fully planar I420-style planes. */
+    static SyntheticPlanes planar(int width, int height, int rowPadding, long seed) {
+        return build(width, height, rowPadding, 1, false, seed);
+    }
+
+    private static SyntheticPlanes build(int width, int height, int rowPadding, int pixelStride,
+                                         boolean interleaved, long seed) {
+        Random random = new Random(seed);
+        int cw = width / 2;
+        int ch = height / 2;
+
+        byte[] yRef = new byte[width * height];
+        byte[] uRef = new byte[cw * ch];
+        byte[] vRef = new byte[cw * ch];
+        random.nextBytes(yRef);
+        random.nextBytes(uRef);
+        random.nextBytes(vRef);
+
+        int yRowStride = width + rowPadding;
+        ByteBuffer y = ByteBuffer.allocateDirect(yRowStride * (height - 1) + width);
+        for (int row = 0; row < height; row++) {
+            y.position(row * yRowStride);
+            y.put(yRef, row * width, width);
+        }
+        y.clear();
+
+        int uvRowStride = cw * pixelStride + rowPadding;
+        // Camera2 plane buffers end right after the last sample
+        int planeSize = uvRowStride * (ch - 1) + (cw - 1) * pixelStride + 1;
+        ByteBuffer u;
+        ByteBuffer v;
+        if (interleaved) {
+            ByteBuffer vu = ByteBuffer.allocateDirect(planeSize + 1);
+            for (int row = 0; row < ch; row++) {
+                for (int col = 0; col < cw; col++) {
+                    int idx = row * uvRowStride + col * 2;
+                    vu.put(idx, vRef[row * cw + col]);
+                    vu.put(idx + 1, uRef[row * cw + col]);
+                }
+            }
+            vu.limit(planeSize);
+            v = vu.slice();
+            vu.clear();
+            vu.position(1);
+            u = vu.slice();
+        } else {
+            u = ByteBuffer.allocateDirect(planeSize);
+            v = ByteBuffer.allocateDirect(planeSize);
+            for (int row = 0; row < ch; row++) {
+                for (int col = 0; col < cw; col++) {
+                    int idx = row * uvRowStride + col * pixelStride;
+                    u.put(idx, uRef[row * cw + col]);
+                    v.put(idx, vRef[row * cw + col]);
+                }
+            }
+        }
+
+        return new SyntheticPlanes(width, height, yRowStride, uvRowStride, pixelStride, y, u, v, yRef, uRef, vRef);
+    }
+
+    byte[] expectedNv21() {
+        byte[] out = new byte[YuvConverter.nv21Size(width, height)];
+        System.arraycopy(yRef, 0, out, 0, yRef.length);
+        for (int i = 0, o = yRef.length; i < uRef.length; i++) {
+            out[o++] = vRef[i];
+            out[o++] = uRef[i];
+        }
+        return out;
+    }
+
+    byte[] expectedI420() {
+        byte[] out = new byte[YuvConverter.i420Size(width, height)];
+        System.arraycopy(yRef, 0, out, 0, yRef.length);
+        System.arraycopy(uRef, 0, out, yRef.length, uRef.length);
+        System.arraycopy(vRef, 0, out, yRef.length + uRef.length, vRef.length);
+        return out;
+    }
+
+    /** What a frame holds, packed as NV21 - compare with expectedNv21(). */
+    static byte[] nv21(CameraFrame frame) {
+        ByteBuffer out = ByteBuffer.allocate(YuvConverter.nv21Size(frame.getWidth(), frame.getHeight()));
+        new YuvConverter().toNv21(frame, out);
+        return out.array();
+    }
+
+    /** Somewhere to write a recording of these planes, deleted when the JVM exits. */
+    static File tempRecording() throws IOException {
+        File file = File.createTempFile("recording", ".frames");
+        file.deleteOnExit();
+        return file;
+    }
+}
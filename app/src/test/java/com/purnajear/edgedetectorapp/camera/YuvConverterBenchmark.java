@@ -0,0 +1,58 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Plain JVM benchmark for {@link YuvConverter}. Not a unit test - run main() from the IDE
+ * or with the test classpath. Prints conversion cost per frame and per megapixel for
+ * each plane layout at VGA, 720p and 1080p.
+ */
+public class YuvConverterBenchmark {
+
+    private static final int[][] SIZES = {{640, 480}, {1280, 720}, {1920, 1080}};
+    private static final int WARMUP_FRAMES = 200;
+    private static final int MEASURE_FRAMES = 500;
+
+    public static void main(String[] args) {
+        YuvConverter converter = new YuvConverter();
+        System.out.println("layout        size        target  ms/frame  ms/MP");
+        for (int[] size : SIZES) {
+            int w = size[0];
+            int h = size[1];
+            // 64 bytes of row padding is common on real devices
+            run(converter, "interleaved", SyntheticPlanes.interleaved(w, h, 64, 1));
+            run(converter, "strided", SyntheticPlanes.strided(w, h, 64, 2));
+            run(converter, "planar", SyntheticPlanes.planar(w, h, 32, 3));
+        }
+    }
+
+    private static void run(YuvConverter converter, String layout, SyntheticPlanes p) {
+        ByteBuffer dst = ByteBuffer.allocateDirect(YuvConverter.nv21Size(p.width, p.height));
+        report(layout, p, "NV21", time(() -> {
+            dst.clear();
+            converter.toNv21(p.y, p.yRowStride, p.u, p.v, p.uvRowStride, p.uvPixelStride, p.width, p.height, dst);
+        }));
+        report(layout, p, "I420", time(() -> {
+            dst.clear();
+            converter.toI420(p.y, p.yRowStride, p.u, p.v, p.uvRowStride, p.uvPixelStride, p.width, p.height, dst);
+        }));
+    }
+
+    private static double time(Runnable convert) {
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            convert.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_FRAMES; i++) {
+            convert.run();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / MEASURE_FRAMES;
+    }
+
+    private static void report(String layout, SyntheticPlanes p, String target, double msPerFrame) {
+        double megapixels = p.width * p.height / 1_000_000.0;
+        System.out.println(String.format(Locale.US, "%-12s  %4dx%-5d  %-6s  %8.3f  %5.3f",
+                layout, p.width, p.height, target, msPerFrame, msPerFrame / megapixels));
+    }
+}
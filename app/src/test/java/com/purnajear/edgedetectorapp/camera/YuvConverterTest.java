@@ -0,0 +1,118 @@
+package com.purnajear.edgedetectorapp.camera;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class YuvConverterTest {
+
+    private final YuvConverter converter = new YuvConverter();
+
+    private byte[] nv21(SyntheticPlanes p) {
+        ByteBuffer dst = ByteBuffer.allocate(YuvConverter.nv21Size(p.width, p.height));
+        converter.toNv21(p.y, p.yRowStride, p.u, p.v, p.uvRowStride, p.uvPixelStride, p.width, p.height, dst);
+        assertEquals(0, dst.remaining());
+        return dst.array();
+    }
+
+    private byte[] i420(SyntheticPlanes p) {
+        ByteBuffer dst = ByteBuffer.allocate(YuvConverter.i420Size(p.width, p.height));
+        converter.toI420(p.y, p.yRowStride, p.u, p.v, p.uvRowStride, p.uvPixelStride, p.width, p.height, dst);
+        assertEquals(0, dst.remaining());
+        return dst.array();
+    }
+
+    @Test
+    public void nv21_interleavedPlanes() {
+        SyntheticPlanes p = SyntheticPlanes.interleaved(64, 48, 0, 1);
+        assertTrue(YuvConverter.isVuInterleaved(p.u, p.v));
+        assertArrayEquals(p.expectedNv21(), nv21(p));
+    }
+
+    @Test
+    public void nv21_interleavedPlanesWithRowPadding() {
+        SyntheticPlanes p = SyntheticPlanes.interleaved(64, 48, 32, 2);
+        assertArrayEquals(p.expectedNv21(), nv21(p));
+    }
+
+    @Test
+    public void nv21_separateStridedPlanes() {
+        SyntheticPlanes p = SyntheticPlanes.strided(64, 48, 16, 3);
+        assertFalse(YuvConverter.isVuInterleaved(p.u, p.v));
+        assertArrayEquals(p.expectedNv21(), nv21(p));
+    }
+
+    @Test
+    public void separatePlanesWithEqualBytesAreStillSeparate() {
+        // Flat chroma: V[1] == U[0] on separate planes passes the read-only check
+        ByteBuffer u = ByteBuffer.allocateDirect(16);
+        ByteBuffer v = ByteBuffer.allocateDirect(16);
+        for (int i = 0; i < 16; i++) {
+            u.put(i, (byte) 128);
+            v.put(i, (byte) 128);
+        }
+        assertFalse(YuvConverter.isVuInterleaved(u, v));
+        assertEquals((byte) 128, v.get(1));
+    }
+
+    @Test
+    public void layoutIsProbedOncePerStreamConfiguration() {
+        SyntheticPlanes p = SyntheticPlanes.interleaved(64, 48, 0, 11);
+        assertTrue(converter.isVuInterleaved(p.u, p.v, p.width, p.height, p.uvRowStride));
+        // Read-only views can't be probed, so this only passes on the cached answer
+        ByteBuffer u = p.u.asReadOnlyBuffer();
+        ByteBuffer v = p.v.asReadOnlyBuffer();
+        assertFalse(YuvConverter.isVuInterleaved(u, v));
+        assertTrue(converter.isVuInterleaved(u, v, p.width, p.height, p.uvRowStride));
+        // A new configuration is probed again
+        assertFalse(converter.isVuInterleaved(u, v, p.width, p.height, p.uvRowStride + 2));
+    }
+
+    @Test
+    public void nv21_planar() {
+        SyntheticPlanes p = SyntheticPlanes.planar(64, 48, 8, 4);
+        assertArrayEquals(p.expectedNv21(), nv21(p));
+    }
+
+    @Test
+    public void i420_allLayouts() {
+        assertArrayEquals(SyntheticPlanes.interleaved(32, 16, 8, 5).expectedI420(),
+                i420(SyntheticPlanes.interleaved(32, 16, 8, 5)));
+        assertArrayEquals(SyntheticPlanes.strided(32, 16, 0, 6).expectedI420(),
+                i420(SyntheticPlanes.strided(32, 16, 0, 6)));
+        assertArrayEquals(SyntheticPlanes.planar(32, 16, 0, 7).expectedI420(),
+                i420(SyntheticPlanes.planar(32, 16, 0, 7)));
+    }
+
+    @Test
+    public void sourceBuffersAreLeftUntouched() {
+        SyntheticPlanes p = SyntheticPlanes.interleaved(32, 16, 8, 8);
+        int yLimit = p.y.limit();
+        int vLimit = p.v.limit();
+        nv21(p);
+        assertEquals(0, p.y.position());
+        assertEquals(yLimit, p.y.limit());
+        assertEquals(0, p.v.position());
+        assertEquals(vLimit, p.v.limit());
+        // Probe byte restored
+        assertArrayEquals(p.expectedNv21(), nv21(p));
+    }
+
+    @Test
+    public void luma_stripsRowPadding() {
+        SyntheticPlanes p = SyntheticPlanes.interleaved(64, 48, 32, 10);
+        ByteBuffer dst = ByteBuffer.allocate(64 * 48);
+        converter.toLuma(p.y, p.yRowStride, p.width, p.height, dst);
+        assertEquals(0, dst.remaining());
+        assertArrayEquals(p.yRef, dst.array());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSmallOutput() {
+        SyntheticPlanes p = SyntheticPlanes.planar(32, 16, 0, 9);
+        converter.toNv21(p.y, p.yRowStride, p.u, p.v, p.uvRowStride, p.uvPixelStride, p.width, p.height,
+                ByteBuffer.allocate(10));
+    }
+}
@@ -0,0 +1,98 @@
+package com.purnajear.edgedetectorapp.gl;
+
+import com.purnajear.edgedetectorapp.camera.FrameBuffer;
+import com.purnajear.edgedetectorapp.camera.FrameBufferPool;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class OutputFrameTest {
+
+    @Test
+    public void formatSizes() {
+        assertEquals(640 * 480 * 4, OutputFrame.Format.RGBA.size(640, 480));
+        assertEquals(640 * 480 * 3 / 2, OutputFrame.Format.NV21.size(640, 480));
+        assertEquals(640 * 480, OutputFrame.Format.EDGES.size(640, 480));
+    }
+
+    @Test
+    public void prepare_reusesBufferWhenItFits() {
+        OutputFrame frame = new OutputFrame();
+        frame.prepare(640, 480, OutputFrame.Format.RGBA, 1);
+        ByteBuffer rgba = frame.getData();
+
+        // Edge map is a quarter of the RGBA frame, same buffer
+        frame.prepare(640, 480, OutputFrame.Format.EDGES, 2);
+        assertSame(rgba, frame.getData());
+        assertEquals(OutputFrame.Format.EDGES, frame.getFormat());
+        assertEquals(2, frame.getCaptureTimeNs());
+
+        // Back to RGBA still fits
+        frame.prepare(640, 480, OutputFrame.Format.RGBA, 3);
+        assertSame(rgba, frame.getData());
+    }
+
+    @Test
+    public void prepare_growsForLargerFrame() {
+        OutputFrame frame = new OutputFrame();
+        frame.prepare(320, 240, OutputFrame.Format.EDGES, 0);
+        ByteBuffer small = frame.getData();
+        assertTrue(small.isDirect());
+
+        frame.prepare(320, 240, OutputFrame.Format.RGBA, 0);
+        assertNotSame(small, frame.getData());
+        assertTrue(frame.getData().capacity() >= 320 * 240 * 4);
+    }
+
+    @Test
+    public void overlay_holdsOnlyTheEdgeMap() {
+        OutputFrame frame = new OutputFrame();
+        frame.prepare(640, 480, OutputFrame.Format.OVERLAY, 0);
+        assertEquals(640 * 480, frame.getData().capacity());
+        assertEquals(640, frame.getEdgeWidth());
+
+        frame.setEdgeSize(320, 240);
+        assertEquals(320, frame.getEdgeWidth());
+
+        // Next prepare resets the edge size
+        frame.prepare(640, 480, OutputFrame.Format.EDGES, 0);
+        assertEquals(480, frame.getEdgeHeight());
+    }
+
+    @Test
+    public void overlay_keepsThePooledCameraFrameUntilReleased() {
+        FrameBufferPool pool = new FrameBufferPool("test", 64, 2);
+        FrameBuffer camera = pool.acquire();
+        OutputFrame frame = new OutputFrame();
+        frame.prepare(8, 4, OutputFrame.Format.OVERLAY, 0);
+        frame.setCamera(camera);
+
+        // The processing side lets go, the slot still holds it
+        camera.release();
+        assertEquals(1, pool.getInFlight());
+        assertSame(camera, frame.getCamera());
+
+        frame.releaseCamera();
+        assertNull(frame.getCamera());
+        assertEquals(0, pool.getInFlight());
+        frame.releaseCamera();
+        assertEquals(0, pool.getInFlight());
+    }
+
+    @Test
+    public void prepare_dropsACameraFrameThatWasNeverDrawn() {
+        FrameBufferPool pool = new FrameBufferPool("test", 64, 2);
+        FrameBuffer camera = pool.acquire();
+        OutputFrame frame = new OutputFrame();
+        frame.prepare(8, 4, OutputFrame.Format.OVERLAY, 0);
+        frame.setCamera(camera);
+        camera.release();
+
+        frame.prepare(8, 4, OutputFrame.Format.EDGES, 1);
+        assertNull(frame.getCamera());
+        assertEquals(0, pool.getInFlight());
+    }
+}
@@ -0,0 +1,65 @@
+package com.purnajear.edgedetectorapp.gl;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class YuvToRgbTest {
+
+    private static void assertRgb(int r, int g, int b, int actual) {
+        assertEquals("red", r, (actual >> 16) & 0xFF, 1);
+        assertEquals("green", g, (actual >> 8) & 0xFF, 1);
+        assertEquals("blue", b, actual & 0xFF, 1);
+    }
+
+    @Test
+    public void neutralChromaIsGrey() {
+        for (int y = 0; y < 256; y += 15) {
+            assertRgb(y, y, y, YuvToRgb.toRgb(y, 128, 128));
+        }
+    }
+
+    @Test
+    public void primariesRoundTrip() {
+        // Full-range BT.601 encodings of pure red, green and blue
+        assertRgb(255, 0, 0, YuvToRgb.toRgb(76, 85, 255));
+        assertRgb(0, 255, 0, YuvToRgb.toRgb(150, 44, 21));
+        assertRgb(0, 0, 255, YuvToRgb.toRgb(29, 255, 107));
+    }
+
+    @Test
+    public void outOfGamutValuesClamp() {
+        int bright = YuvToRgb.toRgb(255, 255, 255);
+        assertEquals(255, (bright >> 16) & 0xFF); // red clamps at 255
+        assertEquals(255, bright & 0xFF);         // blue clamps at 255
+        int dark = YuvToRgb.toRgb(0, 0, 0);
+        assertEquals(0, (dark >> 16) & 0xFF);
+        assertEquals(0, dark & 0xFF);
+    }
+
+    @Test
+    public void nv21_chromaSharedPer2x2Block() {
+        int width = 4;
+        int height = 2;
+        ByteBuffer nv21 = ByteBuffer.allocate(width * height * 3 / 2);
+        byte[] luma = {10, 20, 30, 40, 50, 60, 70, (byte) 200};
+        nv21.put(luma);
+        nv21.put(new byte[]{(byte) 200, 60, (byte) 128, (byte) 128}); // V,U for each block
+        ByteBuffer rgba = ByteBuffer.allocate(width * height * 4);
+
+        YuvToRgb.nv21ToRgba(nv21, width, height, rgba);
+
+        assertEquals(0, rgba.remaining());
+        for (int i = 0; i < luma.length; i++) {
+            int col = i % width;
+            int v = col < 2 ? 200 : 128;
+            int u = col < 2 ? 60 : 128;
+            int expected = YuvToRgb.toRgb(luma[i] & 0xFF, u, v);
+            assertEquals(expected, ((rgba.get(i * 4) & 0xFF) << 16)
+                    | ((rgba.get(i * 4 + 1) & 0xFF) << 8) | (rgba.get(i * 4 + 2) & 0xFF));
+            assertEquals((byte) 0xFF, rgba.get(i * 4 + 3));
+        }
+    }
+}
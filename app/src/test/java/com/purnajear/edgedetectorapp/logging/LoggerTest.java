@@ -0,0 +1,59 @@
+package com.purnajear.edgedetectorapp.logging;
+
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LoggerTest {
+
+    private final int savedInterval = Logger.getDiagnosticInterval();
+
+    @After
+    public void restore() {
+        Logger.setDiagnosticInterval(savedInterval);
+    }
+
+    @Test
+    public void levelPerTagOverridesDefault() {
+        Logger quiet = Logger.get("LoggerTestQuiet");
+        Logger other = Logger.get("LoggerTestOther");
+        assertSame(quiet, Logger.get("LoggerTestQuiet"));
+        Logger.setLevel("LoggerTestQuiet", Log.ERROR);
+        assertFalse(quiet.isLoggable(Log.WARN));
+        assertTrue(quiet.isLoggable(Log.ERROR));
+        // Untouched tags follow the build's default (tests see a debug build)
+        assertEquals(Logger.DEBUG_BUILD, other.isDebug());
+        assertTrue(other.isLoggable(Log.INFO));
+        assertFalse(other.isVerbose());
+    }
+
+    @Test
+    public void samplerPassesEveryNthFrame() {
+        FrameSampler sampler = new FrameSampler(Logger.get("LoggerTestSampler"), Log.INFO);
+        Logger.setDiagnosticInterval(4);
+        int passed = 0;
+        for (int frame = 0; frame < 40; frame++) {
+            if (sampler.sample()) {
+                assertEquals(0, frame % 4);
+                passed++;
+            }
+        }
+        assertEquals(10, passed);
+
+        Logger.setDiagnosticInterval(0);
+        for (int frame = 0; frame < 40; frame++) {
+            assertFalse(sampler.sample());
+        }
+    }
+
+    @Test
+    public void samplerRespectsLevel() {
+        Logger.setLevel("LoggerTestSilenced", Log.WARN);
+        FrameSampler sampler = new FrameSampler(Logger.get("LoggerTestSilenced"), Log.DEBUG);
+        Logger.setDiagnosticInterval(1);
+        assertFalse(sampler.sample());
+    }
+}
@@ -0,0 +1,62 @@
+package com.purnajear.edgedetectorapp.logging;
+
+import android.util.Log;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateLimitedLogTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void burstThenRefillRate() {
+        RateLimitedLog site = new RateLimitedLog(Logger.get("RateTest"), 2, 3);
+        long now = 1000 * SECOND;
+        assertTrue(site.tryAcquire(now));
+        assertTrue(site.tryAcquire(now));
+        assertTrue(site.tryAcquire(now));
+        assertFalse(site.tryAcquire(now));
+        // One token every half second
+        assertFalse(site.tryAcquire(now + SECOND / 4));
+        assertTrue(site.tryAcquire(now + SECOND / 2));
+        assertFalse(site.tryAcquire(now + SECOND / 2));
+        // Idle long enough and the whole burst is back, not more
+        long later = now + 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(site.tryAcquire(later));
+        }
+        assertFalse(site.tryAcquire(later));
+    }
+
+    @Test
+    public void worksAcrossNegativeNanoTime() {
+        // System.nanoTime() may be anywhere, including negative
+        RateLimitedLog site = new RateLimitedLog(Logger.get("RateTest"), 1, 1);
+        assertTrue(site.tryAcquire(-5 * SECOND));
+        assertFalse(site.tryAcquire(-5 * SECOND + 1));
+        assertTrue(site.tryAcquire(-4 * SECOND));
+    }
+
+    @Test
+    public void countsSuppressedAndResetsWhenLogged() {
+        RateLimitedLog site = new RateLimitedLog(Logger.get("RateTest"), 0.001, 1);
+        assertTrue(site.allow(Log.ERROR));
+        for (int i = 0; i < 5; i++) {
+            assertFalse(site.allow(Log.ERROR));
+        }
+        assertEquals(5, site.getSuppressedCount());
+        site.e("boom", null);
+        assertEquals(0, site.getSuppressedCount());
+    }
+
+    @Test
+    public void filteredLevelsNeitherPassNorCount() {
+        Logger.setLevel("RateQuiet", Log.WARN);
+        RateLimitedLog site = new RateLimitedLog(Logger.get("RateQuiet"), 1000, 10);
+        assertFalse(site.allow(Log.DEBUG));
+        assertEquals(0, site.getSuppressedCount());
+        assertTrue(site.allow(Log.WARN));
+    }
+}
@@ -0,0 +1,43 @@
+package com.purnajear.edgedetectorapp.metrics;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FrameMetricsTest {
+
+    @Test
+    public void jsonHasEveryStage() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.record(FrameMetrics.Stage.PROCESS, 4_000_000L);
+        String json = metrics.toJson();
+
+        assertTrue(json, json.startsWith("{\"stages\":{\"sensor_to_acquire\":{\"count\":0,"));
+        assertTrue(json, json.contains("\"process\":{\"count\":1,\"mean_ms\":4.000,"));
+        assertTrue(json, json.contains("\"max_ms\":4.000}"));
+        for (FrameMetrics.Stage stage : FrameMetrics.Stage.values()) {
+            assertTrue(stage.key, json.contains("\"" + stage.key + "\":{"));
+        }
+        assertTrue(json, json.endsWith("}}}"));
+    }
+
+    @Test
+    public void overlayShowsStagesWithFrames() {
+        FrameMetrics metrics = new FrameMetrics();
+        Map<FrameMetrics.Stage, LatencyHistogram.Snapshot> before = metrics.snapshot();
+        metrics.record(FrameMetrics.Stage.UPLOAD, 1_000_000L);
+        metrics.record(FrameMetrics.Stage.END_TO_END, 40_000_000L);
+        Map<FrameMetrics.Stage, LatencyHistogram.Snapshot> window = FrameMetrics.since(metrics.snapshot(), before);
+
+        String detailed = FrameMetrics.format(window, false);
+        assertEquals(2, detailed.split("\n").length);
+        assertTrue(detailed, detailed.startsWith("Upload "));
+        assertFalse(detailed, detailed.contains("Process"));
+
+        String compact = FrameMetrics.format(window, true);
+        assertTrue(compact, compact.startsWith("Capture->draw"));
+        assertTrue(compact, compact.contains("40.0/ 40.0/ 40.0/ 40.0 ms"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.purnajear.edgedetectorapp.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndNarrow() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+            long lower = LatencyHistogram.lowerBound(i);
+            long upper = LatencyHistogram.upperBound(i);
+            assertEquals(i, LatencyHistogram.bucketOf(lower));
+            assertEquals(i, LatencyHistogram.bucketOf(upper));
+            assertEquals(upper + 1, LatencyHistogram.lowerBound(i + 1));
+            // Never wider than 1/16 of where it starts
+            assertTrue("bucket " + i, upper - lower <= Math.max(0, lower / 16));
+        }
+    }
+
+    @Test
+    public void percentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1..1000 ms
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        LatencyHistogram.Snapshot s = histogram.snapshot();
+        assertEquals(1000, s.getCount());
+        assertEquals(1_000_000_000L, s.getMaxNs());
+        assertEquals(500.5e6, s.getMeanNs(), 1);
+        assertNear(500e6, s.getValueAtQuantile(0.50));
+        assertNear(950e6, s.getValueAtQuantile(0.95));
+        assertNear(990e6, s.getValueAtQuantile(0.99));
+        assertEquals(1_000_000_000L, s.getValueAtQuantile(1.0));
+        // Reported as the top of the bucket, so never below the true value
+        assertTrue(s.getValueAtQuantile(0.50) >= 500_000_000L);
+    }
+
+    private static void assertNear(double expected, long actual) {
+        assertTrue("expected ~" + expected + ", got " + actual, Math.abs(actual - expected) <= expected / 16);
+    }
+
+    @Test
+    public void emptyAndNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getValueAtQuantile(0.99));
+        histogram.record(-5);
+        assertEquals(1, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getMaxNs());
+    }
+
+    @Test
+    public void windowBetweenSnapshots() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(50_000_000L);
+        }
+        LatencyHistogram.Snapshot before = histogram.snapshot();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(2_000_000L);
+        }
+        LatencyHistogram.Snapshot window = histogram.snapshot().since(before);
+
+        assertEquals(10, window.getCount());
+        assertEquals(2_000_000, window.getMeanNs(), 1);
+        assertNear(2e6, window.getValueAtQuantile(0.99));
+        assertNear(2e6, window.getMaxNs());
+        assertEquals(0, histogram.snapshot().since(histogram.snapshot()).getCount());
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long base = (t + 1) * 1000L;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.record(base + i % 100);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        LatencyHistogram.Snapshot s = histogram.snapshot();
+        assertEquals(200_000, s.getCount());
+        assertEquals(4099, s.getMaxNs());
+    }
+}
@@ -0,0 +1,64 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EngineBenchmarkTest {
+
+    // Java engine with the first row of edges forced to 255
+    private static class DamagedProcessor implements FrameProcessor {
+        final JavaFrameProcessor engine = new JavaFrameProcessor();
+
+        @Override
+        public String getName() {
+            return "damaged";
+        }
+
+        @Override
+        public void setState(boolean edgeDetection, int lowThreshold, int ratio, boolean l2Gradient) {
+            engine.setState(edgeDetection, lowThreshold, ratio, l2Gradient);
+        }
+
+        @Override
+        public int process(CameraFrame frame, int downscale, boolean lumaOnly, ByteBuffer output,
+                           int outputOffset, Stats stats) {
+            int result = engine.process(frame, downscale, lumaOnly, output, outputOffset, stats);
+            for (int c = 0; c < frame.getWidth(); c++) {
+                output.put(outputOffset + c, (byte) 255);
+            }
+            return result;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    @Test
+    public void comparesEveryEngineWithTheFirst() {
+        List<EngineBenchmark.Result> results = new EngineBenchmark(0, 1).run(
+                Arrays.asList(new JavaFrameProcessor(), new JavaFrameProcessor(), new DamagedProcessor(),
+                        new PassthroughFrameProcessor()),
+                new int[][] {{320, 240}});
+
+        assertEquals(4, results.size());
+        assertEquals(-1, results.get(0).differingPixels);
+        assertEquals(0, results.get(1).differingPixels);
+        // Scene has no edges in the top row
+        assertEquals(320, results.get(2).differingPixels);
+        // Passthrough doesn't do edges
+        assertTrue(Double.isNaN(results.get(3).frameMs));
+        assertEquals(-1, results.get(3).differingPixels);
+
+        String report = EngineBenchmark.format(results);
+        assertTrue(report, report.startsWith("320x240 java: "));
+        assertTrue(report, report.contains("320 pixels differ from java"));
+    }
+}
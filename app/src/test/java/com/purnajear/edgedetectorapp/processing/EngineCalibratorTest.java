@@ -0,0 +1,133 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class EngineCalibratorTest {
+
+    // Sleeps a fixed time per frame, or fails
+    private static class FakeProcessor implements FrameProcessor {
+        final String name;
+        final long sleepMs;
+        final boolean fails;
+        boolean released;
+
+        FakeProcessor(String name, long sleepMs, boolean fails) {
+            this.name = name;
+            this.sleepMs = sleepMs;
+            this.fails = fails;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void setState(boolean edgeDetection, int lowThreshold, int ratio, boolean l2Gradient) {
+        }
+
+        @Override
+        public int process(CameraFrame frame, int downscale, boolean lumaOnly, ByteBuffer output,
+                           int outputOffset, Stats stats) {
+            if (fails) {
+                throw new RuntimeException("broken engine");
+            }
+            try {
+                Thread.sleep(sleepMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return OUTPUT_EDGES;
+        }
+
+        @Override
+        public void release() {
+            released = true;
+        }
+    }
+
+    @Test
+    public void picksFastestAndReleasesTheRest() {
+        FakeProcessor slow = new FakeProcessor("slow", 6, false);
+        FakeProcessor fast = new FakeProcessor("fast", 1, false);
+        FakeProcessor broken = new FakeProcessor("broken", 0, true);
+        EngineCalibrator calibrator = new EngineCalibrator(1, 3);
+
+        FrameProcessor best = calibrator.pickFastest(Arrays.asList(slow, broken, fast));
+
+        assertSame(fast, best);
+        assertFalse(fast.released);
+        assertTrue(slow.released);
+        assertTrue(broken.released);
+        assertTrue(Double.isNaN(calibrator.getResults().get("broken")));
+        assertTrue(calibrator.getResults().get("slow") > calibrator.getResults().get("fast"));
+    }
+
+    @Test
+    public void noWorkingEngine_returnsNull() {
+        FakeProcessor broken = new FakeProcessor("broken", 0, true);
+        assertNull(new EngineCalibrator(0, 1).pickFastest(Arrays.asList(broken)));
+        assertTrue(broken.released);
+    }
+
+    @Test
+    public void passthroughDoesNotCountAsEdgeEngine() {
+        EngineCalibrator calibrator = new EngineCalibrator(0, 1);
+        assertTrue(Double.isNaN(calibrator.measure(new PassthroughFrameProcessor(), EngineCalibrator.createScene())));
+    }
+
+    @Test
+    public void scene_javaEngineFindsTheShapes() {
+        CameraFrame scene = EngineCalibrator.createScene();
+        JavaFrameProcessor processor = new JavaFrameProcessor();
+        processor.setState(true, 50, 3, false);
+        ByteBuffer out = ByteBuffer.allocateDirect(scene.getWidth() * scene.getHeight());
+        FrameProcessor.Stats stats = new FrameProcessor.Stats();
+
+        assertEquals(FrameProcessor.OUTPUT_EDGES, processor.process(scene, 1, true, out, 0, stats));
+        assertEquals(640, stats.width);
+        int edges = 0;
+        for (int i = 0; i < out.capacity(); i++) {
+            edges += out.get(i) != 0 ? 1 : 0;
+        }
+        // Rectangle outline alone is ~700 pixels, circle ~500, line ~1300 (both sides)
+        assertTrue("edge pixels: " + edges, edges > 2000);
+
+        // Edge mode off: grey passthrough
+        processor.setState(false, 50, 3, false);
+        ByteBuffer rgba = ByteBuffer.allocateDirect(scene.getWidth() * scene.getHeight() * 4);
+        assertEquals(FrameProcessor.OUTPUT_RGBA, processor.process(scene, 1, true, rgba, 0, stats));
+        int pixel = (150 * 640 + 200) * 4; // inside the white rectangle
+        assertEquals((byte) 255, rgba.get(pixel));
+        assertEquals((byte) 0xFF, rgba.get(pixel + 3));
+    }
+
+    @Test
+    public void scene_scalesToOtherSizes() {
+        CameraFrame scene = EngineCalibrator.createScene(1280, 960);
+        assertEquals(1280, scene.getWidth());
+        ByteBuffer y = scene.getYPlane();
+        assertEquals((byte) 255, y.get(300 * 1280 + 400)); // rectangle at (200, 150) in 640x480
+        assertEquals((byte) 0, y.get(600 * 1280 + 800));   // circle centre
+        assertEquals((byte) 128, y.get(20 * 1280 + 1200)); // background
+    }
+
+    @Test
+    public void skipsWhenOutputTooSmall() {
+        CameraFrame scene = EngineCalibrator.createScene();
+        JavaFrameProcessor processor = new JavaFrameProcessor();
+        processor.setState(true, 50, 3, false);
+        FrameProcessor.Stats stats = new FrameProcessor.Stats();
+        ByteBuffer small = ByteBuffer.allocateDirect(100);
+        assertEquals(FrameProcessor.OUTPUT_SKIPPED, processor.process(scene, 1, true, small, 0, stats));
+        assertEquals(FrameProcessor.OUTPUT_SKIPPED,
+                new PassthroughFrameProcessor().process(scene, 2, true, small, 0, stats));
+    }
+}
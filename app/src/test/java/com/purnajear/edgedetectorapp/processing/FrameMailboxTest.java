@@ -0,0 +1,110 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class FrameMailboxTest {
+
+    // Stands in for a pooled frame, counts release() instead of recycling a buffer
+    static class TrackedFrame extends CameraFrame {
+        int released;
+
+        @Override
+        public void release() {
+            released++;
+        }
+    }
+
+    @Test
+    public void latestWinsAndReleasesReplacedFrames() throws InterruptedException {
+        LatestFrameMailbox mailbox = new LatestFrameMailbox();
+        TrackedFrame first = new TrackedFrame();
+        TrackedFrame second = new TrackedFrame();
+        TrackedFrame third = new TrackedFrame();
+
+        assertTrue(mailbox.offer(first));
+        assertFalse(mailbox.offer(second));
+        assertFalse(mailbox.offer(third));
+
+        assertSame(third, mailbox.take());
+        assertEquals(1, first.released);
+        assertEquals(1, second.released);
+        assertEquals(0, third.released);
+        assertEquals(2, mailbox.getDroppedCount());
+    }
+
+    @Test
+    public void latestWakesAWaitingConsumer() throws InterruptedException {
+        LatestFrameMailbox mailbox = new LatestFrameMailbox();
+        AtomicReference<CameraFrame> taken = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            try {
+                taken.set(mailbox.take());
+            } catch (InterruptedException e) {
+                // Test fails on the null below
+            }
+            done.countDown();
+        });
+        consumer.start();
+
+        TrackedFrame frame = new TrackedFrame();
+        mailbox.offer(frame);
+
+        assertTrue("consumer never woke up", done.await(5, TimeUnit.SECONDS));
+        assertSame(frame, taken.get());
+        assertEquals(0, mailbox.getDroppedCount());
+    }
+
+    @Test
+    public void latestClearReleasesThePendingFrame() {
+        LatestFrameMailbox mailbox = new LatestFrameMailbox();
+        TrackedFrame frame = new TrackedFrame();
+        mailbox.offer(frame);
+        mailbox.clear();
+        assertEquals(1, frame.released);
+        assertEquals(0, mailbox.getDroppedCount());
+    }
+
+    @Test
+    public void boundedKeepsOrderUpToCapacity() throws InterruptedException {
+        BoundedFrameMailbox mailbox = new BoundedFrameMailbox(2);
+        TrackedFrame first = new TrackedFrame();
+        TrackedFrame second = new TrackedFrame();
+        TrackedFrame third = new TrackedFrame();
+
+        assertEquals(2, mailbox.getCapacity());
+        assertTrue(mailbox.offer(first));
+        assertTrue(mailbox.offer(second));
+        // Full: the newest frame is the one dropped
+        assertFalse(mailbox.offer(third));
+
+        assertEquals(1, third.released);
+        assertEquals(1, mailbox.getDroppedCount());
+        assertSame(first, mailbox.take());
+        assertSame(second, mailbox.take());
+        assertEquals(0, first.released);
+        assertEquals(0, second.released);
+        assertEquals(2, mailbox.getCapacity());
+    }
+
+    @Test
+    public void boundedClearReleasesEverythingQueued() {
+        BoundedFrameMailbox mailbox = new BoundedFrameMailbox(3);
+        TrackedFrame first = new TrackedFrame();
+        TrackedFrame second = new TrackedFrame();
+        mailbox.offer(first);
+        mailbox.offer(second);
+        mailbox.clear();
+        assertEquals(1, first.released);
+        assertEquals(1, second.released);
+        assertEquals(0, mailbox.getDroppedCount());
+    }
+}
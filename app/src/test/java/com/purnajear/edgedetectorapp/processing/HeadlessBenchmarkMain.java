@@ -0,0 +1,101 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.OfflineFrameSource;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM side of {@link HeadlessBenchmark}, for the Java engines. Not a unit test - run main()
+ * from the IDE or with the test classpath, same options as DebugActivity's benchmark extras:
+ *
+ *   --engine java|passthrough  --size 1280x720 | --replay capture.edr  --threads N
+ *   --frames N  --warmup N  --downscale N  --out report.json
+ *
+ * Prints the JSON report. Allocations are heap bytes from the thread bean (no object count
+ * on the JVM), native memory is direct buffers.
+ */
+public class HeadlessBenchmarkMain {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        String engine = options.getOrDefault("engine", FrameProcessors.JAVA);
+        int threads = Integer.parseInt(options.getOrDefault("threads", "0"));
+        String replay = options.get("replay");
+        String size = options.getOrDefault("size", "1280x720");
+
+        FrameProcessor processor = HeadlessBenchmark.createProcessor(engine, threads);
+        if (processor == null) {
+            throw new IllegalArgumentException("Engine not available on the JVM: " + engine);
+        }
+        OfflineFrameSource source = HeadlessBenchmark.openSource(replay, size);
+        HeadlessBenchmark benchmark = new HeadlessBenchmark(processor, source,
+                replay != null ? replay : "synthetic");
+        benchmark.setFrames(Integer.parseInt(options.getOrDefault("warmup",
+                        String.valueOf(HeadlessBenchmark.DEFAULT_WARMUP_FRAMES))),
+                Integer.parseInt(options.getOrDefault("frames", String.valueOf(HeadlessBenchmark.DEFAULT_FRAMES))));
+        benchmark.setDownscale(Integer.parseInt(options.getOrDefault("downscale", "1")));
+        benchmark.setThreads(threads, HeadlessBenchmark.threadControl(engine));
+        benchmark.setMemoryProbe(new JvmMemoryProbe());
+
+        String json = benchmark.run().toJson();
+        processor.release();
+        System.out.println(json);
+        String out = options.get("out");
+        if (out != null) {
+            try (Writer writer = new FileWriter(out)) {
+                writer.write(json);
+                writer.write('\n');
+            }
+        }
+    }
+
+    static class JvmMemoryProbe implements HeadlessBenchmark.MemoryProbe {
+        private final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final BufferPoolMXBean direct = directPool();
+
+        @Override
+        public long allocationCount() {
+            return -1;
+        }
+
+        // Every live thread, so pool workers count too
+        @Override
+        public long allocatedBytes() {
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+                return -1;
+            }
+            long total = 0;
+            for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+                    threads.getAllThreadIds())) {
+                total += Math.max(bytes, 0);
+            }
+            return total;
+        }
+
+        @Override
+        public long nativeBytes() {
+            return direct != null ? direct.getMemoryUsed() : -1;
+        }
+
+        private static BufferPoolMXBean directPool() {
+            for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                if ("direct".equals(pool.getName())) {
+                    return pool;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import com.purnajear.edgedetectorapp.camera.CameraFrame;
+import com.purnajear.edgedetectorapp.camera.SyntheticFrameSource;
+import com.purnajear.edgedetectorapp.metrics.FrameMetrics;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HeadlessBenchmarkTest {
+
+    @Test
+    public void reportsOnlyMeasuredFrames() throws InterruptedException {
+        List<Integer> applied = new ArrayList<>();
+        long[] allocations = {0};
+        long[] nativeBytes = {1000};
+        HeadlessBenchmark benchmark = new HeadlessBenchmark(new JavaFrameProcessor(),
+                new SyntheticFrameSource(160, 120, 30), "synthetic");
+        benchmark.setFrames(3, 10);
+        benchmark.setDownscale(2);
+        benchmark.setThreads(2, applied::add);
+        benchmark.setMemoryProbe(new HeadlessBenchmark.MemoryProbe() {
+            @Override
+            public long allocationCount() {
+                return allocations[0] += 5;
+            }
+
+            @Override
+            public long allocatedBytes() {
+                return -1;
+            }
+
+            @Override
+            public long nativeBytes() {
+                return nativeBytes[0] += 10;
+            }
+        });
+
+        HeadlessBenchmark.Report report = benchmark.run();
+
+        assertEquals(Arrays.asList(2, 0), applied);
+        assertEquals(FrameProcessors.JAVA, report.engine);
+        assertEquals(80, report.width);
+        assertEquals(60, report.height);
+        assertEquals(10, report.frames);
+        assertEquals(0, report.skippedFrames);
+        assertEquals(0, report.failedFrames);
+        assertTrue(report.elapsedNs > 0);
+        assertTrue(report.getFps() > 0);
+        // Probed once at the start, then at the end
+        assertEquals(5, report.allocationCount);
+        assertEquals(-1, report.allocatedBytes);
+        assertEquals(1010, report.nativeStartBytes);
+        assertEquals(1110, report.nativePeakBytes);
+        // Warmup isn't in the latencies, stages without frames are left out
+        assertEquals(10, report.stages.get(FrameMetrics.Stage.PROCESS).getCount());
+        assertEquals(10, report.stages.get(FrameMetrics.Stage.ACQUIRE_TO_CONVERT).getCount());
+        assertFalse(report.stages.containsKey(FrameMetrics.Stage.UPLOAD));
+
+        String json = report.toJson();
+        assertTrue(json, json.startsWith("{\"engine\":\"java\",\"source\":\"synthetic\",\"width\":80,"));
+        assertTrue(json, json.contains("\"allocations_per_frame\":0.50,"));
+        assertTrue(json, json.contains("\"stages\":{\"acquire_to_convert\":{\"count\":10,"));
+        assertTrue(json, json.endsWith("}}}"));
+    }
+
+    @Test
+    public void skippedFramesAreCounted() throws InterruptedException {
+        FrameProcessor skipping = new FrameProcessor() {
+            @Override
+            public String getName() {
+                return "skipping";
+            }
+
+            @Override
+            public void setState(boolean edgeDetection, int lowThreshold, int ratio, boolean l2Gradient) {
+            }
+
+            @Override
+            public int process(CameraFrame frame, int downscale, boolean lumaOnly, ByteBuffer output,
+                               int outputOffset, Stats stats) {
+                return OUTPUT_SKIPPED;
+            }
+
+            @Override
+            public void release() {
+            }
+        };
+        HeadlessBenchmark benchmark = new HeadlessBenchmark(skipping, new SyntheticFrameSource(64, 48, 30), "x\"y");
+        benchmark.setFrames(0, 4);
+
+        HeadlessBenchmark.Report report = benchmark.run();
+
+        assertEquals(4, report.skippedFrames);
+        assertEquals(-1, report.allocationCount);
+        assertEquals(-1, report.nativePeakBytes);
+        assertTrue(report.toJson(), report.toJson().contains("\"source\":\"x\\\"y\""));
+    }
+
+    @Test
+    public void failedCopyStillEndsTheRun() throws InterruptedException {
+        // Pool trouble on the last frame, before process() ever sees it
+        SyntheticFrameSource source = new SyntheticFrameSource(64, 48, 30) {
+            private int copies;
+
+            @Override
+            public CameraFrame copyFrame(CameraFrame frame, boolean lumaOnly) {
+                if (++copies == 3) {
+                    throw new IllegalStateException("pool closed");
+                }
+                return super.copyFrame(frame, lumaOnly);
+            }
+        };
+        HeadlessBenchmark benchmark = new HeadlessBenchmark(new JavaFrameProcessor(), source, "synthetic");
+        benchmark.setFrames(1, 2);
+
+        HeadlessBenchmark.Report report = benchmark.run();
+
+        assertEquals(1, report.failedFrames);
+        assertEquals(1, report.stages.get(FrameMetrics.Stage.PROCESS).getCount());
+        assertTrue(report.elapsedNs > 0);
+    }
+
+    @Test(expected = IllegalStateException.class, timeout = 10_000)
+    public void sourceThatDiesEndsTheRun() throws InterruptedException {
+        SyntheticFrameSource source = new SyntheticFrameSource(64, 48, 30) {
+            @Override
+            protected void loadFrame(int index, CameraFrame frame) {
+                if (index == 2) {
+                    throw new IllegalStateException("truncated recording");
+                }
+                super.loadFrame(index, frame);
+            }
+        };
+        HeadlessBenchmark benchmark = new HeadlessBenchmark(new JavaFrameProcessor(), source, "synthetic");
+        benchmark.setFrames(0, 5);
+        benchmark.run();
+    }
+
+    @Test
+    public void parseSize() {
+        assertArrayEquals(new int[] {1280, 720}, HeadlessBenchmark.parseSize("1280x720"));
+        assertArrayEquals(new int[] {640, 480}, HeadlessBenchmark.parseSize(" 640 x 480 "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseSize_rejectsGarbage() {
+        HeadlessBenchmark.parseSize("1280");
+    }
+}
@@ -0,0 +1,46 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Plain JVM benchmark for {@link JavaCannyEngine}. Not a unit test - run main() from the IDE
+ * or with the test classpath. Prints cost per frame and per megapixel at VGA, 720p and 1080p,
+ * on one thread and on the common pool.
+ */
+public class JavaCannyEngineBenchmark {
+
+    private static final int[][] SIZES = {{640, 480}, {1280, 720}, {1920, 1080}};
+    private static final int WARMUP_FRAMES = 50;
+    private static final int MEASURE_FRAMES = 100;
+
+    public static void main(String[] args) {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool common = ForkJoinPool.commonPool();
+        System.out.println("size        threads  downscale  ms/frame  ms/MP");
+        for (int[] size : SIZES) {
+            byte[] luma = JavaCannyEngineTest.scene(size[0], size[1], 1);
+            for (int downscale = 1; downscale <= 2; downscale++) {
+                run(new JavaCannyEngine(single), 1, luma, size[0], size[1], downscale);
+                run(new JavaCannyEngine(common), common.getParallelism(), luma, size[0], size[1], downscale);
+            }
+        }
+        single.shutdown();
+    }
+
+    private static void run(JavaCannyEngine engine, int threads, byte[] luma, int width, int height,
+                            int downscale) {
+        byte[] edges = new byte[width * height];
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            engine.detect(luma, width, height, downscale, edges);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_FRAMES; i++) {
+            engine.detect(luma, width, height, downscale, edges);
+        }
+        double msPerFrame = (System.nanoTime() - start) / 1_000_000.0 / MEASURE_FRAMES;
+        double megapixels = width * height / 1_000_000.0;
+        System.out.println(String.format(Locale.US, "%4dx%-5d  %7d  %9d  %8.3f  %5.3f",
+                width, height, threads, downscale, msPerFrame, msPerFrame / megapixels));
+    }
+}
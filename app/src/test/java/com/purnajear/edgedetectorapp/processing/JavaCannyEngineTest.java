@@ -0,0 +1,219 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class JavaCannyEngineTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    // Filled rectangle and circle on grey plus sensor-like noise, like forceEdgeDetectionTest
+    static byte[] scene(int width, int height, long seed) {
+        Random random = new Random(seed);
+        byte[] luma = new byte[width * height];
+        int cx = width * 2 / 3;
+        int cy = height / 2;
+        int radius = height / 4;
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                int value = 100;
+                if (r > height / 4 && r < height * 3 / 4 && c > width / 8 && c < width * 3 / 8) {
+                    value = 220;
+                }
+                if ((r - cy) * (r - cy) + (c - cx) * (c - cx) < radius * radius) {
+                    value = 30;
+                }
+                value += random.nextInt(9) - 4;
+                luma[r * width + c] = (byte) value;
+            }
+        }
+        return luma;
+    }
+
+    private static int count(byte[] edges, int size) {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (edges[i] != 0) {
+                assertEquals((byte) 255, edges[i]);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static JavaCannyEngine sequential() {
+        return new JavaCannyEngine(new ForkJoinPool(1));
+    }
+
+    @Test
+    public void flatImage_hasNoEdges() {
+        byte[] luma = new byte[WIDTH * HEIGHT];
+        java.util.Arrays.fill(luma, (byte) 128);
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        sequential().detect(luma, WIDTH, HEIGHT, 1, edges);
+        assertEquals(0, count(edges, edges.length));
+    }
+
+    @Test
+    public void verticalStep_isOnePixelWide() {
+        // 0 -> 64 between columns 39 and 40. After the blur the Sobel response is equal on
+        // both sides of the step, the asymmetric suppression keeps the left one
+        byte[] luma = new byte[WIDTH * HEIGHT];
+        for (int r = 0; r < HEIGHT; r++) {
+            for (int c = 40; c < WIDTH; c++) {
+                luma[r * WIDTH + c] = 64;
+            }
+        }
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        sequential().detect(luma, WIDTH, HEIGHT, 1, edges);
+        for (int r = 0; r < HEIGHT; r++) {
+            for (int c = 0; c < WIDTH; c++) {
+                assertEquals("row " + r + " col " + c, c == 39 ? (byte) 255 : 0, edges[r * WIDTH + c]);
+            }
+        }
+    }
+
+    @Test
+    public void hysteresis_keepsOnlyWeakEdgesConnectedToStrongOnes() {
+        // Same step height gives |dx| = 2.5 * height: 64 -> 160 (strong), 32 -> 80 (weak)
+        byte[] luma = new byte[WIDTH * HEIGHT];
+        for (int r = 0; r < HEIGHT; r++) {
+            // Left: strong in the top half continuing as weak. Right: weak only
+            int left = r < HEIGHT / 2 ? 64 : 32;
+            for (int c = 40; c < 80; c++) {
+                luma[r * WIDTH + c] = (byte) left;
+            }
+            for (int c = 120; c < WIDTH; c++) {
+                luma[r * WIDTH + c] = 32;
+            }
+        }
+        JavaCannyEngine engine = sequential();
+        engine.setParameters(50, 3, false); // low 50, high 150
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        engine.detect(luma, WIDTH, HEIGHT, 1, edges);
+
+        int bottom = HEIGHT - 10;
+        assertEquals("weak edge attached to a strong one", (byte) 255, edges[bottom * WIDTH + 39]);
+        for (int r = 0; r < HEIGHT; r++) {
+            for (int c = 100; c < WIDTH; c++) {
+                assertEquals("isolated weak edge at row " + r, 0, edges[r * WIDTH + c]);
+            }
+        }
+
+        // Below the low threshold nothing survives
+        engine.setParameters(90, 2, false);
+        engine.detect(luma, WIDTH, HEIGHT, 1, edges);
+        assertEquals(0, edges[bottom * WIDTH + 39]);
+        assertEquals((byte) 255, edges[10 * WIDTH + 39]);
+    }
+
+    @Test
+    public void l2Gradient_comparesSquaredThresholds() {
+        byte[] luma = new byte[WIDTH * HEIGHT];
+        for (int r = 0; r < HEIGHT; r++) {
+            for (int c = 40; c < WIDTH; c++) {
+                luma[r * WIDTH + c] = 64; // magnitude 160 either way, dy is 0
+            }
+        }
+        JavaCannyEngine engine = sequential();
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        engine.setParameters(60, 2, true); // high 120
+        engine.detect(luma, WIDTH, HEIGHT, 1, edges);
+        assertEquals(HEIGHT, count(edges, edges.length));
+        engine.setParameters(170, 2, true);
+        engine.detect(luma, WIDTH, HEIGHT, 1, edges);
+        assertEquals(0, count(edges, edges.length));
+    }
+
+    @Test
+    public void tiledMatchesSequential() {
+        byte[] luma = scene(WIDTH * 2, HEIGHT * 2, 42);
+        int size = WIDTH * HEIGHT * 4;
+        byte[] expected = new byte[size];
+        sequential().detect(luma, WIDTH * 2, HEIGHT * 2, 1, expected);
+        assertTrue("scene should have edges", count(expected, size) > 100);
+
+        ForkJoinPool pool = new ForkJoinPool(5); // uneven band split on purpose
+        try {
+            JavaCannyEngine tiled = new JavaCannyEngine(pool);
+            byte[] actual = new byte[size];
+            // Twice - the second frame runs on the reused tasks and buffers
+            for (int i = 0; i < 2; i++) {
+                java.util.Arrays.fill(actual, (byte) 7);
+                tiled.detect(luma, WIDTH * 2, HEIGHT * 2, 1, actual);
+                assertArrayEquals(expected, actual);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void releaseShutsDownOnlyAnOwnedPool() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        new JavaCannyEngine(pool).release();
+        assertFalse(pool.isShutdown());
+        pool.shutdown();
+
+        JavaCannyEngine owning = new JavaCannyEngine(2);
+        byte[] luma = scene(WIDTH, HEIGHT, 3);
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        owning.detect(luma, WIDTH, HEIGHT, 1, edges);
+        owning.release();
+        try {
+            owning.detect(luma, WIDTH, HEIGHT, 1, edges);
+            fail("pool still accepts work after release()");
+        } catch (RejectedExecutionException expected) {
+            // Shut down
+        }
+    }
+
+    @Test
+    public void downscale_halvesOutput() {
+        byte[] luma = scene(WIDTH * 2, HEIGHT * 2, 7);
+        JavaCannyEngine engine = sequential();
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        engine.detect(luma, WIDTH * 2, HEIGHT * 2, 2, edges);
+        assertEquals(WIDTH, engine.getOutputWidth());
+        assertEquals(HEIGHT, engine.getOutputHeight());
+        assertTrue(count(edges, edges.length) > 50);
+
+        // pyrDown of a uniform image stays uniform - no edges from the borders
+        byte[] flat = new byte[WIDTH * HEIGHT * 4];
+        java.util.Arrays.fill(flat, (byte) 200);
+        engine.detect(flat, WIDTH * 2, HEIGHT * 2, 2, edges);
+        assertEquals(0, count(edges, edges.length));
+    }
+
+    @Test
+    public void byteBuffer_stridedInputMatchesPacked() {
+        byte[] luma = scene(WIDTH, HEIGHT, 3);
+        byte[] expected = new byte[WIDTH * HEIGHT];
+        JavaCannyEngine engine = sequential();
+        engine.detect(luma, WIDTH, HEIGHT, 1, expected);
+
+        int stride = WIDTH + 32;
+        ByteBuffer y = ByteBuffer.allocateDirect(stride * HEIGHT);
+        for (int r = 0; r < HEIGHT; r++) {
+            y.position(r * stride);
+            y.put(luma, r * WIDTH, WIDTH);
+        }
+        y.clear();
+        int offset = 100;
+        ByteBuffer out = ByteBuffer.allocateDirect(offset + WIDTH * HEIGHT);
+        engine.detect(y, stride, WIDTH, HEIGHT, 1, out, offset);
+
+        assertEquals(0, y.position());
+        byte[] actual = new byte[WIDTH * HEIGHT];
+        out.position(offset);
+        out.get(actual);
+        assertArrayEquals(expected, actual);
+    }
+}
@@ -0,0 +1,37 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ProcessingStageTest {
+
+    @Test
+    public void handledFramesAreReleased() throws InterruptedException {
+        CountDownLatch handled = new CountDownLatch(1);
+        ProcessingStage stage = new ProcessingStage("test", new LatestFrameMailbox(), frame -> handled.countDown());
+        stage.start();
+        FrameMailboxTest.TrackedFrame frame = new FrameMailboxTest.TrackedFrame();
+
+        assertTrue(stage.submit(frame));
+        assertTrue("frame never handled", handled.await(5, TimeUnit.SECONDS));
+        stage.stop();
+
+        assertEquals(1, frame.released);
+        assertEquals(1, stage.getProcessedCount());
+    }
+
+    @Test
+    public void submitAfterStopReleasesTheFrame() {
+        ProcessingStage stage = new ProcessingStage("test", new LatestFrameMailbox(), frame -> { });
+        stage.start();
+        stage.stop();
+        FrameMailboxTest.TrackedFrame frame = new FrameMailboxTest.TrackedFrame();
+
+        assertFalse(stage.submit(frame));
+        assertEquals(1, frame.released);
+    }
+}
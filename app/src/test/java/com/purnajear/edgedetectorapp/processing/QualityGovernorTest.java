@@ -0,0 +1,61 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QualityGovernorTest {
+    private static final long TARGET = 80_000_000L;
+    private static final long FRAME = 33_000_000L;
+
+    private long now = 0;
+
+    private void feed(QualityGovernor governor, long latencyNs, int frames) {
+        for (int i = 0; i < frames; i++) {
+            now += FRAME;
+            governor.reportLatency(latencyNs, now);
+        }
+    }
+
+    @Test
+    public void stepsDownOneTierAtATimeUnderLoad() {
+        QualityGovernor governor = new QualityGovernor(TARGET);
+        feed(governor, 150_000_000L, 20);
+        assertEquals(QualityGovernor.Tier.PYRAMID, governor.getTier());
+        // Cooldown holds the tier for a second even though latency is still high
+        feed(governor, 150_000_000L, 10);
+        assertEquals(QualityGovernor.Tier.PYRAMID, governor.getTier());
+        feed(governor, 150_000_000L, 200);
+        assertEquals(QualityGovernor.Tier.LUMA_ONLY, governor.getTier());
+    }
+
+    @Test
+    public void holdsTierInsideDeadBand() {
+        QualityGovernor governor = new QualityGovernor(TARGET);
+        feed(governor, 150_000_000L, 20);
+        assertEquals(QualityGovernor.Tier.PYRAMID, governor.getTier());
+        // Between 50% and 100% of target: neither degrade nor recover
+        feed(governor, 60_000_000L, 1000);
+        assertEquals(QualityGovernor.Tier.PYRAMID, governor.getTier());
+    }
+
+    @Test
+    public void recoversSlowly() {
+        QualityGovernor governor = new QualityGovernor(TARGET);
+        feed(governor, 150_000_000L, 20);
+        feed(governor, 10_000_000L, 60);
+        assertEquals(QualityGovernor.Tier.PYRAMID, governor.getTier());
+        feed(governor, 10_000_000L, 60);
+        assertEquals(QualityGovernor.Tier.FULL, governor.getTier());
+    }
+
+    @Test
+    public void disablingResetsToFull() {
+        QualityGovernor governor = new QualityGovernor(TARGET);
+        feed(governor, 150_000_000L, 20);
+        governor.setEnabled(false);
+        assertEquals(QualityGovernor.Tier.FULL, governor.getTier());
+        feed(governor, 150_000_000L, 200);
+        assertEquals(QualityGovernor.Tier.FULL, governor.getTier());
+    }
+}
@@ -0,0 +1,51 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ThreadScalingProbeTest {
+
+    @Test
+    public void runsEverySizeAtEveryThreadCount() {
+        List<Integer> applied = new ArrayList<>();
+        ThreadScalingProbe probe = new ThreadScalingProbe(0, 1);
+        List<ThreadScalingProbe.Result> results = probe.run(new JavaFrameProcessor(), applied::add,
+                new int[][] {{320, 240}, {640, 480}}, new int[] {1, 2});
+
+        assertEquals(4, results.size());
+        assertEquals(java.util.Arrays.asList(1, 2, 1, 2), applied);
+        assertEquals(320, results.get(1).width);
+        assertEquals(2, results.get(1).threads);
+        assertEquals(640, results.get(2).width);
+        assertEquals(1, results.get(2).threads);
+        // Java engine doesn't report bands
+        assertEquals(0, results.get(0).bandCount);
+
+        String report = ThreadScalingProbe.format(results);
+        assertEquals(4, report.split("\n").length);
+        assertTrue(report, report.startsWith("320x240 threads=1: "));
+        assertTrue(report, report.contains("(x1.00)"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void engineWithoutEdges_fails() {
+        new ThreadScalingProbe(0, 1).run(new PassthroughFrameProcessor(), threads -> { },
+                new int[][] {{64, 48}}, new int[] {1});
+    }
+
+    @Test
+    public void slowestBand() {
+        FrameProcessor.Stats stats = new FrameProcessor.Stats();
+        assertEquals(0, stats.slowestBandNs());
+        stats.bandCount = 3;
+        stats.bandTimesNs[0] = 5;
+        stats.bandTimesNs[1] = 9;
+        stats.bandTimesNs[2] = 7;
+        stats.bandTimesNs[3] = 100; // past bandCount, stale
+        assertEquals(9, stats.slowestBandNs());
+    }
+}
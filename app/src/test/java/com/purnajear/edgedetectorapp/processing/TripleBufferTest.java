@@ -0,0 +1,86 @@
+package com.purnajear.edgedetectorapp.processing;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TripleBufferTest {
+
+    // Two fields written one after the other - a torn read would see them differ
+    private static class Slot {
+        long first;
+        long second;
+    }
+
+    @Test
+    public void nothingToConsumeBeforePublish() {
+        TripleBuffer<Slot> buffer = new TripleBuffer<>(Slot::new);
+        assertFalse(buffer.hasNew());
+        assertNull(buffer.consume());
+    }
+
+    @Test
+    public void readerGetsNewestAndOverwritesAreReported() {
+        TripleBuffer<Slot> buffer = new TripleBuffer<>(Slot::new);
+
+        buffer.getWriteSlot().first = 1;
+        assertFalse(buffer.publish());
+        buffer.getWriteSlot().first = 2;
+        assertTrue(buffer.publish()); // 1 was never read
+
+        Slot read = buffer.consume();
+        assertEquals(2, read.first);
+        assertSame(read, buffer.getReadSlot());
+        assertNull(buffer.consume());
+        assertEquals(2, buffer.getReadSlot().first);
+    }
+
+    @Test
+    public void writerNeverGetsTheReadersSlot() {
+        TripleBuffer<Slot> buffer = new TripleBuffer<>(Slot::new);
+        for (int i = 0; i < 10; i++) {
+            buffer.publish();
+            Slot read = buffer.consume();
+            assertNotSame(read, buffer.getWriteSlot());
+            buffer.publish();
+            assertNotSame(buffer.getReadSlot(), buffer.getWriteSlot());
+        }
+    }
+
+    @Test
+    public void concurrentReaderSeesCompleteIncreasingFrames() throws Exception {
+        TripleBuffer<Slot> buffer = new TripleBuffer<>(Slot::new);
+        AtomicBoolean failed = new AtomicBoolean();
+        int frames = 200_000;
+
+        Thread writer = new Thread(() -> {
+            for (long i = 1; i <= frames; i++) {
+                Slot slot = buffer.getWriteSlot();
+                slot.first = i;
+                slot.second = i;
+                buffer.publish();
+            }
+        });
+        writer.start();
+
+        long last = 0;
+        while (last < frames && !failed.get()) {
+            Slot slot = buffer.consume();
+            if (slot == null) {
+                continue;
+            }
+            if (slot.first != slot.second || slot.first <= last) {
+                failed.set(true);
+            }
+            last = slot.first;
+            if (!writer.isAlive() && !buffer.hasNew()) {
+                break;
+            }
+        }
+        writer.join();
+        assertFalse("torn or stale frame", failed.get());
+        assertEquals(frames, last);
+    }
+}